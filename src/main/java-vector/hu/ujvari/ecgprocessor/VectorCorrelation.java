@@ -0,0 +1,54 @@
+package hu.ujvari.ecgprocessor;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API backend: a vector of consecutive outputs is accumulated tap by
+ * tap (broadcast weight times a shifted input slice). Each lane performs the
+ * same multiply and add in the same order as the scalar loop, so the results
+ * are bit-identical. Only compiled by the JDK 17+ profile; loaded reflectively
+ * by CorrelationBackend.load().
+ */
+final class VectorCorrelation implements CorrelationBackend {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void correlate(double[] input, double[] kernel, double[] output, int from, int to) {
+        int taps = kernel.length;
+        int half = taps / 2;
+        int lanes = SPECIES.length();
+
+        int i = from;
+        for (; i <= to - lanes; i += lanes) {
+            int offset = i - half;
+            DoubleVector sum = DoubleVector.zero(SPECIES);
+            for (int j = 0; j < taps; j++) {
+                DoubleVector x = DoubleVector.fromArray(SPECIES, input, offset + j);
+                sum = sum.add(x.mul(kernel[j]));
+            }
+            sum.intoArray(output, i);
+        }
+
+        // Remaining outputs
+        for (; i < to; i++) {
+            int offset = i - half;
+            double sum = 0.0;
+            for (int j = 0; j < taps; j++) {
+                sum += input[offset + j] * kernel[j];
+            }
+            output[i] = sum;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+
+    @Override
+    public int getDirectMaxTaps() {
+        // Several times faster than the scalar loop, so FFT only pays off later
+        return 64 * Math.max(1, SPECIES.length() / 2);
+    }
+}
@@ -2,6 +2,9 @@ package hu.ujvari;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 
 import hu.ujvari.ecgmodel.Signal;
@@ -20,6 +23,9 @@ import javafx.stage.Stage;
 
 public class ECGMenuApp extends Application {
 
+    private static final String VIEWER_LEAD = "MDC_ECG_LEAD_AVL";
+    private static final Path CACHE_DIR = Paths.get(System.getProperty("java.io.tmpdir"), "ecginterpolation");
+
     private Stage primaryStage;
 
     @Override
@@ -120,15 +126,18 @@ public class ECGMenuApp extends Application {
         try {
             XmlEcgReader reader = new XmlEcgReader();
             
-            reader.loadFromResource("xml/ecg3.xml");
-            
-            reader.extractSignals();
+            // The viewer shows a single lead. The first launch parses the XML once
+            // and writes a binary sidecar, later launches map the sidecar and only
+            // touch the samples of the selected lead
+            reader.setLeadSelection(Collections.singleton(VIEWER_LEAD));
+            reader.loadCachedResource("xml/ecg3.xml", CACHE_DIR);
             
             if (!reader.getSignals().isEmpty()) {
-                Signal mDC_ECG_LEAD_I = reader.getSignals().get(4);
+                // The first match is the rhythm strip, the second one the median beat
+                Signal mDC_ECG_LEAD_I = reader.getSignals().get(0);
                 List<Double> values = mDC_ECG_LEAD_I.getValues();
                 System.out.println("ECGMenuApp: values size = " + (values != null ? values.size() : "null"));
-                EcgPlotterApplication.setData(values);
+                EcgPlotterApplication.setData(mDC_ECG_LEAD_I);
                 
             } else {
                 System.out.println("No lead found in XML.");
@@ -0,0 +1,131 @@
+package hu.ujvari.ecgmodel;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Fixed-size List&lt;Double&gt; view over a range of a double[].
+ * Lets the primitive sample arrays travel through the List based filter API
+ * without boxing them into an ArrayList. A writable list (wrap) hands its
+ * backing array back to the processors through asArray without copying; a
+ * read-only list (unmodifiable) rejects set and is always copied.
+ */
+public final class DoubleArrayList extends AbstractList<Double> implements RandomAccess {
+    private final double[] array;
+    private final int offset;
+    private final int size;
+    private final boolean readOnly;
+
+    private DoubleArrayList(double[] array, int offset, int size, boolean readOnly) {
+        this.array = array;
+        this.offset = offset;
+        this.size = size;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Wraps the array without copying it, changes are visible in both directions
+     */
+    public static DoubleArrayList wrap(double[] array) {
+        return new DoubleArrayList(array, 0, array.length, false);
+    }
+
+    /**
+     * Read-only view without copying; the caller hands the array over and
+     * must not change it afterwards
+     */
+    public static DoubleArrayList unmodifiable(double[] array) {
+        return new DoubleArrayList(array, 0, array.length, true);
+    }
+
+    /**
+     * Creates a list backed by a primitive copy of the given values
+     */
+    public static DoubleArrayList copyOf(List<Double> values) {
+        return wrap(toArray(values));
+    }
+
+    /**
+     * @return The values in a new array, never shared with the list
+     */
+    public static double[] toArray(List<Double> values) {
+        double[] array = asArray(values);
+        // asArray returns the backing array itself for a whole-array view
+        if (values instanceof DoubleArrayList && array == ((DoubleArrayList) values).array) {
+            array = array.clone();
+        }
+        return array;
+    }
+
+    /**
+     * Returns the values as a primitive array.
+     * For a writable DoubleArrayList covering its whole array this is the
+     * backing array itself (no copy). Read-only lists, sample views and any
+     * other list are copied.
+     */
+    public static double[] asArray(List<Double> values) {
+        if (values instanceof DoubleArrayList) {
+            DoubleArrayList list = (DoubleArrayList) values;
+            if (!list.readOnly && list.offset == 0 && list.size == list.array.length) {
+                return list.array;
+            }
+            return Arrays.copyOfRange(list.array, list.offset, list.offset + list.size);
+        }
+        if (values instanceof SampleStorage.ListView) {
+            return ((SampleStorage.ListView) values).toDoubleArray();
+        }
+
+        double[] array = new double[values.size()];
+        int i = 0;
+        for (Double value : values) {
+            array[i++] = value;
+        }
+        return array;
+    }
+
+    public double getDouble(int index) {
+        checkIndex(index);
+        return array[offset + index];
+    }
+
+    @Override
+    public Double get(int index) {
+        checkIndex(index);
+        return array[offset + index];
+    }
+
+    @Override
+    public Double set(int index, Double element) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Read-only sample list");
+        }
+        checkIndex(index);
+        double previous = array[offset + index];
+        array[offset + index] = element;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The sub list is a view over the same array, like ArrayList.subList
+     */
+    @Override
+    public List<Double> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size);
+        }
+        return new DoubleArrayList(array, offset + fromIndex, toIndex - fromIndex, readOnly);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
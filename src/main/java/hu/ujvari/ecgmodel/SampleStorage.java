@@ -0,0 +1,260 @@
+package hu.ujvari.ecgmodel;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Primitive sample storage behind a Signal.
+ * Inner classes hold the concrete representations. get() always returns the
+ * stored value (for the quantized storages the raw ADC count, exactly what
+ * the digits element contained); origin and scale are applied only by the
+ * *Scaled methods, on read.
+ */
+public abstract class SampleStorage {
+
+    /**
+     * Representation requested from the readers
+     */
+    public enum Type {
+        DOUBLE,
+        FLOAT,
+        // Raw integer counts: short[] when every count fits in 16 bits, int[] otherwise
+        QUANTIZED
+    }
+
+    public abstract int size();
+
+    public abstract double get(int index);
+
+    /**
+     * Copies a range of the samples into a double[]
+     */
+    public void copyTo(int srcPos, double[] dest, int destPos, int length) {
+        for (int i = 0; i < length; i++) {
+            dest[destPos + i] = get(srcPos + i);
+        }
+    }
+
+    /**
+     * @return A new double[] with the samples
+     */
+    public double[] toDoubleArray() {
+        double[] result = new double[size()];
+        copyTo(0, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Copies a range into a double[] converting each value to physical units:
+     * origin + scale * value
+     */
+    public void copyScaledTo(int srcPos, double[] dest, int destPos, int length, double origin, double scale) {
+        for (int i = 0; i < length; i++) {
+            dest[destPos + i] = origin + scale * get(srcPos + i);
+        }
+    }
+
+    public double[] toScaledArray(double origin, double scale) {
+        double[] result = new double[size()];
+        copyScaledTo(0, result, 0, result.length, origin, scale);
+        return result;
+    }
+
+    /**
+     * Read-only List view kept for the List&lt;Double&gt; based API
+     */
+    public List<Double> asList() {
+        return new ListView(this);
+    }
+
+    public static SampleStorage of(double[] samples) {
+        return new DoubleStorage(samples);
+    }
+
+    public static SampleStorage of(float[] samples) {
+        return new FloatStorage(samples);
+    }
+
+    public static SampleStorage of(short[] counts) {
+        return new ShortStorage(counts);
+    }
+
+    public static SampleStorage of(int[] counts) {
+        return new IntStorage(counts);
+    }
+
+    public static class DoubleStorage extends SampleStorage {
+        private final double[] samples;
+
+        public DoubleStorage(double[] samples) {
+            this.samples = samples;
+        }
+
+        /**
+         * @return The backing array itself (zero-copy)
+         */
+        public double[] array() {
+            return samples;
+        }
+
+        @Override
+        public int size() {
+            return samples.length;
+        }
+
+        @Override
+        public double get(int index) {
+            return samples[index];
+        }
+
+        @Override
+        public void copyTo(int srcPos, double[] dest, int destPos, int length) {
+            System.arraycopy(samples, srcPos, dest, destPos, length);
+        }
+
+        @Override
+        public double[] toDoubleArray() {
+            return samples.clone();
+        }
+
+        @Override
+        public List<Double> asList() {
+            return DoubleArrayList.unmodifiable(samples);
+        }
+    }
+
+    public static class FloatStorage extends SampleStorage {
+        private final float[] samples;
+
+        public FloatStorage(float[] samples) {
+            this.samples = samples;
+        }
+
+        /**
+         * @return The backing array itself (zero-copy)
+         */
+        public float[] array() {
+            return samples;
+        }
+
+        @Override
+        public int size() {
+            return samples.length;
+        }
+
+        @Override
+        public double get(int index) {
+            return samples[index];
+        }
+    }
+
+    /**
+     * 16-bit ADC counts, a quarter of the memory of double[]
+     */
+    public static class ShortStorage extends SampleStorage {
+        private final short[] counts;
+
+        public ShortStorage(short[] counts) {
+            this.counts = counts;
+        }
+
+        /**
+         * @return The backing array itself (zero-copy)
+         */
+        public short[] array() {
+            return counts;
+        }
+
+        @Override
+        public int size() {
+            return counts.length;
+        }
+
+        @Override
+        public double get(int index) {
+            return counts[index];
+        }
+
+        @Override
+        public void copyTo(int srcPos, double[] dest, int destPos, int length) {
+            for (int i = 0; i < length; i++) {
+                dest[destPos + i] = counts[srcPos + i];
+            }
+        }
+
+        @Override
+        public void copyScaledTo(int srcPos, double[] dest, int destPos, int length, double origin, double scale) {
+            for (int i = 0; i < length; i++) {
+                dest[destPos + i] = origin + scale * counts[srcPos + i];
+            }
+        }
+    }
+
+    /**
+     * 32-bit ADC counts, for recordings whose counts do not fit in 16 bits
+     */
+    public static class IntStorage extends SampleStorage {
+        private final int[] counts;
+
+        public IntStorage(int[] counts) {
+            this.counts = counts;
+        }
+
+        /**
+         * @return The backing array itself (zero-copy)
+         */
+        public int[] array() {
+            return counts;
+        }
+
+        @Override
+        public int size() {
+            return counts.length;
+        }
+
+        @Override
+        public double get(int index) {
+            return counts[index];
+        }
+
+        @Override
+        public void copyTo(int srcPos, double[] dest, int destPos, int length) {
+            for (int i = 0; i < length; i++) {
+                dest[destPos + i] = counts[srcPos + i];
+            }
+        }
+
+        @Override
+        public void copyScaledTo(int srcPos, double[] dest, int destPos, int length, double origin, double scale) {
+            for (int i = 0; i < length; i++) {
+                dest[destPos + i] = origin + scale * counts[srcPos + i];
+            }
+        }
+    }
+
+    static final class ListView extends AbstractList<Double> implements RandomAccess {
+        private final SampleStorage storage;
+
+        ListView(SampleStorage storage) {
+            this.storage = storage;
+        }
+
+        @Override
+        public Double get(int index) {
+            if (index < 0 || index >= storage.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + storage.size());
+            }
+            return storage.get(index);
+        }
+
+        @Override
+        public int size() {
+            return storage.size();
+        }
+
+        double[] toDoubleArray() {
+            return storage.toDoubleArray();
+        }
+    }
+}
@@ -5,7 +5,8 @@ import java.util.List;
 public class Signal {
     private String leadName;
 
-    private List<Double> values;
+    // Primitive samples, getValues() is only a view over them
+    private SampleStorage samples;
 
     private double originValue;
     private String originUnit;
@@ -13,16 +14,37 @@ public class Signal {
     private double scaleValue;
     private String scaleUnit;
 
+    // Time between two samples (sequenceSet increment), 0 if unknown
+    private double sampleIncrement;
+    private String sampleIncrementUnit;
+
     // Konstruktor
     public Signal(String leadName, List<Double> values,
                   double originValue, String originUnit,
                   double scaleValue, String scaleUnit) {
+        this(leadName, values, originValue, originUnit, scaleValue, scaleUnit, 0.0, "");
+    }
+
+    public Signal(String leadName, List<Double> values,
+                  double originValue, String originUnit,
+                  double scaleValue, String scaleUnit,
+                  double sampleIncrement, String sampleIncrementUnit) {
+        this(leadName, values != null ? SampleStorage.of(DoubleArrayList.asArray(values)) : null,
+             originValue, originUnit, scaleValue, scaleUnit, sampleIncrement, sampleIncrementUnit);
+    }
+
+    public Signal(String leadName, SampleStorage samples,
+                  double originValue, String originUnit,
+                  double scaleValue, String scaleUnit,
+                  double sampleIncrement, String sampleIncrementUnit) {
         this.leadName = leadName;
-        this.values = values;
+        this.samples = samples;
         this.originValue = originValue;
         this.originUnit = originUnit;
         this.scaleValue = scaleValue;
         this.scaleUnit = scaleUnit;
+        this.sampleIncrement = sampleIncrement;
+        this.sampleIncrementUnit = sampleIncrementUnit;
     }
 
     // Getters
@@ -30,8 +52,47 @@ public class Signal {
         return leadName;
     }
 
+    /**
+     * Read-only list view over the primitive samples (for every storage),
+     * kept for backward compatibility. Processors should prefer getSamples()
+     * or getStorage().
+     */
     public List<Double> getValues() {
-        return values;
+        return samples != null ? samples.asList() : null;
+    }
+
+    public SampleStorage getStorage() {
+        return samples;
+    }
+
+    /**
+     * @return A copy of the samples as double[]
+     */
+    public double[] getSamples() {
+        return samples != null ? samples.toDoubleArray() : null;
+    }
+
+    public double getSample(int index) {
+        return samples.get(index);
+    }
+
+    /**
+     * @return origin + scale * sample, i.e. the sample in originUnit
+     */
+    public double getPhysicalSample(int index) {
+        return originValue + scaleValue * samples.get(index);
+    }
+
+    /**
+     * Converts the stored (for quantized storage: raw count) samples to
+     * physical units in a new array; origin and scale are applied only here
+     */
+    public double[] getPhysicalSamples() {
+        return samples != null ? samples.toScaledArray(originValue, scaleValue) : null;
+    }
+
+    public int size() {
+        return samples != null ? samples.size() : 0;
     }
 
     public double getOriginValue() {
@@ -50,13 +111,22 @@ public class Signal {
         return scaleUnit;
     }
 
+    public double getSampleIncrement() {
+        return sampleIncrement;
+    }
+
+    public String getSampleIncrementUnit() {
+        return sampleIncrementUnit;
+    }
+
     @Override
     public String toString() {
         return "Signal{" +
                 "leadName='" + leadName + '\'' +
-                ", values(size)=" + (values != null ? values.size() : 0) +
+                ", values(size)=" + size() +
                 ", origin=" + originValue + " " + originUnit +
                 ", scale=" + scaleValue + " " + scaleUnit +
+                ", increment=" + sampleIncrement + " " + sampleIncrementUnit +
                 '}';
     }
 }
@@ -1,11 +1,12 @@
 package hu.ujvari.ecgplotter.app;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import hu.ujvari.ecgmodel.DoubleArrayList;
+import hu.ujvari.ecgmodel.Signal;
 import hu.ujvari.ecgplotter.controller.FilterController;
 import hu.ujvari.ecgplotter.controller.ViewController;
 import hu.ujvari.ecgplotter.filter.GaussianFilter;
@@ -19,6 +20,7 @@ import hu.ujvari.ecgplotter.view.FilterVisibilityPanel;
 import hu.ujvari.ecgplotter.view.NavigationPanel;
 import hu.ujvari.ecgplotter.view.SignalCanvas;
 import hu.ujvari.ecgplotter.view.StatusPanel;
+import hu.ujvari.ecgprocessor.SignalResampler;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -29,7 +31,8 @@ import javafx.stage.Stage;
 
 public class EcgPlotterApplication extends Application {
     private static final Logger LOGGER = Logger.getLogger("ECGPlotter");
-    private static List<Double> signal = new ArrayList<>();
+    private static List<Double> signal = DoubleArrayList.wrap(new double[0]);
+    private static double sampleRate = SignalData.DEFAULT_SAMPLE_RATE;
     
     // Model
     private SignalData signalData;
@@ -45,22 +48,44 @@ public class EcgPlotterApplication extends Application {
     private StatusPanel statusPanel;
     private FilterVisibilityPanel filterVisibilityPanel;
     
+    /**
+     * Sets a signal without timing information, sampled at SignalData.DEFAULT_SAMPLE_RATE
+     */
     public static void setData(List<Double> original) {
         if (original != null) {
             LOGGER.log(Level.INFO, "Setting data: {0} points", original.size());
-            signal = new ArrayList<>(original);
+            signal = DoubleArrayList.copyOf(original);
+            sampleRate = SignalData.DEFAULT_SAMPLE_RATE;
         } else {
             LOGGER.warning("Setting null data!");
         }
     }
 
+    /**
+     * Sets the samples of a lead together with its sampling rate
+     */
+    public static void setData(Signal lead) {
+        if (lead == null) {
+            LOGGER.warning("Setting null data!");
+            return;
+        }
+        setData(lead.getValues());
+        try {
+            sampleRate = SignalResampler.getSampleRate(lead);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "No usable sample rate ({0}), assuming {1} Hz",
+                       new Object[] { e.getMessage(), SignalData.DEFAULT_SAMPLE_RATE });
+        }
+        LOGGER.log(Level.INFO, "Sample rate: {0} Hz", sampleRate);
+    }
+
     @Override
     public void start(Stage stage) {
         // Check the value of the signal
         System.out.println("EcgPlotterApplication.start: signal size = " + signal.size());
         
         // Initialize model
-        signalData = new SignalData(signal);
+        signalData = new SignalData(signal, sampleRate);
         
         // Additional protection
         if (signalData.getOriginalSignal().isEmpty()) {
@@ -73,7 +98,7 @@ public class EcgPlotterApplication extends Application {
             
         // Register filters - 
         GaussianFilter gaussianFilter = new GaussianFilter(15);
-        SgFilter sgFilter = new SgFilter(11, 2);
+        SgFilter sgFilter = new SgFilter(11, 2, true);
         LoessFilter loessFilter = new LoessFilter(21, 2, 0.25);
         SplineFilter splineFilter = new SplineFilter(20);
         //WaveletFilter waveletFilter = new WaveletFilter(3, 0.1);
@@ -85,26 +110,26 @@ public class EcgPlotterApplication extends Application {
         //filterController.registerFilter(waveletFilter);
     
                 
-        SegmentedFilterAdapter segmentedSgFilter = new SegmentedFilterAdapter(sgFilter, 0.7);
+        SegmentedFilterAdapter segmentedSgFilter = new SegmentedFilterAdapter(sgFilter, SegmentedFilterAdapter.DEFAULT_DETECTION_LEVEL);
         // Explicitly set the original signal for all segmented filters
-        segmentedSgFilter.setOriginalSignal(signalData.getOriginalSignal());
+        segmentedSgFilter.setOriginalSignal(signalData.getOriginalSignal(), signalData.getSampleRate());
         filterController.registerFilter(segmentedSgFilter);
         filterController.addDependency("SavitzkyGolay", "SegmentedSavitzkyGolay");
 
         // Add segmented Gaussian filter
-        SegmentedFilterAdapter segmentedGaussFilter = new SegmentedFilterAdapter(gaussianFilter, 0.7);
-        segmentedGaussFilter.setOriginalSignal(signalData.getOriginalSignal());
+        SegmentedFilterAdapter segmentedGaussFilter = new SegmentedFilterAdapter(gaussianFilter, SegmentedFilterAdapter.DEFAULT_DETECTION_LEVEL);
+        segmentedGaussFilter.setOriginalSignal(signalData.getOriginalSignal(), signalData.getSampleRate());
         filterController.registerFilter(segmentedGaussFilter);
         filterController.addDependency("Gaussian", "SegmentedGaussian");
         
         
-        SegmentedFilterAdapter segmentedLoessFilter = new SegmentedFilterAdapter(loessFilter, 0.7);
-        segmentedLoessFilter.setOriginalSignal(signalData.getOriginalSignal());
+        SegmentedFilterAdapter segmentedLoessFilter = new SegmentedFilterAdapter(loessFilter, SegmentedFilterAdapter.DEFAULT_DETECTION_LEVEL);
+        segmentedLoessFilter.setOriginalSignal(signalData.getOriginalSignal(), signalData.getSampleRate());
         filterController.registerFilter(segmentedLoessFilter);
         filterController.addDependency("Loess", "SegmentedLoess");
 
-        SegmentedFilterAdapter segmentedSplineFilter = new SegmentedFilterAdapter(splineFilter, 0.7);
-        segmentedSplineFilter.setOriginalSignal(signalData.getOriginalSignal());
+        SegmentedFilterAdapter segmentedSplineFilter = new SegmentedFilterAdapter(splineFilter, SegmentedFilterAdapter.DEFAULT_DETECTION_LEVEL);
+        segmentedSplineFilter.setOriginalSignal(signalData.getOriginalSignal(), signalData.getSampleRate());
         filterController.registerFilter(segmentedSplineFilter);
         filterController.addDependency("Spline", "SegmentedSpline");
 
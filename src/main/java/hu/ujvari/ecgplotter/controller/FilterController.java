@@ -34,7 +34,8 @@ public class FilterController {
         // Update all segmented filters with the new original signal
         for (FilterInterface filter : filters.values()) {
             if (filter instanceof SegmentedFilterAdapter) {
-                ((SegmentedFilterAdapter) filter).setOriginalSignal(signalData.getOriginalSignal());
+                ((SegmentedFilterAdapter) filter).setOriginalSignal(signalData.getOriginalSignal(),
+                                                                    signalData.getSampleRate());
             }
         }
     }
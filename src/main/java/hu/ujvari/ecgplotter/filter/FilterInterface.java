@@ -9,4 +9,12 @@ public interface FilterInterface {
     List<Double> filter(List<Double> signal);
     FilterParameters getParameters();
     void setParameters(FilterParameters parameters);
+    
+    /**
+     * @return true if the filter output is accurate up to the ends of its input,
+     * so segment-wise filtering needs no blending around the R peaks
+     */
+    default boolean preservesSegmentEdges() {
+        return false;
+    }
 }
\ No newline at end of file
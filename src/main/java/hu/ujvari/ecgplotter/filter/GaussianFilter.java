@@ -3,7 +3,9 @@ package hu.ujvari.ecgplotter.filter;
 import java.util.List;
 
 import hu.ujvari.ecgplotter.model.FilterParameters;
+import hu.ujvari.ecgprocessor.BoxGaussianFilter;
 import hu.ujvari.ecgprocessor.GaussianMovingAverage;
+import hu.ujvari.ecgprocessor.RecursiveGaussianFilter;
 
 public class GaussianFilter implements FilterInterface {
     private FilterParameters.GaussianParameters parameters;
@@ -19,6 +21,12 @@ public class GaussianFilter implements FilterInterface {
     
     @Override
     public List<Double> filter(List<Double> signal) {
+        if (parameters.getMode() == FilterParameters.GaussianParameters.Mode.RECURSIVE) {
+            return RecursiveGaussianFilter.forWindow(parameters.getWindowSize()).filter(signal);
+        }
+        if (parameters.getMode() == FilterParameters.GaussianParameters.Mode.BOX) {
+            return BoxGaussianFilter.forWindow(parameters.getWindowSize(), BoxGaussianFilter.DEFAULT_PASSES).filter(signal);
+        }
         GaussianMovingAverage gaussFilter = new GaussianMovingAverage(parameters.getWindowSize());
         return gaussFilter.filter(signal);
     }
@@ -27,7 +27,8 @@ public class LoessFilter implements FilterInterface {
         hu.ujvari.ecgprocessor.LoessFilter loessFilter = new hu.ujvari.ecgprocessor.LoessFilter(
             parameters.getWindowSize(),
             parameters.getPolynomialOrder(),
-            parameters.getBandwidth()
+            parameters.getBandwidth(),
+            parameters.getRobustIterations()
         );
         return loessFilter.filter(signal);
     }
@@ -3,33 +3,43 @@ package hu.ujvari.ecgplotter.filter;
 import java.util.ArrayList;
 import java.util.List;
 
+import hu.ujvari.ecgmodel.DoubleArrayList;
 import hu.ujvari.ecgplotter.model.FilterParameters;
 import hu.ujvari.ecgprocessor.ECGSegmenter;
 import hu.ujvari.ecgprocessor.ECGSegmenter.SegmentationResult;
+import hu.ujvari.ecgprocessor.PanTompkinsDetector;
 
 public class SegmentedFilterAdapter implements FilterInterface {
+    // Detection level of the Pan-Tompkins thresholds (between the noise and the signal level)
+    public static final double DEFAULT_DETECTION_LEVEL = PanTompkinsDetector.DEFAULT_THRESHOLD_FRACTION;
+
     private List<Double> originalSignal;
     private FilterInterface baseFilter;
     private FilterParameters.SegmentFilterParameters parameters;
     private List<Integer> lastDetectedPeaks = new ArrayList<>();
     private boolean peaksDetected = false;
-    
-    public SegmentedFilterAdapter(FilterInterface baseFilter, double rPeakThreshold) {
+    private double sampleRate = PanTompkinsDetector.DEFAULT_SAMPLE_RATE;
+
+    public SegmentedFilterAdapter(FilterInterface baseFilter, double detectionLevel) {
         this.baseFilter = baseFilter;
         this.parameters = new FilterParameters.SegmentFilterParameters(
             baseFilter.getName(),
-            rPeakThreshold,
+            detectionLevel,
             baseFilter.getParameters()
         );
     }
 
-    public void setOriginalSignal(List<Double> originalSignal) {
+    /**
+     * @param sampleRate Sampling rate of the signal in Hz; the detector's filters and windows depend on it
+     */
+    public void setOriginalSignal(List<Double> originalSignal, double sampleRate) {
         if (originalSignal == null) {
             System.err.println("[ERROR] Null originalSignal passed to SegmentedFilterAdapter");
             return;
         }
         
-        this.originalSignal = new ArrayList<>(originalSignal); // Create deep copy
+        this.originalSignal = DoubleArrayList.copyOf(originalSignal); // Create deep copy
+        this.sampleRate = sampleRate;
         this.peaksDetected = false; // R peaks must be re-detected if signal changes
         this.lastDetectedPeaks.clear(); // Clear previous R peaks
     }
@@ -55,15 +65,12 @@ public class SegmentedFilterAdapter implements FilterInterface {
 
         // Detect R peaks only once and reuse them
         if (!peaksDetected) {
-            // Calculate threshold based on maximum value of the signal
-            double maxValue = originalSignal.stream().mapToDouble(v -> v).max().orElse(0.0);
-            double actualThreshold = maxValue * parameters.getRPeakThreshold();
-            
-            System.out.println("[DEBUG] R peak detection called. Threshold: " + actualThreshold + 
-                            ", Max value: " + maxValue);
-            
+            // Adaptive thresholds: the parameter places them between the noise and the signal level
+            PanTompkinsDetector detector = new PanTompkinsDetector(sampleRate, parameters.getDetectionLevel());
+            System.out.println("[DEBUG] R peak detection called. Detection level: " + parameters.getDetectionLevel());
+
             // Detect R peaks on the original signal
-            this.lastDetectedPeaks = ECGSegmenter.detectRPeaks(originalSignal, actualThreshold);
+            this.lastDetectedPeaks = ECGSegmenter.detectRPeaks(originalSignal, detector);
             System.out.println("[DEBUG] Detected " + lastDetectedPeaks.size() + " R peaks");
             peaksDetected = true;
         } else {
@@ -71,11 +78,9 @@ public class SegmentedFilterAdapter implements FilterInterface {
         }
 
         // Apply segmented filtering based on detected R peaks
-        SegmentationResult result = ECGSegmenter.applyFilterBySegments(
-            signal,
-            baseFilter::filter,
-            lastDetectedPeaks
-        );
+        SegmentationResult result = baseFilter.preservesSegmentEdges()
+            ? ECGSegmenter.applyFilterBySegments(signal, baseFilter::filter, lastDetectedPeaks, 0)
+            : ECGSegmenter.applyFilterBySegments(signal, baseFilter::filter, lastDetectedPeaks);
 
         // Update R peaks with newly calculated indices
         this.lastDetectedPeaks = result.getRPeakIndices();
@@ -95,7 +100,7 @@ public class SegmentedFilterAdapter implements FilterInterface {
                 (FilterParameters.SegmentFilterParameters) parameters;
             
             // Check if threshold has changed
-            if (this.parameters.getRPeakThreshold() != segmentParams.getRPeakThreshold()) {
+            if (this.parameters.getDetectionLevel() != segmentParams.getDetectionLevel()) {
                 peaksDetected = false; // Redetect R peaks if threshold changed
             }
             
@@ -8,7 +8,11 @@ public class SgFilter implements FilterInterface {
     private FilterParameters.SavitzkyGolayParameters parameters;
     
     public SgFilter(int windowSize, int polynomialOrder) {
-        this.parameters = new FilterParameters.SavitzkyGolayParameters(windowSize, polynomialOrder);
+        this(windowSize, polynomialOrder, false);
+    }
+    
+    public SgFilter(int windowSize, int polynomialOrder, boolean fitEdges) {
+        this.parameters = new FilterParameters.SavitzkyGolayParameters(windowSize, polynomialOrder, fitEdges);
     }
     
     @Override
@@ -18,14 +22,22 @@ public class SgFilter implements FilterInterface {
     
     @Override
     public List<Double> filter(List<Double> signal) {
-        // We use the original SavitzkyGolayFilter class
+        // We use the original SavitzkyGolayFilter class (its weights come from the shared cache)
         SavitzkyGolayFilter sgFilter = new SavitzkyGolayFilter(
             parameters.getWindowSize(), 
-            parameters.getPolynomialOrder()
+            parameters.getPolynomialOrder(),
+            0,
+            parameters.isFitEdges() ? SavitzkyGolayFilter.BoundaryMode.POLYNOMIAL_FIT
+                                    : SavitzkyGolayFilter.BoundaryMode.ZERO_PADDING
         );
         return sgFilter.filter(signal);
     }
     
+    @Override
+    public boolean preservesSegmentEdges() {
+        return parameters.isFitEdges();
+    }
+    
     @Override
     public FilterParameters getParameters() {
         return parameters;
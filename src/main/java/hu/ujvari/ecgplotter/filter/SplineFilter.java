@@ -3,6 +3,7 @@ package hu.ujvari.ecgplotter.filter;
 import java.util.List;
 
 import hu.ujvari.ecgplotter.model.FilterParameters;
+import hu.ujvari.ecgprocessor.SmoothingSplineFilter;
 
 public class SplineFilter implements FilterInterface {
     private FilterParameters.SplineParameters parameters;
@@ -23,6 +24,9 @@ public class SplineFilter implements FilterInterface {
     
     @Override
     public List<Double> filter(List<Double> signal) {
+        if (parameters.getMode() == FilterParameters.SplineParameters.Mode.SMOOTHING) {
+            return new SmoothingSplineFilter(parameters.getLambda()).filter(signal);
+        }
         hu.ujvari.ecgprocessor.CubicSplineFilter splineFilter = 
             new hu.ujvari.ecgprocessor.CubicSplineFilter(parameters.getDownsampling());
         return splineFilter.filter(signal);
@@ -3,6 +3,7 @@ package hu.ujvari.ecgplotter.filter;
 import java.util.List;
 
 import hu.ujvari.ecgplotter.model.FilterParameters;
+import hu.ujvari.ecgprocessor.LiftingWavelet;
 
 public class WaveletFilter implements FilterInterface {
     private FilterParameters.WaveletParameters parameters;
@@ -26,10 +27,45 @@ public class WaveletFilter implements FilterInterface {
         hu.ujvari.ecgprocessor.WaveletFilter waveletFilter = 
             new hu.ujvari.ecgprocessor.WaveletFilter(
                 parameters.getLevel(),
-                parameters.getThreshold()
+                parameters.getThreshold(),
+                toFamily(parameters.getFamily()),
+                toTransform(parameters.getTransform()),
+                toRule(parameters.getRule())
             );
         return waveletFilter.filter(signal);
     }
+
+    // The model enums mirror the processor ones; mapped explicitly so a renamed
+    // or added constant fails to compile here instead of at filtering time
+
+    static LiftingWavelet.Family toFamily(FilterParameters.WaveletParameters.Family family) {
+        switch (family) {
+            case HAAR: return LiftingWavelet.Family.HAAR;
+            case DB4:  return LiftingWavelet.Family.DB4;
+            case SYM4: return LiftingWavelet.Family.SYM4;
+            default:   throw new IllegalArgumentException("Ismeretlen wavelet család: " + family);
+        }
+    }
+
+    static hu.ujvari.ecgprocessor.WaveletFilter.Transform toTransform(
+            FilterParameters.WaveletParameters.Transform transform) {
+        switch (transform) {
+            case DECIMATED:  return hu.ujvari.ecgprocessor.WaveletFilter.Transform.DECIMATED;
+            case STATIONARY: return hu.ujvari.ecgprocessor.WaveletFilter.Transform.STATIONARY;
+            default:         throw new IllegalArgumentException("Ismeretlen transzformáció: " + transform);
+        }
+    }
+
+    static hu.ujvari.ecgprocessor.WaveletFilter.ThresholdRule toRule(
+            FilterParameters.WaveletParameters.ThresholdRule rule) {
+        switch (rule) {
+            case FIXED:     return hu.ujvari.ecgprocessor.WaveletFilter.ThresholdRule.FIXED;
+            case UNIVERSAL: return hu.ujvari.ecgprocessor.WaveletFilter.ThresholdRule.UNIVERSAL;
+            case SURE:      return hu.ujvari.ecgprocessor.WaveletFilter.ThresholdRule.SURE;
+            case BAYES:     return hu.ujvari.ecgprocessor.WaveletFilter.ThresholdRule.BAYES;
+            default:        throw new IllegalArgumentException("Ismeretlen küszöbszabály: " + rule);
+        }
+    }
     
     @Override
     public FilterParameters getParameters() {
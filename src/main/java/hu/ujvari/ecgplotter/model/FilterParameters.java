@@ -1,5 +1,6 @@
 package hu.ujvari.ecgplotter.model;
 
+
 public abstract class FilterParameters {
     private String filterName;
     
@@ -12,11 +13,31 @@ public abstract class FilterParameters {
     }
     
     public static class GaussianParameters extends FilterParameters {
+        /**
+         * Implementation used for the smoothing. Every mode repeats the edge
+         * sample beyond both ends of the signal, so they differ only in how
+         * closely they follow the sampled Gaussian kernel, not at the edges.
+         */
+        public enum Mode {
+            // Direct convolution with the sampled kernel, O(windowSize) per sample
+            EXACT,
+            // Recursive forward-backward IIR approximation, O(1) per sample
+            RECURSIVE,
+            // Cascaded running-sum box filters, O(1) per sample
+            BOX
+        }
+        
         private int windowSize;
+        private Mode mode;
         
         public GaussianParameters(int windowSize) {
+            this(windowSize, Mode.EXACT);
+        }
+        
+        public GaussianParameters(int windowSize, Mode mode) {
             super("Gaussian");
             this.windowSize = windowSize;
+            this.mode = mode;
         }
         
         public int getWindowSize() {
@@ -26,16 +47,31 @@ public abstract class FilterParameters {
         public void setWindowSize(int windowSize) {
             this.windowSize = windowSize;
         }
+        
+        public Mode getMode() {
+            return mode;
+        }
+        
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
     }
     
     public static class SavitzkyGolayParameters extends FilterParameters {
         private int windowSize;
         private int polynomialOrder;
+        // Fit the edges with off-centre kernels instead of zero padding
+        private boolean fitEdges;
         
         public SavitzkyGolayParameters(int windowSize, int polynomialOrder) {
+            this(windowSize, polynomialOrder, false);
+        }
+        
+        public SavitzkyGolayParameters(int windowSize, int polynomialOrder, boolean fitEdges) {
             super("SavitzkyGolay");
             this.windowSize = windowSize;
             this.polynomialOrder = polynomialOrder;
+            this.fitEdges = fitEdges;
         }
         
         public int getWindowSize() {
@@ -53,18 +89,32 @@ public abstract class FilterParameters {
         public void setPolynomialOrder(int polynomialOrder) {
             this.polynomialOrder = polynomialOrder;
         }
+        
+        public boolean isFitEdges() {
+            return fitEdges;
+        }
+        
+        public void setFitEdges(boolean fitEdges) {
+            this.fitEdges = fitEdges;
+        }
     }
     
     public static class LoessParameters extends FilterParameters {
         private int windowSize;
         private int polynomialOrder;
         private double bandwidth;
+        private int robustIterations;
         
         public LoessParameters(int windowSize, int polynomialOrder, double bandwidth) {
+            this(windowSize, polynomialOrder, bandwidth, 0);
+        }
+        
+        public LoessParameters(int windowSize, int polynomialOrder, double bandwidth, int robustIterations) {
             super("Loess");
             this.windowSize = windowSize;
             this.polynomialOrder = polynomialOrder;
             this.bandwidth = bandwidth;
+            this.robustIterations = robustIterations;
         }
         
         // Getters and setters
@@ -74,29 +124,102 @@ public abstract class FilterParameters {
         public void setPolynomialOrder(int polynomialOrder) { this.polynomialOrder = polynomialOrder; }
         public double getBandwidth() { return bandwidth; }
         public void setBandwidth(double bandwidth) { this.bandwidth = bandwidth; }
+        public int getRobustIterations() { return robustIterations; }
+        public void setRobustIterations(int robustIterations) { this.robustIterations = robustIterations; }
     }
     
     public static class SplineParameters extends FilterParameters {
+        /**
+         * Kind of spline fitted to the signal
+         */
+        public enum Mode {
+            // Natural spline through every downsampling-th sample
+            INTERPOLATION,
+            // Penalised smoothing spline over every sample, controlled by lambda
+            SMOOTHING
+        }
+        
         private int downsampling;
+        private Mode mode;
+        private double lambda;
         
         public SplineParameters(int downsampling) {
+            this(downsampling, Mode.INTERPOLATION, 100.0);
+        }
+        
+        public SplineParameters(int downsampling, Mode mode, double lambda) {
             super("Spline");
             this.downsampling = downsampling;
+            this.mode = mode;
+            this.lambda = lambda;
         }
         
         // Getters and setters
         public int getDownsampling() { return downsampling; }
         public void setDownsampling(int downsampling) { this.downsampling = downsampling; }
+        public Mode getMode() { return mode; }
+        public void setMode(Mode mode) { this.mode = mode; }
+        public double getLambda() { return lambda; }
+        public void setLambda(double lambda) { this.lambda = lambda; }
     }
     
     public static class WaveletParameters extends FilterParameters {
+        /**
+         * Wavelet used for the decomposition
+         */
+        public enum Family {
+            HAAR,
+            // Daubechies, 4 taps
+            DB4,
+            // Symlet, 8 taps
+            SYM4
+        }
+
+        /**
+         * Decimated (fast) or stationary (shift-invariant) decomposition
+         */
+        public enum Transform {
+            DECIMATED,
+            STATIONARY
+        }
+
+        /**
+         * How the thresholds are chosen: the given value or estimated from the noise
+         */
+        public enum ThresholdRule {
+            FIXED,
+            UNIVERSAL,
+            SURE,
+            BAYES
+        }
+
         private int level;
         private double threshold;
+        private Family family;
+        private Transform transform;
+        private ThresholdRule rule;
         
         public WaveletParameters(int level, double threshold) {
+            this(level, threshold, Family.HAAR);
+        }
+        
+        public WaveletParameters(int level, double threshold, Family family) {
+            this(level, threshold, family, Transform.DECIMATED);
+        }
+        
+        public WaveletParameters(int level, double threshold, Family family,
+                                 Transform transform) {
+            this(level, threshold, family, transform, ThresholdRule.FIXED);
+        }
+        
+        public WaveletParameters(int level, double threshold, Family family,
+                                 Transform transform, ThresholdRule rule) {
             super("Wavelet");
             this.level = level;
             this.threshold = threshold;
+            this.family = family;
+            this.transform = transform;
+            this.rule = rule;
         }
         
         // Getters and setters
@@ -104,6 +227,12 @@ public abstract class FilterParameters {
         public void setLevel(int level) { this.level = level; }
         public double getThreshold() { return threshold; }
         public void setThreshold(double threshold) { this.threshold = threshold; }
+        public Family getFamily() { return family; }
+        public void setFamily(Family family) { this.family = family; }
+        public Transform getTransform() { return transform; }
+        public void setTransform(Transform transform) { this.transform = transform; }
+        public ThresholdRule getRule() { return rule; }
+        public void setRule(ThresholdRule rule) { this.rule = rule; }
     }
 
     /**
@@ -111,20 +240,21 @@ public abstract class FilterParameters {
      */
     public static class SegmentFilterParameters extends FilterParameters {
         private String baseFilterName;
-        private double rPeakThreshold;
+        private double detectionLevel;
         private FilterParameters baseFilterParameters;
 
         /**
          * Parameterized constructor
          * @param baseFilterName Name of the base filter
-         * @param rPeakThreshold Threshold value for R peak detection (between 0.0 and 1.0)
+         * @param detectionLevel Position of the R peak detector's adaptive threshold between its
+         *                       noise (0.0) and signal (1.0) level; not a fraction of the maximum
          * @param baseFilterParameters Parameters of the base filter
          */
-        public SegmentFilterParameters(String baseFilterName, double rPeakThreshold, 
+        public SegmentFilterParameters(String baseFilterName, double detectionLevel, 
                                 FilterParameters baseFilterParameters) {
             super("Segmented" + baseFilterName); // Call parent constructor
             this.baseFilterName = baseFilterName;
-            this.rPeakThreshold = rPeakThreshold;
+            this.detectionLevel = detectionLevel;
             this.baseFilterParameters = baseFilterParameters;
         }
 
@@ -132,8 +262,8 @@ public abstract class FilterParameters {
             return baseFilterName;
         }
 
-        public double getRPeakThreshold() {
-            return rPeakThreshold;
+        public double getDetectionLevel() {
+            return detectionLevel;
         }
 
         public FilterParameters getBaseFilterParameters() {
@@ -144,8 +274,8 @@ public abstract class FilterParameters {
             this.baseFilterName = baseFilterName;
         }
 
-        public void setRPeakThreshold(double rPeakThreshold) {
-            this.rPeakThreshold = rPeakThreshold;
+        public void setDetectionLevel(double detectionLevel) {
+            this.detectionLevel = detectionLevel;
         }
 
         public void setBaseFilterParameters(FilterParameters baseFilterParameters) {
@@ -156,7 +286,7 @@ public abstract class FilterParameters {
         public String toString() {
             return "SegmentFilterParameters{" +
                 "baseFilterName='" + baseFilterName + '\'' +
-                ", rPeakThreshold=" + rPeakThreshold +
+                ", detectionLevel=" + detectionLevel +
                 ", baseFilterParameters=" + baseFilterParameters +
                 '}';
         }
@@ -0,0 +1,138 @@
+package hu.ujvari.ecgplotter.model;
+
+/**
+ * Range min/max index over one series, built once in O(n).
+ * The series is cut into fixed blocks; a sparse table over the block
+ * minima/maxima answers the whole-block part of a query in O(1), and the
+ * two partial blocks at the ends are scanned (at most 2 * BLOCK_SIZE samples).
+ * Memory is n/BLOCK_SIZE * log(n/BLOCK_SIZE) doubles instead of n * log n
+ * for a plain sparse table.
+ */
+public class RangeMinMaxIndex {
+    private static final int BLOCK_SHIFT = 5;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private final double[] values;
+    // minTable[k][b] = min of blocks b .. b + 2^k - 1 (same for maxTable)
+    private final double[][] minTable;
+    private final double[][] maxTable;
+
+    /**
+     * @param values The series; it is referenced, not copied, and must not change afterwards
+     */
+    public RangeMinMaxIndex(double[] values) {
+        this.values = values;
+
+        int blockCount = (values.length + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        int levels = blockCount > 0 ? 32 - Integer.numberOfLeadingZeros(blockCount) : 0;
+        minTable = new double[levels][];
+        maxTable = new double[levels][];
+
+        if (levels == 0) {
+            return;
+        }
+
+        double[] blockMin = new double[blockCount];
+        double[] blockMax = new double[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            int start = b << BLOCK_SHIFT;
+            int end = Math.min(values.length, start + BLOCK_SIZE);
+            double min = values[start];
+            double max = values[start];
+            for (int i = start + 1; i < end; i++) {
+                if (values[i] < min) min = values[i];
+                if (values[i] > max) max = values[i];
+            }
+            blockMin[b] = min;
+            blockMax[b] = max;
+        }
+        minTable[0] = blockMin;
+        maxTable[0] = blockMax;
+
+        for (int k = 1; k < levels; k++) {
+            int span = 1 << (k - 1);
+            int length = blockCount - (1 << k) + 1;
+            double[] prevMin = minTable[k - 1];
+            double[] prevMax = maxTable[k - 1];
+            double[] min = new double[length];
+            double[] max = new double[length];
+            for (int b = 0; b < length; b++) {
+                min[b] = Math.min(prevMin[b], prevMin[b + span]);
+                max[b] = Math.max(prevMax[b], prevMax[b + span]);
+            }
+            minTable[k] = min;
+            maxTable[k] = max;
+        }
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return Minimum of the whole series (+Infinity if empty)
+     */
+    public double getMin() {
+        return values.length > 0 ? min(0, values.length - 1) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return Maximum of the whole series (-Infinity if empty)
+     */
+    public double getMax() {
+        return values.length > 0 ? max(0, values.length - 1) : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Minimum over [from, to] (both inclusive, clamped to the series)
+     */
+    public double min(int from, int to) {
+        return query(from, to, true);
+    }
+
+    /**
+     * Maximum over [from, to] (both inclusive, clamped to the series)
+     */
+    public double max(int from, int to) {
+        return query(from, to, false);
+    }
+
+    private double query(int from, int to, boolean findMin) {
+        from = Math.max(0, from);
+        to = Math.min(values.length - 1, to);
+        if (from > to) {
+            return findMin ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        }
+
+        int firstFullBlock = (from + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        int lastFullBlock = ((to + 1) >> BLOCK_SHIFT) - 1;
+
+        if (firstFullBlock > lastFullBlock) {
+            // The range lies within one or two partial blocks
+            return scan(from, to, findMin);
+        }
+
+        double result = scan(from, (firstFullBlock << BLOCK_SHIFT) - 1, findMin);
+        double tail = scan((lastFullBlock + 1) << BLOCK_SHIFT, to, findMin);
+        result = findMin ? Math.min(result, tail) : Math.max(result, tail);
+
+        // Two overlapping power-of-two spans cover the full blocks
+        int blocks = lastFullBlock - firstFullBlock + 1;
+        int k = 31 - Integer.numberOfLeadingZeros(blocks);
+        double[][] table = findMin ? minTable : maxTable;
+        double a = table[k][firstFullBlock];
+        double b = table[k][lastFullBlock - (1 << k) + 1];
+        return findMin ? Math.min(result, Math.min(a, b)) : Math.max(result, Math.max(a, b));
+    }
+
+    private double scan(int from, int to, boolean findMin) {
+        double result = findMin ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        for (int i = from; i <= to; i++) {
+            double value = values[i];
+            if (findMin ? value < result : value > result) {
+                result = value;
+            }
+        }
+        return result;
+    }
+}
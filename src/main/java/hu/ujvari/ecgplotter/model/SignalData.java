@@ -1,142 +1,297 @@
 package hu.ujvari.ecgplotter.model;
 
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
+import hu.ujvari.ecgmodel.DoubleArrayList;
+
+/**
+ * Signal data shown by the plotter.
+ * The state lives in an immutable Snapshot published through an atomic
+ * reference: writers (filter workers, navigation) build a new snapshot with
+ * copy-on-write of the series map, readers (the render thread) take the
+ * current one without locking or copying and always see a consistent state.
+ */
 public class SignalData {
-    private List<Double> originalSignal;
-    private Map<String, List<Double>> filteredSignals = new HashMap<>();
-    private double minValue = Double.MAX_VALUE;
-    private double maxValue = Double.MIN_VALUE;
-    private int viewStartIdx = 0;
-    private int viewEndIdx = 0;
-    private int zoomLevel = 1;
-    private final Object lock = new Object();
-    
+    public static final String ORIGINAL_SERIES = "Original";
+    // Rate assumed for signals given without one
+    public static final double DEFAULT_SAMPLE_RATE = 1000.0;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
     public SignalData(List<Double> originalSignal) {
+        this(originalSignal, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param sampleRate Sampling rate of the signal in Hz
+     */
+    public SignalData(List<Double> originalSignal, double sampleRate) {
         if (originalSignal == null) {
             System.err.println("Null signal provided to SignalData constructor");
-            this.originalSignal = new ArrayList<>();
-        } else {
-            this.originalSignal = new ArrayList<>(originalSignal);
         }
-        updateMinMaxValues();
-        resetViewRange();
+        snapshot.set(Snapshot.of(copyOriginal(originalSignal), sampleRate));
     }
-    
+
     /*public SignalData(List<Double> originalSignal) {
         setOriginalSignal(originalSignal);
     }
     */
 
+    /**
+     * Replaces the original signal, drops the filtered series and resets the view;
+     * the signal is taken to be sampled at DEFAULT_SAMPLE_RATE
+     */
     public void setOriginalSignal(List<Double> originalSignal) {
+        setOriginalSignal(originalSignal, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Replaces the original signal, drops the filtered series and resets the view
+     */
+    public void setOriginalSignal(List<Double> originalSignal, double sampleRate) {
+        snapshot.set(Snapshot.of(copyOriginal(originalSignal), sampleRate));
+    }
+
+    private static double[] copyOriginal(List<Double> originalSignal) {
         if (originalSignal == null) {
-            this.originalSignal = new ArrayList<>();
-        } else {
-            this.originalSignal = new ArrayList<>(originalSignal);
+            return new double[0];
         }
-        updateMinMaxValues();
-        resetViewRange();
+        return DoubleArrayList.toArray(originalSignal);
+    }
+
+    /**
+     * @return The current state; it never changes, later updates publish a new snapshot
+     */
+    public Snapshot getSnapshot() {
+        return snapshot.get();
     }
-    
+
     public List<Double> getOriginalSignal() {
-        return originalSignal;
+        return snapshot.get().getOriginalSignal();
     }
-    
+
+    /**
+     * Publishes a filtered series. The values are copied, so neither the
+     * filter nor the readers can change a published snapshot; the series is
+     * exposed as a read-only list.
+     */
     public void addFilteredSignal(String filterName, List<Double> filteredSignal) {
-        synchronized(lock) {
-            if (filteredSignal != null) {
-                filteredSignals.put(filterName, new ArrayList<>(filteredSignal));
-                updateMinMaxValues();
-            }
+        if (filteredSignal == null) {
+            return;
         }
+        double[] values = DoubleArrayList.toArray(filteredSignal);
+        // The index is built outside the update so a retried CAS does not rebuild it
+        RangeMinMaxIndex range = new RangeMinMaxIndex(values);
+        List<Double> stored = DoubleArrayList.unmodifiable(values);
+        update(current -> current.withSeries(filterName, stored, range));
     }
-    
+
     public List<Double> getFilteredSignal(String filterName) {
-        System.out.println("[DEBUG] Filtered signals: " + filteredSignals.keySet());
-        return filteredSignals.get(filterName);
+        Snapshot current = snapshot.get();
+        System.out.println("[DEBUG] Filtered signals: " + current.getFilteredSignals().keySet());
+        return current.getFilteredSignal(filterName);
     }
-    
+
+    /**
+     * @return The filtered series of the current snapshot (read-only, not a copy)
+     */
     public Map<String, List<Double>> getAllFilteredSignals() {
-        synchronized(lock) {
-            // We make a copy of the Map to keep it safe
-            return new HashMap<>(filteredSignals);
-        }
+        return snapshot.get().getFilteredSignals();
     }
-    
-    public void updateMinMaxValues() {
-        synchronized(lock) {
-            minValue = Double.MAX_VALUE;
-            maxValue = Double.MIN_VALUE;
-            
-            // Check original signal
-            for (Double value : originalSignal) {
-                if (value < minValue) minValue = value;
-                if (value > maxValue) maxValue = value;
-            }
-            
-            // Check all filtered signals
-            for (List<Double> signal : filteredSignals.values()) {
-                for (Double value : signal) {
-                    if (value < minValue) minValue = value;
-                    if (value > maxValue) maxValue = value;
-                }
-            }
-            
-            // Add some padding for better visualization
-            double range = maxValue - minValue;
-            minValue -= range * 0.05;
-            maxValue += range * 0.05;
-        }
+
+    /**
+     * Y range of the given series over the current viewport, see Snapshot.getViewportRange
+     */
+    public double[] getViewportRange(Collection<String> seriesNames) {
+        return snapshot.get().getViewportRange(seriesNames);
     }
-    
+
     public void resetViewRange() {
-        viewStartIdx = 0;
-        viewEndIdx = originalSignal.size() > 0 ? originalSignal.size() - 1 : 0;
-        zoomLevel = 1;
+        update(current -> current.withViewport(0, current.getSignalSize() - 1, 1));
     }
-    
+
     public void setViewport(int startIdx, int endIdx) {
-        this.viewStartIdx = Math.max(0, startIdx);
-        this.viewEndIdx = Math.min(originalSignal.size() - 1, endIdx);
+        update(current -> current.withViewport(startIdx, endIdx, current.getZoomLevel()));
     }
-    
+
     public void moveViewport(int points) {
-        int range = viewEndIdx - viewStartIdx;
-        
-        viewStartIdx += points;
-        viewEndIdx += points;
-        
-        // Check bounds
-        if (viewStartIdx < 0) {
-            viewStartIdx = 0;
-            viewEndIdx = range;
+        update(current -> {
+            int size = current.getSignalSize();
+            int range = current.getViewEndIdx() - current.getViewStartIdx();
+
+            int viewStartIdx = current.getViewStartIdx() + points;
+            int viewEndIdx = current.getViewEndIdx() + points;
+
+            // Check bounds
+            if (viewStartIdx < 0) {
+                viewStartIdx = 0;
+                viewEndIdx = range;
+            }
+
+            if (viewEndIdx >= size) {
+                viewEndIdx = size - 1;
+                viewStartIdx = Math.max(0, viewEndIdx - range);
+            }
+            return current.withViewport(viewStartIdx, viewEndIdx, current.getZoomLevel());
+        });
+    }
+
+    public void setZoomLevel(int zoomLevel) {
+        update(current -> {
+            int size = current.getSignalSize();
+            int level = Math.max(1, zoomLevel);
+
+            // Adjust viewport based on zoom
+            int center = (current.getViewStartIdx() + current.getViewEndIdx()) / 2;
+            int range = size / level;
+            return current.withViewport(center - range / 2, center + range / 2, level);
+        });
+    }
+
+    private void update(UnaryOperator<Snapshot> change) {
+        snapshot.updateAndGet(change);
+    }
+
+    // Getters (each reads the current snapshot; use getSnapshot() for several consistent values)
+    public double getMinValue() { return snapshot.get().getMinValue(); }
+    public double getMaxValue() { return snapshot.get().getMaxValue(); }
+    public int getViewStartIdx() { return snapshot.get().getViewStartIdx(); }
+    public int getViewEndIdx() { return snapshot.get().getViewEndIdx(); }
+    public int getZoomLevel() { return snapshot.get().getZoomLevel(); }
+    public int getSignalSize() { return snapshot.get().getSignalSize(); }
+    public double getSampleRate() { return snapshot.get().getSampleRate(); }
+
+    /**
+     * Immutable state of the plotted data: the series, their range indexes,
+     * the padded global range and the viewport. The series are read-only
+     * lists over arrays that only the snapshot holds.
+     */
+    public static final class Snapshot {
+        private final List<Double> originalSignal;
+        private final RangeMinMaxIndex originalRange;
+        private final Map<String, List<Double>> filteredSignals;
+        private final Map<String, RangeMinMaxIndex> filteredRanges;
+        private final double minValue;
+        private final double maxValue;
+        private final int viewStartIdx;
+        private final int viewEndIdx;
+        private final int zoomLevel;
+        private final double sampleRate;
+
+        private Snapshot(List<Double> originalSignal, RangeMinMaxIndex originalRange,
+                         Map<String, List<Double>> filteredSignals, Map<String, RangeMinMaxIndex> filteredRanges,
+                         double minValue, double maxValue, int viewStartIdx, int viewEndIdx, int zoomLevel,
+                         double sampleRate) {
+            this.originalSignal = originalSignal;
+            this.originalRange = originalRange;
+            this.filteredSignals = filteredSignals;
+            this.filteredRanges = filteredRanges;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            this.viewStartIdx = viewStartIdx;
+            this.viewEndIdx = viewEndIdx;
+            this.zoomLevel = zoomLevel;
+            this.sampleRate = sampleRate;
+        }
+
+        // The array is owned by the snapshot from here on
+        static Snapshot of(double[] originalValues, double sampleRate) {
+            RangeMinMaxIndex originalRange = new RangeMinMaxIndex(originalValues);
+            Map<String, List<Double>> noSignals = Collections.emptyMap();
+            Map<String, RangeMinMaxIndex> noRanges = Collections.emptyMap();
+            return build(DoubleArrayList.unmodifiable(originalValues), originalRange, noSignals, noRanges,
+                         0, originalValues.length - 1, 1, sampleRate);
+        }
+
+        /**
+         * Derives the global range from the per-series range indexes,
+         * O(number of series) instead of rescanning every sample
+         */
+        private static Snapshot build(List<Double> originalSignal, RangeMinMaxIndex originalRange,
+                                      Map<String, List<Double>> filteredSignals, Map<String, RangeMinMaxIndex> filteredRanges,
+                                      int viewStartIdx, int viewEndIdx, int zoomLevel, double sampleRate) {
+            double min = originalRange.getMin();
+            double max = originalRange.getMax();
+
+            for (RangeMinMaxIndex range : filteredRanges.values()) {
+                min = Math.min(min, range.getMin());
+                max = Math.max(max, range.getMax());
+            }
+
+            if (min > max) {
+                // No samples at all
+                min = 0.0;
+                max = 0.0;
+            }
+
+            // Add some padding for better visualization
+            double padding = (max - min) * 0.05;
+
+            // Clamp the viewport to the signal
+            int size = originalSignal.size();
+            viewStartIdx = Math.max(0, viewStartIdx);
+            viewEndIdx = Math.max(0, Math.min(size - 1, viewEndIdx));
+
+            return new Snapshot(originalSignal, originalRange, filteredSignals, filteredRanges,
+                                min - padding, max + padding, viewStartIdx, viewEndIdx, zoomLevel, sampleRate);
+        }
+
+        Snapshot withSeries(String filterName, List<Double> series, RangeMinMaxIndex range) {
+            Map<String, List<Double>> signals = new HashMap<>(filteredSignals);
+            Map<String, RangeMinMaxIndex> ranges = new HashMap<>(filteredRanges);
+            signals.put(filterName, series);
+            ranges.put(filterName, range);
+            return build(originalSignal, originalRange,
+                         Collections.unmodifiableMap(signals), Collections.unmodifiableMap(ranges),
+                         viewStartIdx, viewEndIdx, zoomLevel, sampleRate);
+        }
+
+        Snapshot withViewport(int startIdx, int endIdx, int zoom) {
+            return build(originalSignal, originalRange, filteredSignals, filteredRanges,
+                         startIdx, endIdx, zoom, sampleRate);
         }
-        
-        if (viewEndIdx >= originalSignal.size()) {
-            viewEndIdx = originalSignal.size() - 1;
-            viewStartIdx = Math.max(0, viewEndIdx - range);
+
+        /**
+         * Y range of the given series over the viewport, with the same
+         * 5% padding as getMinValue/getMaxValue. Every series is answered by its
+         * range index in O(1), independent of the viewport width.
+         * @param seriesNames Filter names, ORIGINAL_SERIES for the original signal
+         * @return {min, max}, or null if none of the series has samples in the viewport
+         */
+        public double[] getViewportRange(Collection<String> seriesNames) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+
+            for (String name : seriesNames) {
+                RangeMinMaxIndex range = ORIGINAL_SERIES.equals(name) ? originalRange : filteredRanges.get(name);
+                if (range == null) continue;
+                min = Math.min(min, range.min(viewStartIdx, viewEndIdx));
+                max = Math.max(max, range.max(viewStartIdx, viewEndIdx));
+            }
+
+            if (min > max) {
+                return null;
+            }
+            double padding = (max - min) * 0.05;
+            return new double[] {min - padding, max + padding};
         }
+
+        public List<Double> getOriginalSignal() { return originalSignal; }
+        public List<Double> getFilteredSignal(String filterName) { return filteredSignals.get(filterName); }
+        public Map<String, List<Double>> getFilteredSignals() { return filteredSignals; }
+        public double getMinValue() { return minValue; }
+        public double getMaxValue() { return maxValue; }
+        public int getViewStartIdx() { return viewStartIdx; }
+        public int getViewEndIdx() { return viewEndIdx; }
+        public int getZoomLevel() { return zoomLevel; }
+        public int getSignalSize() { return originalSignal.size(); }
+        public double getSampleRate() { return sampleRate; }
     }
-    
-    public void setZoomLevel(int zoomLevel) {
-        this.zoomLevel = Math.max(1, zoomLevel);
-        
-        // Adjust viewport based on zoom
-        int center = (viewStartIdx + viewEndIdx) / 2;
-        int range = originalSignal.size() / this.zoomLevel;
-        viewStartIdx = Math.max(0, center - range / 2);
-        viewEndIdx = Math.min(originalSignal.size() - 1, center + range / 2);
-    }
-    
-    // Getters
-    public double getMinValue() { return minValue; }
-    public double getMaxValue() { return maxValue; }
-    public int getViewStartIdx() { return viewStartIdx; }
-    public int getViewEndIdx() { return viewEndIdx; }
-    public int getZoomLevel() { return zoomLevel; }
-    public int getSignalSize() { return originalSignal.size(); }
-}
\ No newline at end of file
+}
@@ -10,6 +10,8 @@ import hu.ujvari.ecgplotter.model.FilterParameters;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Spinner;
 import javafx.scene.control.Tab;
@@ -42,10 +44,15 @@ public class FilterControlPanel extends TabPane {
         windowSpinner.setEditable(true);
         windowSpinner.setPrefWidth(80);
         
+        Label modeLabel = new Label("Mode:");
+        ComboBox<FilterParameters.GaussianParameters.Mode> modeComboBox = new ComboBox<>();
+        modeComboBox.getItems().addAll(FilterParameters.GaussianParameters.Mode.values());
+        modeComboBox.setValue(FilterParameters.GaussianParameters.Mode.EXACT);
+        
         Button applyButton = new Button("Apply");
         applyButton.setOnAction(e -> {
             FilterParameters.GaussianParameters params = 
-                new FilterParameters.GaussianParameters(windowSpinner.getValue());
+                new FilterParameters.GaussianParameters(windowSpinner.getValue(), modeComboBox.getValue());
             filterController.updateFilterParameters("Gaussian", params);
             filterController.applyFilter("Gaussian").thenRun(() -> {
                 Platform.runLater(() -> {
@@ -56,7 +63,9 @@ public class FilterControlPanel extends TabPane {
         
         pane.add(windowLabel, 0, 0);
         pane.add(windowSpinner, 1, 0);
-        pane.add(applyButton, 0, 1, 2, 1);
+        pane.add(modeLabel, 0, 1);
+        pane.add(modeComboBox, 1, 1);
+        pane.add(applyButton, 0, 2, 2, 1);
         
         Tab tab = new Tab("Gaussian", pane);
         filterTabs.put("Gaussian", tab);
@@ -79,12 +88,16 @@ public class FilterControlPanel extends TabPane {
         orderSpinner.setEditable(true);
         orderSpinner.setPrefWidth(80);
         
+        CheckBox fitEdgesCheckBox = new CheckBox("Fit edges");
+        fitEdgesCheckBox.setSelected(true);
+        
         Button applyButton = new Button("Apply");
         applyButton.setOnAction(e -> {
             FilterParameters.SavitzkyGolayParameters params = 
                 new FilterParameters.SavitzkyGolayParameters(
                     windowSpinner.getValue(), 
-                    orderSpinner.getValue()
+                    orderSpinner.getValue(),
+                    fitEdgesCheckBox.isSelected()
                 );
             filterController.updateFilterParameters("SavitzkyGolay", params);
             filterController.applyFilter("SavitzkyGolay").thenRun(() -> {
@@ -100,7 +113,8 @@ public class FilterControlPanel extends TabPane {
         pane.add(windowSpinner, 1, 0);
         pane.add(orderLabel, 0, 1);
         pane.add(orderSpinner, 1, 1);
-        pane.add(applyButton, 0, 2, 2, 1);
+        pane.add(fitEdgesCheckBox, 0, 2, 2, 1);
+        pane.add(applyButton, 0, 3, 2, 1);
         
         Tab tab = new Tab("Savitzky-Golay", pane);
         filterTabs.put("SavitzkyGolay", tab);
@@ -119,7 +133,7 @@ public class FilterControlPanel extends TabPane {
         windowSpinner.setPrefWidth(80);
         
         Label orderLabel = new Label("Polynomial Order:");
-        Spinner<Integer> orderSpinner = new Spinner<>(1, 1, 1, 1);
+        Spinner<Integer> orderSpinner = new Spinner<>(0, 3, 2, 1);
         orderSpinner.setEditable(true);
         orderSpinner.setPrefWidth(80);
         
@@ -128,13 +142,19 @@ public class FilterControlPanel extends TabPane {
         bandwidthSpinner.setEditable(true);
         bandwidthSpinner.setPrefWidth(80);
         
+        Label robustLabel = new Label("Robust Iterations:");
+        Spinner<Integer> robustSpinner = new Spinner<>(0, 10, 0, 1);
+        robustSpinner.setEditable(true);
+        robustSpinner.setPrefWidth(80);
+        
         Button applyButton = new Button("Apply");
         applyButton.setOnAction(e -> {
         FilterParameters.LoessParameters loessParams =
             new FilterParameters.LoessParameters(
                 windowSpinner.getValue(),
                 orderSpinner.getValue(),
-                bandwidthSpinner.getValue()
+                bandwidthSpinner.getValue(),
+                robustSpinner.getValue()
             );
 
         filterController.updateFilterParameters("Loess", loessParams);
@@ -143,7 +163,7 @@ public class FilterControlPanel extends TabPane {
         FilterParameters.SegmentFilterParameters segmentedParams =
             new FilterParameters.SegmentFilterParameters(
                 "Loess",
-                0.7,
+                SegmentedFilterAdapter.DEFAULT_DETECTION_LEVEL,
                 loessParams
             );
         filterController.updateFilterParameters("SegmentedLoess", segmentedParams);
@@ -166,7 +186,9 @@ public class FilterControlPanel extends TabPane {
         pane.add(orderSpinner, 1, 1);
         pane.add(bandwidthLabel, 0, 2);
         pane.add(bandwidthSpinner, 1, 2);
-        pane.add(applyButton, 0, 3, 2, 1);
+        pane.add(robustLabel, 0, 3);
+        pane.add(robustSpinner, 1, 3);
+        pane.add(applyButton, 0, 4, 2, 1);
         
         Tab tab = new Tab("Loess", pane);
         filterTabs.put("Loess", tab);
@@ -184,6 +206,16 @@ public class FilterControlPanel extends TabPane {
         downsamplingSpinner.setEditable(true);
         downsamplingSpinner.setPrefWidth(80);
         
+        Label modeLabel = new Label("Mode:");
+        ComboBox<FilterParameters.SplineParameters.Mode> modeComboBox = new ComboBox<>();
+        modeComboBox.getItems().addAll(FilterParameters.SplineParameters.Mode.values());
+        modeComboBox.setValue(FilterParameters.SplineParameters.Mode.INTERPOLATION);
+        
+        // lambda spans several decades, so the spinner sets its exponent
+        Label lambdaLabel = new Label("Smoothing (log10 λ):");
+        Spinner<Double> lambdaSpinner = new Spinner<>(-2.0, 8.0, 2.0, 0.5);
+        lambdaSpinner.setEditable(true);
+        lambdaSpinner.setPrefWidth(80);
         
         Button applyButton = new Button("Apply");
         applyButton.setOnAction(e -> {
@@ -192,7 +224,11 @@ public class FilterControlPanel extends TabPane {
             
             // Basefilter parameters
             FilterParameters.SplineParameters splineParams = 
-                new FilterParameters.SplineParameters(spinnerValue);
+                new FilterParameters.SplineParameters(
+                    spinnerValue,
+                    modeComboBox.getValue(),
+                    Math.pow(10.0, lambdaSpinner.getValue())
+                );
             
             System.out.println("SplineParameters létrehozva: " + splineParams.getDownsampling());
             
@@ -203,7 +239,7 @@ public class FilterControlPanel extends TabPane {
             FilterParameters.SegmentFilterParameters segmentedParams =
                 new FilterParameters.SegmentFilterParameters(
                     "Spline",
-                    0.7,
+                    SegmentedFilterAdapter.DEFAULT_DETECTION_LEVEL,
                     splineParams
                 );
             filterController.updateFilterParameters("SegmentedSpline", segmentedParams);
@@ -224,7 +260,11 @@ public class FilterControlPanel extends TabPane {
         
         pane.add(downsamplingLabel, 0, 0);
         pane.add(downsamplingSpinner, 1, 0);
-        pane.add(applyButton, 0, 1, 2, 1);
+        pane.add(modeLabel, 0, 1);
+        pane.add(modeComboBox, 1, 1);
+        pane.add(lambdaLabel, 0, 2);
+        pane.add(lambdaSpinner, 1, 2);
+        pane.add(applyButton, 0, 3, 2, 1);
         
         Tab tab = new Tab("Cubic Spline", pane);
         filterTabs.put("Spline", tab);
@@ -247,12 +287,33 @@ public class FilterControlPanel extends TabPane {
         thresholdSpinner.setEditable(true);
         thresholdSpinner.setPrefWidth(80);
         
+        Label familyLabel = new Label("Wavelet:");
+        ComboBox<FilterParameters.WaveletParameters.Family> familyComboBox = new ComboBox<>();
+        familyComboBox.getItems().addAll(FilterParameters.WaveletParameters.Family.values());
+        familyComboBox.setValue(FilterParameters.WaveletParameters.Family.HAAR);
+        
+        Label transformLabel = new Label("Transform:");
+        ComboBox<FilterParameters.WaveletParameters.Transform> transformComboBox = new ComboBox<>();
+        transformComboBox.getItems().addAll(FilterParameters.WaveletParameters.Transform.values());
+        transformComboBox.setValue(FilterParameters.WaveletParameters.Transform.DECIMATED);
+        
+        // With an estimated rule the threshold spinner is not used
+        Label ruleLabel = new Label("Threshold Rule:");
+        ComboBox<FilterParameters.WaveletParameters.ThresholdRule> ruleComboBox = new ComboBox<>();
+        ruleComboBox.getItems().addAll(FilterParameters.WaveletParameters.ThresholdRule.values());
+        ruleComboBox.setValue(FilterParameters.WaveletParameters.ThresholdRule.FIXED);
+        thresholdSpinner.disableProperty().bind(
+            ruleComboBox.valueProperty().isNotEqualTo(FilterParameters.WaveletParameters.ThresholdRule.FIXED));
+        
         Button applyButton = new Button("Apply");
         applyButton.setOnAction(e -> {
             FilterParameters.WaveletParameters params = 
                 new FilterParameters.WaveletParameters(
                     levelSpinner.getValue(), 
-                    thresholdSpinner.getValue()
+                    thresholdSpinner.getValue(),
+                    familyComboBox.getValue(),
+                    transformComboBox.getValue(),
+                    ruleComboBox.getValue()
                 );
             filterController.updateFilterParameters("Wavelet", params);
             filterController.applyFilter("Wavelet").thenRun(() -> {
@@ -266,7 +327,13 @@ public class FilterControlPanel extends TabPane {
         pane.add(levelSpinner, 1, 0);
         pane.add(thresholdLabel, 0, 1);
         pane.add(thresholdSpinner, 1, 1);
-        pane.add(applyButton, 0, 2, 2, 1);
+        pane.add(familyLabel, 0, 2);
+        pane.add(familyComboBox, 1, 2);
+        pane.add(transformLabel, 0, 3);
+        pane.add(transformComboBox, 1, 3);
+        pane.add(ruleLabel, 0, 4);
+        pane.add(ruleComboBox, 1, 4);
+        pane.add(applyButton, 0, 5, 2, 1);
         
         Tab tab = new Tab("Wavelet", pane);
         filterTabs.put("Wavelet", tab);
@@ -281,8 +348,8 @@ public class FilterControlPanel extends TabPane {
         pane.setPadding(new Insets(10));
         
         
-        Label thresholdLabel = new Label("R Peak Threshold (% of max):");
-        Spinner<Double> thresholdSpinner = new Spinner<>(0.3, 0.95, 0.7, 0.05);
+        Label thresholdLabel = new Label("R Peak Detection Level (0 = noise, 1 = signal):");
+        Spinner<Double> thresholdSpinner = new Spinner<>(0.05, 0.95, SegmentedFilterAdapter.DEFAULT_DETECTION_LEVEL, 0.05);
         thresholdSpinner.setEditable(true);
         thresholdSpinner.setPrefWidth(80);
         
@@ -1,5 +1,6 @@
 package hu.ujvari.ecgplotter.view;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,6 +17,8 @@ public class SignalCanvas extends Canvas {
     private Map<String, Color> filterColors = new HashMap<>();
     private Map<String, Boolean> visibleFilters = new HashMap<>();
     private hu.ujvari.ecgplotter.controller.FilterController filterController;
+    // Scale the y axis to the visible part of the visible series instead of the whole recording
+    private boolean autoScaleToViewport = true;
 
     
     
@@ -70,6 +73,24 @@ public class SignalCanvas extends Canvas {
         return visibleFilters.getOrDefault(filterName, false);
     }
     
+    public void setAutoScaleToViewport(boolean autoScaleToViewport) {
+        this.autoScaleToViewport = autoScaleToViewport;
+    }
+    
+    public boolean isAutoScaleToViewport() {
+        return autoScaleToViewport;
+    }
+    
+    private List<String> getVisibleSeries() {
+        List<String> visible = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : visibleFilters.entrySet()) {
+            if (entry.getValue()) {
+                visible.add(entry.getKey());
+            }
+        }
+        return visible;
+    }
+    
     public void clearCanvas() {
         gc.setFill(Color.WHITE);
         gc.fillRect(0, 0, getWidth(), getHeight());
@@ -92,6 +113,9 @@ public class SignalCanvas extends Canvas {
             return;
         }
         
+        // One consistent state for the whole frame, workers may publish new series meanwhile
+        SignalData.Snapshot snapshot = signalData.getSnapshot();
+        
         clearCanvas();
 
         
@@ -114,38 +138,50 @@ public class SignalCanvas extends Canvas {
         gc.strokeLine(padding, height - padding, width - padding, height - padding);
         gc.strokeLine(padding, padding, padding, height - padding);
         
-        int viewStartIdx = signalData.getViewStartIdx();
-        int viewEndIdx = signalData.getViewEndIdx();
+        int viewStartIdx = snapshot.getViewStartIdx();
+        int viewEndIdx = snapshot.getViewEndIdx();
         int pointCount = viewEndIdx - viewStartIdx + 1;
         
         // Skip factor for performance
         int skipFactor = Math.max(1, pointCount / 1000);
         
+        // Y range: the whole recording, or the visible series within the viewport
+        // (answered by the per-series range index, so it costs nothing while panning)
+        double yMin = snapshot.getMinValue();
+        double yMax = snapshot.getMaxValue();
+        if (autoScaleToViewport) {
+            double[] viewRange = snapshot.getViewportRange(getVisibleSeries());
+            if (viewRange != null && viewRange[1] > viewRange[0]) {
+                yMin = viewRange[0];
+                yMax = viewRange[1];
+            }
+        }
+        
         // Scale factors
         double xScale = chartWidth / pointCount;
-        double yScale = chartHeight / (signalData.getMaxValue() - signalData.getMinValue());
+        double yScale = chartHeight / (yMax - yMin);
         
         // Draw original signal if visible
         if (visibleFilters.getOrDefault("Original", true)) {
-            drawSignal("Original", signalData.getOriginalSignal(), skipFactor, padding, height, xScale, yScale);
+            drawSignal("Original", snapshot.getOriginalSignal(), viewStartIdx, viewEndIdx, skipFactor, padding, height, xScale, yScale, yMin);
         }
 
         
         
         // Draw filtered signals
-        for (Map.Entry<String, List<Double>> entry : signalData.getAllFilteredSignals().entrySet()) {
+        for (Map.Entry<String, List<Double>> entry : snapshot.getFilteredSignals().entrySet()) {
             String filterName = entry.getKey();
             List<Double> filteredSignal = entry.getValue();
             
             if (visibleFilters.getOrDefault(filterName, false)) {
-                drawSignal(filterName, filteredSignal, skipFactor, padding, height, xScale, yScale);
+                drawSignal(filterName, filteredSignal, viewStartIdx, viewEndIdx, skipFactor, padding, height, xScale, yScale, yMin);
                 
                 // If it's a segmented filter and you have FilterController, draw the R vertices too
                 if (filterName.startsWith("Segmented") && filterController != null) {
                     hu.ujvari.ecgplotter.filter.FilterInterface filter = filterController.getFilter(filterName);
                     if (filter instanceof hu.ujvari.ecgplotter.filter.SegmentedFilterAdapter) {
                         List<Integer> peaks = ((hu.ujvari.ecgplotter.filter.SegmentedFilterAdapter) filter).getLastDetectedPeaks();
-                        drawRPeaks(filteredSignal, peaks, padding, height, xScale, yScale);
+                        drawRPeaks(filteredSignal, peaks, viewStartIdx, viewEndIdx, padding, height, xScale, yScale, yMin);
                     }
                 }
             }
@@ -164,8 +200,8 @@ public class SignalCanvas extends Canvas {
         gc.fillText("" + viewEndIdx, width - padding - 20, height - padding + 15);
         gc.fillText("Sample Point", width / 2, height - 5);
         
-        gc.fillText(String.format("%.1f", signalData.getMinValue()* toMilliVolt), 5, height - padding);
-        gc.fillText(String.format("%.1f", signalData.getMaxValue()* toMilliVolt), 5, padding + 10);
+        gc.fillText(String.format("%.1f", yMin * toMilliVolt), 5, height - padding);
+        gc.fillText(String.format("%.1f", yMax * toMilliVolt), 5, padding + 10);
         gc.save();
         gc.translate(10, height / 2);
         gc.rotate(-90);
@@ -173,12 +209,12 @@ public class SignalCanvas extends Canvas {
         gc.restore();
         
         // Info text
-        gc.fillText("Zoom: " + signalData.getZoomLevel() + "x    Visible: " + viewStartIdx + " - " + viewEndIdx + 
+        gc.fillText("Zoom: " + snapshot.getZoomLevel() + "x    Visible: " + viewStartIdx + " - " + viewEndIdx + 
                    " (" + (viewEndIdx - viewStartIdx + 1) + " points)", padding, 20);
     }
     
-    private void drawSignal(String signalName, List<Double> data, int skipFactor, 
-                           double padding, double height, double xScale, double yScale) {
+    private void drawSignal(String signalName, List<Double> data, int viewStartIdx, int viewEndIdx, int skipFactor, 
+                           double padding, double height, double xScale, double yScale, double yMin) {
         gc.setStroke(filterColors.getOrDefault(signalName, Color.BLACK));
         gc.setLineWidth(signalName.equals("Original") ? 1.0 : 1.5);
         
@@ -186,11 +222,11 @@ public class SignalCanvas extends Canvas {
         double lastY = 0;
         boolean first = true;
         
-        for (int i = signalData.getViewStartIdx(); i <= signalData.getViewEndIdx(); i += skipFactor) {
+        for (int i = viewStartIdx; i <= viewEndIdx; i += skipFactor) {
             if (i >= data.size()) break;
             
-            double x = padding + (i - signalData.getViewStartIdx()) * xScale;
-            double y = height - padding - (data.get(i) - signalData.getMinValue()) * yScale;
+            double x = padding + (i - viewStartIdx) * xScale;
+            double y = height - padding - (data.get(i) - yMin) * yScale;
             
             if (first) {
                 first = false;
@@ -203,7 +239,7 @@ public class SignalCanvas extends Canvas {
         }
     }
 
-    private void drawRPeaks(List<Double> signal, List<Integer> peakIndices, double padding, double height, double xScale, double yScale) {
+    private void drawRPeaks(List<Double> signal, List<Integer> peakIndices, int viewStartIdx, int viewEndIdx, double padding, double height, double xScale, double yScale, double yMin) {
         if (peakIndices == null || peakIndices.isEmpty()) {
             return;
         }
@@ -212,9 +248,9 @@ public class SignalCanvas extends Canvas {
         gc.setLineWidth(1.0);
         
         for (int peakIdx : peakIndices) {
-            if (peakIdx >= signalData.getViewStartIdx() && peakIdx <= signalData.getViewEndIdx() && peakIdx < signal.size()) {
-                double x = padding + (peakIdx - signalData.getViewStartIdx()) * xScale;
-                double y = height - padding - (signal.get(peakIdx) - signalData.getMinValue()) * yScale;
+            if (peakIdx >= viewStartIdx && peakIdx <= viewEndIdx && peakIdx < signal.size()) {
+                double x = padding + (peakIdx - viewStartIdx) * xScale;
+                double y = height - padding - (signal.get(peakIdx) - yMin) * yScale;
                 
                 // Drawing: small circle at the R peak
                 gc.strokeOval(x - 1, y - 1, 2, 2);
@@ -0,0 +1,105 @@
+package hu.ujvari.ecgprocessor;
+
+import java.util.List;
+
+import hu.ujvari.ecgmodel.DoubleArrayList;
+
+/**
+ * Gaussian approximation by 3 or 4 cascaded box filters.
+ * The box widths follow Kovesi's scheme (odd widths w and w + 2 mixed so the
+ * cascade has exactly the requested variance). Each pass is a running sum
+ * over a primitive buffer: one add, one subtract and one multiply per sample,
+ * independent of sigma. Samples beyond the ends repeat the edge sample.
+ */
+public class BoxGaussianFilter {
+
+    public static final int DEFAULT_PASSES = 3;
+
+    private final double sigma;
+    private final int[] widths;
+
+    public BoxGaussianFilter(double sigma, int passes) {
+        if (!(sigma > 0)) {
+            throw new IllegalArgumentException("A sigma legyen pozitív.");
+        }
+        if (passes < 3 || passes > 4) {
+            throw new IllegalArgumentException("A dobozszűrők száma 3 vagy 4 lehet.");
+        }
+        this.sigma = sigma;
+        this.widths = boxWidths(sigma, passes);
+    }
+
+    /**
+     * Same sigma as GaussianMovingAverage uses for the window (3σ ≈ half window)
+     */
+    public static BoxGaussianFilter forWindow(int windowSize, int passes) {
+        return new BoxGaussianFilter(windowSize / 6.0, passes);
+    }
+
+    // Kovesi: n boxes, the first m of width wl, the rest of width wl + 2
+    private static int[] boxWidths(double sigma, int n) {
+        double variance = 12.0 * sigma * sigma;
+        int wl = (int) Math.floor(Math.sqrt(variance / n + 1.0));
+        if (wl % 2 == 0) {
+            wl--;
+        }
+        wl = Math.max(1, wl);
+        int wu = wl + 2;
+        int m = (int) Math.round((variance - n * wl * wl - 4.0 * n * wl - 3.0 * n) / (-4.0 * wl - 4.0));
+        m = Math.max(0, Math.min(n, m));
+
+        int[] widths = new int[n];
+        for (int i = 0; i < n; i++) {
+            widths[i] = i < m ? wl : wu;
+        }
+        return widths;
+    }
+
+    public List<Double> filter(List<Double> input) {
+        return DoubleArrayList.wrap(filter(DoubleArrayList.asArray(input)));
+    }
+
+    public double[] filter(double[] input) {
+        int n = input.length;
+        if (n == 0) {
+            return new double[0];
+        }
+
+        // Ping-pong between two buffers, the input is never written
+        double[] source = input;
+        double[] target = new double[n];
+        double[] spare = widths.length > 1 ? new double[n] : null;
+        for (int pass = 0; pass < widths.length; pass++) {
+            boxPass(source, target, widths[pass] / 2);
+            double[] written = target;
+            target = source == input ? spare : source;
+            source = written;
+        }
+        return source;
+    }
+
+    private static void boxPass(double[] src, double[] dst, int radius) {
+        int n = src.length;
+        int last = n - 1;
+        double scale = 1.0 / (2 * radius + 1);
+
+        // Window of the first output: src[-radius .. radius], edges repeated
+        double sum = (radius + 1) * src[0];
+        for (int j = 1; j <= radius; j++) {
+            sum += src[Math.min(j, last)];
+        }
+
+        for (int i = 0; i < n; i++) {
+            dst[i] = sum * scale;
+            sum += src[Math.min(i + radius + 1, last)] - src[Math.max(i - radius, 0)];
+        }
+    }
+
+    public double getSigma() {
+        return sigma;
+    }
+
+    public int[] getBoxWidths() {
+        return widths.clone();
+    }
+}
@@ -0,0 +1,252 @@
+package hu.ujvari.ecgprocessor;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Centred correlation of a signal with a fixed kernel, the operation behind
+ * the window filters (Gaussian, Savitzky-Golay):
+ * <pre>
+ * out[i] = sum over j of kernel[j] * in[i + j - kernel.length / 2]   (0.0 outside the input)
+ * </pre>
+ * Short kernels are applied directly (same summation order as the original
+ * loops, so the results are unchanged); the interior loop runs on the
+ * CorrelationBackend chosen at startup (Vector API or scalar). Longer ones use FFT overlap-add:
+ * the kernel spectrum is computed once per engine, the FFT plans (twiddles
+ * and bit reversal) are cached process-wide, and two real input blocks are
+ * transformed at once as the real and imaginary part of one complex FFT.
+ * An engine is immutable and can be shared between threads.
+ * <p>
+ * The crossover between the two paths (DIRECT_MAX_TAPS) comes from the
+ * backend: 64 taps for the scalar loop, more for the vector loop depending
+ * on the vector width of the CPU (128 with 256-bit, 256 with 512-bit
+ * vectors). The same kernel can therefore take the direct path on one
+ * machine and the FFT path on another, or with -Decg.vector=false; the
+ * results agree to rounding, not bit for bit.
+ */
+public final class ConvolutionEngine {
+    private static final Map<Integer, FftPlan> PLANS = new ConcurrentHashMap<>();
+    private static final CorrelationBackend BACKEND = CorrelationBackend.load();
+    // Above this kernel length FFT convolution is cheaper than the direct loop; depends on the backend and the CPU
+    static final int DIRECT_MAX_TAPS = BACKEND.getDirectMaxTaps();
+
+    private final double[] kernel;
+    private final int half;
+
+    // FFT path (null / 0 when the kernel is applied directly)
+    private final FftPlan plan;
+    private final int blockLength;
+    private final double[] kernelRe;
+    private final double[] kernelIm;
+
+    /**
+     * @param kernel The weights, referenced (not copied): must not change afterwards
+     */
+    public ConvolutionEngine(double[] kernel) {
+        this(kernel, kernel.length > DIRECT_MAX_TAPS);
+    }
+
+    ConvolutionEngine(double[] kernel, boolean useFft) {
+        if (kernel.length == 0) {
+            throw new IllegalArgumentException("A kernel nem lehet üres.");
+        }
+        this.kernel = kernel;
+        this.half = kernel.length / 2;
+
+        if (!useFft) {
+            this.plan = null;
+            this.blockLength = 0;
+            this.kernelRe = null;
+            this.kernelIm = null;
+            return;
+        }
+
+        // About 4 kernel lengths per transform keeps the overlap overhead low
+        int fftSize = Integer.highestOneBit(Math.max(64, 4 * kernel.length - 1)) << 1;
+        this.plan = plan(fftSize);
+        this.blockLength = fftSize - kernel.length + 1;
+
+        // Spectrum of the reversed kernel (correlation = convolution with the reversed kernel)
+        this.kernelRe = new double[fftSize];
+        this.kernelIm = new double[fftSize];
+        for (int m = 0; m < kernel.length; m++) {
+            kernelRe[m] = kernel[kernel.length - 1 - m];
+        }
+        plan.transform(kernelRe, kernelIm, false);
+    }
+
+    public boolean usesFft() {
+        return plan != null;
+    }
+
+    public int getKernelLength() {
+        return kernel.length;
+    }
+
+    /**
+     * @return The implementation of the direct loop picked at startup ("scalar" or "vector ...")
+     */
+    public static String getBackendName() {
+        return BACKEND.getName();
+    }
+
+    public double[] correlate(double[] input) {
+        return plan != null ? correlateFft(input) : correlateDirect(input);
+    }
+
+    private double[] correlateDirect(double[] input) {
+        int n = input.length;
+        int taps = kernel.length;
+        double[] output = new double[n];
+
+        // Interior: the whole window is inside the input
+        int interiorFrom = Math.min(half, n);
+        int interiorTo = Math.max(interiorFrom, n - taps + half + 1);
+        BACKEND.correlate(input, kernel, output, interiorFrom, interiorTo);
+
+        correlateEdge(input, output, 0, interiorFrom);
+        correlateEdge(input, output, interiorTo, n);
+        return output;
+    }
+
+    private void correlateEdge(double[] input, double[] output, int from, int to) {
+        int n = input.length;
+        int taps = kernel.length;
+        for (int i = from; i < to; i++) {
+            // Taps that fall outside the input would only add zeros
+            int jFrom = Math.max(0, half - i);
+            int jTo = Math.min(taps, n - i + half);
+            int offset = i - half;
+            double sum = 0.0;
+            for (int j = jFrom; j < jTo; j++) {
+                sum += input[offset + j] * kernel[j];
+            }
+            output[i] = sum;
+        }
+    }
+
+    private double[] correlateFft(double[] input) {
+        int n = input.length;
+        int size = plan.size;
+        // Full convolution index k maps to output index k - shift
+        int shift = kernel.length - 1 - half;
+
+        double[] output = new double[n];
+        double[] re = new double[size];
+        double[] im = new double[size];
+
+        for (int start = 0; start < n; start += 2 * blockLength) {
+            int secondStart = start + blockLength;
+            int firstLength = Math.min(blockLength, n - start);
+            int secondLength = Math.max(0, Math.min(blockLength, n - secondStart));
+
+            Arrays.fill(re, 0.0);
+            Arrays.fill(im, 0.0);
+            System.arraycopy(input, start, re, 0, firstLength);
+            if (secondLength > 0) {
+                System.arraycopy(input, secondStart, im, 0, secondLength);
+            }
+
+            plan.transform(re, im, false);
+            for (int k = 0; k < size; k++) {
+                double r = re[k] * kernelRe[k] - im[k] * kernelIm[k];
+                double m = re[k] * kernelIm[k] + im[k] * kernelRe[k];
+                re[k] = r;
+                im[k] = m;
+            }
+            plan.transform(re, im, true);
+
+            // Overlap-add: the real part belongs to the first block, the imaginary part to the second
+            addBlock(re, firstLength + kernel.length - 1, start - shift, output);
+            if (secondLength > 0) {
+                addBlock(im, secondLength + kernel.length - 1, secondStart - shift, output);
+            }
+        }
+        return output;
+    }
+
+    private static void addBlock(double[] block, int length, int outputOffset, double[] output) {
+        int from = Math.max(0, -outputOffset);
+        int to = Math.min(length, output.length - outputOffset);
+        for (int k = from; k < to; k++) {
+            output[outputOffset + k] += block[k];
+        }
+    }
+
+    private static FftPlan plan(int size) {
+        return PLANS.computeIfAbsent(size, FftPlan::new);
+    }
+
+    /**
+     * Iterative radix-2 complex FFT of one size: twiddle factors and the bit
+     * reversal permutation are computed once
+     */
+    static final class FftPlan {
+        final int size;
+        private final double[] cos;
+        private final double[] sin;
+        private final int[] reversed;
+
+        FftPlan(int size) {
+            if (Integer.bitCount(size) != 1) {
+                throw new IllegalArgumentException("Az FFT mérete 2 hatványa legyen.");
+            }
+            this.size = size;
+            this.cos = new double[size / 2];
+            this.sin = new double[size / 2];
+            for (int k = 0; k < size / 2; k++) {
+                double angle = -2.0 * Math.PI * k / size;
+                cos[k] = Math.cos(angle);
+                sin[k] = Math.sin(angle);
+            }
+
+            this.reversed = new int[size];
+            int bits = Integer.numberOfTrailingZeros(size);
+            for (int i = 0; i < size; i++) {
+                reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            }
+        }
+
+        /**
+         * In-place transform; the inverse includes the 1/size scaling
+         */
+        void transform(double[] re, double[] im, boolean inverse) {
+            for (int i = 0; i < size; i++) {
+                int j = reversed[i];
+                if (j > i) {
+                    double t = re[i]; re[i] = re[j]; re[j] = t;
+                    t = im[i]; im[i] = im[j]; im[j] = t;
+                }
+            }
+
+            double sign = inverse ? -1.0 : 1.0;
+            for (int length = 2; length <= size; length <<= 1) {
+                int halfLength = length >> 1;
+                int step = size / length;
+                for (int start = 0; start < size; start += length) {
+                    for (int k = 0; k < halfLength; k++) {
+                        double wr = cos[k * step];
+                        double wi = sign * sin[k * step];
+                        int a = start + k;
+                        int b = a + halfLength;
+                        double xr = re[b] * wr - im[b] * wi;
+                        double xi = re[b] * wi + im[b] * wr;
+                        re[b] = re[a] - xr;
+                        im[b] = im[a] - xi;
+                        re[a] += xr;
+                        im[a] += xi;
+                    }
+                }
+            }
+
+            if (inverse) {
+                double scale = 1.0 / size;
+                for (int i = 0; i < size; i++) {
+                    re[i] *= scale;
+                    im[i] *= scale;
+                }
+            }
+        }
+    }
+}
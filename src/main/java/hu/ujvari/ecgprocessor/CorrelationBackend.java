@@ -0,0 +1,65 @@
+package hu.ujvari.ecgprocessor;
+
+/**
+ * Multiply-accumulate loop of the direct convolution, for the interior
+ * outputs whose whole window lies inside the input (no bounds checks needed).
+ * The implementation is chosen once at startup: the Vector API one when it was
+ * built (JDK 17+ profile) and the jdk.incubator.vector module is available at
+ * runtime, the scalar one otherwise.
+ */
+interface CorrelationBackend {
+    // Setting -Decg.vector=false forces the scalar implementation
+    String VECTOR_PROPERTY = "ecg.vector";
+    String VECTOR_CLASS = "hu.ujvari.ecgprocessor.VectorCorrelation";
+
+    /**
+     * output[i] = sum over j of input[i - kernel.length / 2 + j] * kernel[j], for from &lt;= i &lt; to
+     */
+    void correlate(double[] input, double[] kernel, double[] output, int from, int to);
+
+    String getName();
+
+    /**
+     * Longest kernel for which this loop beats FFT convolution. Differs
+     * between backends (and for the vector one between CPUs), so
+     * ConvolutionEngine may switch to FFT at a different length per machine.
+     */
+    int getDirectMaxTaps();
+
+    static CorrelationBackend load() {
+        if (!"false".equals(System.getProperty(VECTOR_PROPERTY))) {
+            try {
+                return (CorrelationBackend) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not built, or the incubator module is not enabled (--add-modules jdk.incubator.vector)
+            }
+        }
+        return new Scalar();
+    }
+
+    final class Scalar implements CorrelationBackend {
+        @Override
+        public void correlate(double[] input, double[] kernel, double[] output, int from, int to) {
+            int taps = kernel.length;
+            int half = taps / 2;
+            for (int i = from; i < to; i++) {
+                int offset = i - half;
+                double sum = 0.0;
+                for (int j = 0; j < taps; j++) {
+                    sum += input[offset + j] * kernel[j];
+                }
+                output[i] = sum;
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "scalar";
+        }
+
+        @Override
+        public int getDirectMaxTaps() {
+            return 64;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package hu.ujvari.ecgprocessor;
+
+import java.util.Arrays;
+
+/**
+ * Natural cubic spline through a set of knots, stored in primitive arrays.
+ * The second derivatives are solved once (tridiagonal system, Thomas
+ * algorithm; pentadiagonal Cholesky for the smoothing spline) and turned
+ * into per-interval polynomial coefficients, so a value costs one interval
+ * lookup and three multiply-adds:
+ * <pre>
+ * s(x) = a + b * dx + c * dx^2 + d * dx^3,   dx = x - x[k]
+ * </pre>
+ * Outside the knots the first / last interval polynomial is continued.
+ * A spline is immutable and can be shared; an {@link Evaluator} keeps a
+ * cursor and is meant for one thread.
+ */
+public final class CubicSpline {
+
+    private final double[] knots;
+    // a, b, c, d of interval k at [4k .. 4k+3]
+    private final double[] coefficients;
+
+    private CubicSpline(double[] knots, double[] coefficients) {
+        this.knots = knots;
+        this.coefficients = coefficients;
+    }
+
+    /**
+     * @param x Knot positions, strictly increasing (at least 2)
+     * @param y Values at the knots
+     */
+    public static CubicSpline natural(double[] x, double[] y) {
+        int numKnots = x.length;
+        double[] h = spacings(x, y);
+
+        // Tridiagonal system for the second derivatives of the inner knots
+        // (alpha[i] couples rows i + 1 and i, as solveTridiagonal expects)
+        double[] alpha = new double[numKnots - 2];
+        double[] beta = new double[numKnots - 2];
+        double[] gamma = new double[numKnots - 2];
+        double[] delta = new double[numKnots - 2];
+        for (int i = 0; i < numKnots - 2; i++) {
+            alpha[i] = h[i + 1] / 6.0;
+            beta[i] = (h[i] + h[i + 1]) / 3.0;
+            gamma[i] = h[i + 1] / 6.0;
+            delta[i] = (y[i + 2] - y[i + 1]) / h[i + 1] - (y[i + 1] - y[i]) / h[i];
+        }
+        double[] z = solveTridiagonal(alpha, beta, gamma, delta);
+
+        // Natural boundary: zero second derivative at both ends
+        double[] m = new double[numKnots];
+        System.arraycopy(z, 0, m, 1, z.length);
+        return fromSecondDerivatives(x, y, h, m);
+    }
+
+    /**
+     * Reinsch smoothing spline: every sample is a knot and the values g
+     * minimise sum (y[i] - g[i])^2 + lambda * integral of g''^2.
+     * With Q the second-difference matrix and R the tridiagonal matrix of the
+     * interpolation system, the inner second derivatives solve
+     * (R + lambda Q'Q) gamma = Q'y (symmetric pentadiagonal, banded Cholesky)
+     * and g = y - lambda Q gamma. Time and memory are O(n).
+     *
+     * @param lambda Smoothing parameter (0 = interpolation), in units of x^3
+     */
+    public static CubicSpline smoothing(double[] x, double[] y, double lambda) {
+        int numKnots = x.length;
+        if (!(lambda >= 0)) {
+            throw new IllegalArgumentException("A lambda nem lehet negatív.");
+        }
+        double[] h = spacings(x, y);
+        int inner = numKnots - 2;
+
+        // Bands of R + lambda Q'Q (diagonal, first and second off-diagonal) and Q'y
+        double[] diagonal = new double[inner];
+        double[] upper1 = new double[Math.max(0, inner - 1)];
+        double[] upper2 = new double[Math.max(0, inner - 2)];
+        double[] rhs = new double[inner];
+        for (int j = 0; j < inner; j++) {
+            // Column j of Q (knot j + 1): 1/h[j] at row j, -(1/h[j] + 1/h[j+1]) at j + 1, 1/h[j+1] at j + 2
+            double left = 1.0 / h[j];
+            double right = 1.0 / h[j + 1];
+            double centre = -(left + right);
+            diagonal[j] = (h[j] + h[j + 1]) / 3.0 + lambda * (left * left + centre * centre + right * right);
+            if (j + 1 < inner) {
+                double nextCentre = -(right + 1.0 / h[j + 2]);
+                upper1[j] = h[j + 1] / 6.0 + lambda * (centre * right + right * nextCentre);
+            }
+            if (j + 2 < inner) {
+                upper2[j] = lambda * right / h[j + 2];
+            }
+            rhs[j] = (y[j + 2] - y[j + 1]) * right - (y[j + 1] - y[j]) * left;
+        }
+        double[] gamma = solvePentadiagonal(diagonal, upper1, upper2, rhs);
+
+        // g = y - lambda Q gamma
+        double[] g = y.clone();
+        for (int j = 0; j < inner; j++) {
+            double left = 1.0 / h[j];
+            double right = 1.0 / h[j + 1];
+            g[j] -= lambda * left * gamma[j];
+            g[j + 1] += lambda * (left + right) * gamma[j];
+            g[j + 2] -= lambda * right * gamma[j];
+        }
+
+        double[] m = new double[numKnots];
+        System.arraycopy(gamma, 0, m, 1, inner);
+        return fromSecondDerivatives(x, g, h, m);
+    }
+
+    private static double[] spacings(double[] x, double[] y) {
+        int numKnots = x.length;
+        if (numKnots < 2 || y.length != numKnots) {
+            throw new IllegalArgumentException("Legalább 2 csomópont kell, azonos számú x és y értékkel.");
+        }
+
+        double[] h = new double[numKnots - 1];
+        for (int i = 0; i < numKnots - 1; i++) {
+            h[i] = x[i + 1] - x[i];
+            if (!(h[i] > 0)) {
+                throw new IllegalArgumentException("A csomópontok legyenek szigorúan növekvők.");
+            }
+        }
+        return h;
+    }
+
+    // Coefficients of every interval from the knot values and second derivatives m
+    private static CubicSpline fromSecondDerivatives(double[] x, double[] y, double[] h, double[] m) {
+        int numKnots = x.length;
+        double[] coefficients = new double[4 * (numKnots - 1)];
+        for (int k = 0; k < numKnots - 1; k++) {
+            double hk = h[k];
+            coefficients[4 * k] = y[k];
+            coefficients[4 * k + 1] = (y[k + 1] - y[k]) / hk - hk * (2.0 * m[k] + m[k + 1]) / 6.0;
+            coefficients[4 * k + 2] = m[k] / 2.0;
+            coefficients[4 * k + 3] = (m[k + 1] - m[k]) / (6.0 * hk);
+        }
+        return new CubicSpline(x.clone(), coefficients);
+    }
+
+    /**
+     * Solving a system of tridiagonal equations with the Thomas algorithm
+     * (b and d are overwritten)
+     */
+    static double[] solveTridiagonal(double[] a, double[] b, double[] c, double[] d) {
+        int n = d.length;
+        double[] x = new double[n];
+        if (n == 0) {
+            return x;
+        }
+
+        // Forward elimination
+        for (int i = 1; i < n; i++) {
+            double m = a[i - 1] / b[i - 1];
+            b[i] = b[i] - m * c[i - 1];
+            d[i] = d[i] - m * d[i - 1];
+        }
+
+        // Back substitution
+        x[n - 1] = d[n - 1] / b[n - 1];
+        for (int i = n - 2; i >= 0; i--) {
+            x[i] = (d[i] - c[i] * x[i + 1]) / b[i];
+        }
+
+        return x;
+    }
+
+    /**
+     * Symmetric positive definite pentadiagonal system, LDL' factorisation
+     * (banded Cholesky) in O(n). The matrix is given by its diagonal d0 and
+     * upper bands d1 (A[i][i+1]) and d2 (A[i][i+2]); nothing is overwritten.
+     */
+    static double[] solvePentadiagonal(double[] d0, double[] d1, double[] d2, double[] r) {
+        int n = r.length;
+        double[] pivots = new double[n];
+        double[] l1 = new double[n];   // L[i][i-1]
+        double[] l2 = new double[n];   // L[i][i-2]
+        double[] z = new double[n];
+
+        // Factorisation and forward substitution
+        for (int i = 0; i < n; i++) {
+            double value = d0[i];
+            double sum = r[i];
+            if (i >= 2) {
+                l2[i] = d2[i - 2] / pivots[i - 2];
+                value -= l2[i] * l2[i] * pivots[i - 2];
+                sum -= l2[i] * z[i - 2];
+            }
+            if (i >= 1) {
+                double band = d1[i - 1] - (i >= 2 ? l2[i] * pivots[i - 2] * l1[i - 1] : 0.0);
+                l1[i] = band / pivots[i - 1];
+                value -= l1[i] * l1[i] * pivots[i - 1];
+                sum -= l1[i] * z[i - 1];
+            }
+            pivots[i] = value;
+            z[i] = sum;
+        }
+
+        // Diagonal scaling and back substitution
+        double[] x = new double[n];
+        for (int i = n - 1; i >= 0; i--) {
+            double value = z[i] / pivots[i];
+            if (i + 1 < n) value -= l1[i + 1] * x[i + 1];
+            if (i + 2 < n) value -= l2[i + 2] * x[i + 2];
+            x[i] = value;
+        }
+        return x;
+    }
+
+    /**
+     * Single value; the interval is found by binary search
+     */
+    public double value(double x) {
+        return valueIn(interval(x), x);
+    }
+
+    /**
+     * Values at the given points; increasing queries cost O(1) each
+     */
+    public double[] values(double[] x) {
+        Evaluator evaluator = evaluator();
+        double[] result = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            result[i] = evaluator.value(x[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Values at start, start + step, ... (count points), in O(count + knots)
+     */
+    public double[] sample(double start, double step, int count) {
+        Evaluator evaluator = evaluator();
+        double[] result = new double[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = evaluator.value(start + i * step);
+        }
+        return result;
+    }
+
+    public Evaluator evaluator() {
+        return new Evaluator();
+    }
+
+    public int getKnotCount() {
+        return knots.length;
+    }
+
+    public double[] getKnots() {
+        return knots.clone();
+    }
+
+    // Interval k with knots[k] <= x < knots[k + 1], clamped to the first / last one
+    private int interval(double x) {
+        int index = Arrays.binarySearch(knots, x);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return Math.max(0, Math.min(knots.length - 2, index));
+    }
+
+    private double valueIn(int k, double x) {
+        double dx = x - knots[k];
+        int base = 4 * k;
+        return coefficients[base]
+            + dx * (coefficients[base + 1] + dx * (coefficients[base + 2] + dx * coefficients[base + 3]));
+    }
+
+    /**
+     * Evaluation with a cursor on the last interval: for non-decreasing
+     * queries the cursor only walks forward, so a sweep over the signal is
+     * linear in total; a step backwards falls back to binary search.
+     * Not thread-safe.
+     */
+    public final class Evaluator {
+        private int cursor;
+
+        private Evaluator() {
+        }
+
+        public double value(double x) {
+            int last = knots.length - 2;
+            if (x < knots[cursor]) {
+                cursor = interval(x);
+            } else {
+                while (cursor < last && x >= knots[cursor + 1]) {
+                    cursor++;
+                }
+            }
+            return valueIn(cursor, x);
+        }
+    }
+}
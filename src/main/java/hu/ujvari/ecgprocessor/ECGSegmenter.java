@@ -1,9 +1,12 @@
 package hu.ujvari.ecgprocessor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import hu.ujvari.ecgmodel.DoubleArrayList;
+
 /**
  * Utility class for segmentation of ECG signal based on R waves
  */
@@ -11,7 +14,25 @@ public class ECGSegmenter {
     // Configuration constant for the width of the smoothing transition
     private static final int DEFAULT_TRANSITION_WIDTH = 35; // Wider default transition
 
-    public static List<Integer> detectRPeaks(List<Double> signal, double threshold) {
+    /**
+     * R peaks by the adaptive Pan-Tompkins detector, in O(n)
+     * @return Sample indices in ascending order
+     */
+    public static List<Integer> detectRPeaks(List<Double> signalValues, PanTompkinsDetector detector) {
+        int[] peaks = detector.detect(DoubleArrayList.asArray(signalValues));
+        List<Integer> result = new ArrayList<>(peaks.length);
+        for (int peak : peaks) {
+            result.add(peak);
+        }
+        return result;
+    }
+
+    /**
+     * Simple detector with a fixed amplitude threshold: window maxima above it
+     * @param threshold Absolute threshold in signal units
+     */
+    public static List<Integer> detectRPeaks(List<Double> signalValues, double threshold) {
+        double[] signal = DoubleArrayList.asArray(signalValues);
         List<Integer> peaks = new ArrayList<>();
         System.out.println("[DEBUG] R peak detection called. Threshold: " + threshold);
         
@@ -20,16 +41,16 @@ public class ECGSegmenter {
         int stepSize = 200;    // 200 ms step size (50% overlap)
         
         // Sliding window through the signal
-        for (int startIdx = 0; startIdx < signal.size() - windowSize/2; startIdx += stepSize) {
-            int endIdx = Math.min(startIdx + windowSize, signal.size());
+        for (int startIdx = 0; startIdx < signal.length - windowSize/2; startIdx += stepSize) {
+            int endIdx = Math.min(startIdx + windowSize, signal.length);
             
             // Find the maximum value in the current window
             int maxIdx = startIdx;
-            double maxVal = signal.get(startIdx);
+            double maxVal = signal[startIdx];
             
             for (int i = startIdx + 1; i < endIdx; i++) {
-                if (signal.get(i) > maxVal) {
-                    maxVal = signal.get(i);
+                if (signal[i] > maxVal) {
+                    maxVal = signal[i];
                     maxIdx = i;
                 }
             }
@@ -39,51 +60,41 @@ public class ECGSegmenter {
                 // Refine the peak position by checking local neighborhood
                 int refinedPeakIdx = refineRPeakPosition(signal, maxIdx);
                 
-                // Check if this peak is already present or too close to an existing one
-                boolean isNewPeak = true;
-                for (int existingPeak : peaks) {
-                    if (Math.abs(existingPeak - refinedPeakIdx) < 100) { // minimum 100 ms apart
-                        isNewPeak = false;
-                        break;
-                    }
-                }
-                
-                if (isNewPeak) {
+                // Window maxima move forward, so only the last peak can be a duplicate
+                int lastPeak = peaks.isEmpty() ? -100 : peaks.get(peaks.size() - 1);
+                if (refinedPeakIdx - lastPeak >= 100) { // minimum 100 ms apart
                     peaks.add(refinedPeakIdx);
                 }
             }
         }
         
-        // Sort the peaks in ascending order
-        peaks.sort(Integer::compareTo);
-        
         return peaks;
     }
 
     // Helper method for refining the detected peak position
-    private static int refineRPeakPosition(List<Double> signal, int approximatePeakIdx) {
+    private static int refineRPeakPosition(double[] signal, int approximatePeakIdx) {
         // Small window around the detected peak
         int refineWindow = 30; // ±30 ms
         int startIdx = Math.max(0, approximatePeakIdx - refineWindow);
-        int endIdx = Math.min(signal.size() - 1, approximatePeakIdx + refineWindow);
+        int endIdx = Math.min(signal.length - 1, approximatePeakIdx + refineWindow);
         
         int maxIdx = approximatePeakIdx;
-        double maxVal = signal.get(approximatePeakIdx);
+        double maxVal = signal[approximatePeakIdx];
         
         // Search for local maximum
         for (int i = startIdx; i <= endIdx; i++) {
-            if (signal.get(i) > maxVal) {
-                maxVal = signal.get(i);
+            if (signal[i] > maxVal) {
+                maxVal = signal[i];
                 maxIdx = i;
             }
         }
         
         // Verify that it is truly a local maximum
         boolean isLocalMax = true;
-        if (maxIdx > 0 && signal.get(maxIdx) <= signal.get(maxIdx - 1)) {
+        if (maxIdx > 0 && signal[maxIdx] <= signal[maxIdx - 1]) {
             isLocalMax = false;
         }
-        if (maxIdx < signal.size() - 1 && signal.get(maxIdx) <= signal.get(maxIdx + 1)) {
+        if (maxIdx < signal.length - 1 && signal[maxIdx] <= signal[maxIdx + 1]) {
             isLocalMax = false;
         }
         
@@ -102,7 +113,8 @@ public class ECGSegmenter {
         List<Integer> rPeakIndices = detectRPeaks(signal, rPeakThreshold);
         
         // Prepare result container
-        List<Double> result = new ArrayList<>();
+        double[] result = new double[signal.size()];
+        int resultSize = 0;
         
         // If no peaks detected, apply the filter to the entire signal
         if (rPeakIndices.isEmpty()) {
@@ -122,7 +134,7 @@ public class ECGSegmenter {
             List<Double> filteredSegment = filter.apply(segment);
 
             // Add the filtered segment to the result
-            result.addAll(filteredSegment);
+            resultSize = append(result, resultSize, filteredSegment);
 
             prevIdx = currIdx;
         }
@@ -131,28 +143,38 @@ public class ECGSegmenter {
         if (prevIdx < signal.size()) {
             List<Double> segment = signal.subList(prevIdx, signal.size());
             List<Double> filteredSegment = filter.apply(segment);
-            result.addAll(filteredSegment);
+            resultSize = append(result, resultSize, filteredSegment);
         }
         
-        return new SegmentationResult(result, rPeakIndices);
+        return new SegmentationResult(DoubleArrayList.wrap(Arrays.copyOf(result, resultSize)), rPeakIndices);
     }
 
     public static SegmentationResult applyFilterBySegments(
         List<Double> signal,
         FilterFunction filter,
         List<Integer> rPeakIndices
+    ) {
+        return applyFilterBySegments(signal, filter, rPeakIndices, DEFAULT_TRANSITION_WIDTH);
+    }
+
+    /**
+     * Filters the segments between the given R peaks, the peaks keep their original value
+     * @param transitionZone Width of the blending toward the peak value on both sides,
+     *                       0 for filters that already handle segment edges correctly
+     */
+    public static SegmentationResult applyFilterBySegments(
+        List<Double> signal,
+        FilterFunction filter,
+        List<Integer> rPeakIndices,
+        int transitionZone
     ) {
         // If no peaks are given, apply the filter to the entire signal
         if (rPeakIndices == null || rPeakIndices.isEmpty()) {
             return new SegmentationResult(filter.apply(signal), new ArrayList<>());
         }
         
-        List<Double> result = new ArrayList<>(signal.size());
-        List<Integer> newPeakIndices = new ArrayList<>();
-        
-        System.out.println("[DEBUG] Performing segmented filtering with " + rPeakIndices.size() + " R peaks");
 
-        int transitionZone = DEFAULT_TRANSITION_WIDTH;
+        System.out.println("[DEBUG] Performing segmented filtering with " + rPeakIndices.size() + " R peaks");
 
         List<Integer> sortedPeaks = new ArrayList<>(rPeakIndices);
         Collections.sort(sortedPeaks);
@@ -161,7 +183,8 @@ public class ECGSegmenter {
         sortedPeaks.removeIf(idx -> idx < 0 || idx >= signal.size());
 
         // Create a copy of the signal to be modified
-        List<Double> modifiedSignal = new ArrayList<>(signal);
+        double[] original = DoubleArrayList.asArray(signal);
+        double[] modifiedSignal = original.clone();
 
         // Filter the signal segment by segment
         int prevIdx = 0;
@@ -177,11 +200,7 @@ public class ECGSegmenter {
             if (peakIdx > prevIdx) {
                 List<Double> segment = signal.subList(prevIdx, peakIdx);
                 List<Double> filteredSegment = filter.apply(segment);
-
-                for (int j = 0; j < filteredSegment.size(); j++) {
-                    int signalIdx = prevIdx + j;
-                    modifiedSignal.set(signalIdx, filteredSegment.get(j));
-                }
+                copySegment(filteredSegment, modifiedSignal, prevIdx);
             }
 
             // The peak value itself remains unchanged
@@ -192,40 +211,46 @@ public class ECGSegmenter {
         if (prevIdx < signal.size()) {
             List<Double> segment = signal.subList(prevIdx, signal.size());
             List<Double> filteredSegment = filter.apply(segment);
-
-            for (int j = 0; j < filteredSegment.size(); j++) {
-                int signalIdx = prevIdx + j;
-                modifiedSignal.set(signalIdx, filteredSegment.get(j));
-            }
+            copySegment(filteredSegment, modifiedSignal, prevIdx);
         }
 
-        // Smooth transitions around R peaks
-        for (int peakIdx : sortedPeaks) {
-            // Transition zone before the peak
-            int beforeStart = Math.max(0, peakIdx - transitionZone);
-            for (int i = beforeStart; i < peakIdx; i++) {
-                double weight = (double)(i - beforeStart) / (peakIdx - beforeStart);
-                double filteredValue = modifiedSignal.get(i);
-                double peakValue = signal.get(peakIdx);
-                modifiedSignal.set(i, filteredValue * (1 - weight) + peakValue * weight);
-            }
+        // Smooth transitions around R peaks (skipped when transitionZone is 0)
+        if (transitionZone > 0) {
+            for (int peakIdx : sortedPeaks) {
+                // Transition zone before the peak
+                int beforeStart = Math.max(0, peakIdx - transitionZone);
+                for (int i = beforeStart; i < peakIdx; i++) {
+                    double weight = (double)(i - beforeStart) / (peakIdx - beforeStart);
+                    double filteredValue = modifiedSignal[i];
+                    double peakValue = original[peakIdx];
+                    modifiedSignal[i] = filteredValue * (1 - weight) + peakValue * weight;
+                }
 
-            // Transition zone after the peak
-            int afterEnd = Math.min(signal.size() - 1, peakIdx + transitionZone);
-            for (int i = peakIdx + 1; i <= afterEnd; i++) {
-                double weight = (double)(afterEnd - i) / (afterEnd - peakIdx);
-                double filteredValue = modifiedSignal.get(i);
-                double peakValue = signal.get(peakIdx);
-                modifiedSignal.set(i, filteredValue * (1 - weight) + peakValue * weight);
+                // Transition zone after the peak
+                int afterEnd = Math.min(signal.size() - 1, peakIdx + transitionZone);
+                for (int i = peakIdx + 1; i <= afterEnd; i++) {
+                    double weight = (double)(afterEnd - i) / (afterEnd - peakIdx);
+                    double filteredValue = modifiedSignal[i];
+                    double peakValue = original[peakIdx];
+                    modifiedSignal[i] = filteredValue * (1 - weight) + peakValue * weight;
+                }
             }
         }
 
-        result = modifiedSignal;
-        newPeakIndices = sortedPeaks;
+        System.out.println("[DEBUG] Original signal length: " + signal.size() + ", Filtered signal length: " + modifiedSignal.length);
+
+        return new SegmentationResult(DoubleArrayList.wrap(modifiedSignal), sortedPeaks);
+    }
 
-        System.out.println("[DEBUG] Original signal length: " + signal.size() + ", Filtered signal length: " + result.size());
+    private static int append(double[] target, int size, List<Double> values) {
+        double[] array = DoubleArrayList.asArray(values);
+        System.arraycopy(array, 0, target, size, array.length);
+        return size + array.length;
+    }
 
-        return new SegmentationResult(result, newPeakIndices);
+    private static void copySegment(List<Double> filteredSegment, double[] target, int offset) {
+        double[] array = DoubleArrayList.asArray(filteredSegment);
+        System.arraycopy(array, 0, target, offset, array.length);
     }
 
     public static class SegmentationResult {
@@ -1,12 +1,21 @@
 package hu.ujvari.ecgprocessor;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import hu.ujvari.ecgmodel.DoubleArrayList;
+
+/**
+ * Gaussian smoothing by direct (or FFT) convolution with the sampled kernel.
+ * Samples beyond the ends repeat the edge sample, the same edge policy as
+ * RecursiveGaussianFilter and BoxGaussianFilter, so the modes of the plotter
+ * only differ in the approximation of the kernel.
+ */
 public class GaussianMovingAverage {
 
     private final int windowSize;
     private final double[] weights;
+    private final ConvolutionEngine engine;
 
     public GaussianMovingAverage(int windowSize) {
         if (windowSize % 2 == 0) {
@@ -14,6 +23,7 @@ public class GaussianMovingAverage {
         }
         this.windowSize = windowSize;
         this.weights = generateGaussianWeights(windowSize);
+        this.engine = new ConvolutionEngine(weights);
     }
 
     private double[] generateGaussianWeights(int size) {
@@ -37,19 +47,23 @@ public class GaussianMovingAverage {
     }
 
     public List<Double> filter(List<Double> input) {
-        List<Double> output = new ArrayList<>();
-        int half = windowSize / 2;
+        return DoubleArrayList.wrap(filter(DoubleArrayList.asArray(input)));
+    }
 
-        for (int i = 0; i < input.size(); i++) {
-            double sum = 0;
-            for (int j = -half; j <= half; j++) {
-                int idx = i + j;
-                double value = (idx < 0 || idx >= input.size()) ? 0 : input.get(idx);
-                sum += value * weights[j + half];
-            }
-            output.add(sum);
+    /**
+     * Wide windows go through FFT convolution
+     */
+    public double[] filter(double[] input) {
+        int n = input.length;
+        if (n == 0) {
+            return new double[0];
         }
-
-        return output;
+        // The engine treats samples outside its input as 0, so the edges are repeated into a padded copy
+        int half = windowSize / 2;
+        double[] padded = new double[n + 2 * half];
+        Arrays.fill(padded, 0, half, input[0]);
+        System.arraycopy(input, 0, padded, half, n);
+        Arrays.fill(padded, half + n, padded.length, input[n - 1]);
+        return Arrays.copyOfRange(engine.correlate(padded), half, half + n);
     }
 }
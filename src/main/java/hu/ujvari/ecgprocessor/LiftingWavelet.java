@@ -0,0 +1,403 @@
+package hu.ujvari.ecgprocessor;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orthogonal discrete wavelet transform as an in-place lifting scheme.
+ * <p>
+ * The lifting steps of each family are derived once from its low-pass
+ * filter (Daubechies-Sweldens factorisation of the polyphase matrix by the
+ * Euclidean algorithm), so every level is a few predict / update passes over
+ * the buffer and a final scaling: O(n) per level, no temporary arrays.
+ * The factorisation is not unique; of the division choices with
+ * well-conditioned coefficients the one with the fewest steps is kept, which
+ * keeps the round-off of the forward-inverse pair at the 1e-15 level.
+ * <p>
+ * The coefficients stay interleaved: level l works on every 2^l-th element,
+ * its details end up at the odd positions (index = 2^l (mod 2^(l+1))) and
+ * the approximation of the last level at the multiples of 2^levels.
+ * Indices beyond the ends are mirrored (whole-sample symmetric extension),
+ * so any length works without padding and the inverse reconstructs the
+ * input exactly (up to rounding). Instances are immutable and shared.
+ */
+public final class LiftingWavelet {
+
+    /**
+     * Supported wavelets, given by their orthonormal analysis low-pass filter
+     */
+    public enum Family {
+        HAAR(Math.sqrt(0.5), Math.sqrt(0.5)),
+        // Daubechies, 4 taps (2 vanishing moments)
+        DB4((1 + Math.sqrt(3)) / (4 * Math.sqrt(2)), (3 + Math.sqrt(3)) / (4 * Math.sqrt(2)),
+            (3 - Math.sqrt(3)) / (4 * Math.sqrt(2)), (1 - Math.sqrt(3)) / (4 * Math.sqrt(2))),
+        // Symlet, 8 taps (4 vanishing moments, least asymmetric)
+        SYM4(-0.07576571478950225, -0.029635527646002607, 0.4976186676327751, 0.803738751805132,
+             0.2978577956053062, -0.09921954357663357, -0.01260396726203132, 0.03222310060405147);
+
+        private final double[] lowpass;
+
+        Family(double... lowpass) {
+            this.lowpass = lowpass;
+        }
+
+        public double[] getLowpass() {
+            return lowpass.clone();
+        }
+    }
+
+    private static final Map<Family, LiftingWavelet> INSTANCES = new EnumMap<>(Family.class);
+    static {
+        for (Family family : Family.values()) {
+            INSTANCES.put(family, new LiftingWavelet(family));
+        }
+    }
+
+    // Coefficients below this are factorisation round-off
+    private static final double EPSILON = 1e-10;
+    // Factorisations whose coefficients and scales stay below this count as well conditioned
+    private static final double WELL_CONDITIONED = 4.0;
+
+    private final Family family;
+    private final Step[] steps;
+    private final double evenScale;
+    private final double oddScale;
+
+    public static LiftingWavelet of(Family family) {
+        return INSTANCES.get(family);
+    }
+
+    private LiftingWavelet(Family family) {
+        this.family = family;
+
+        // Polyphase matrix of the analysis bank (correlation form):
+        // s[n] = sum h[k] x[2n + k], d[n] = sum g[k] x[2n + k], g[k] = (-1)^k h[L-1-k]
+        double[] h = family.lowpass;
+        int length = h.length;
+        double[] g = new double[length];
+        for (int k = 0; k < length; k++) {
+            g[k] = (k % 2 == 0 ? 1 : -1) * h[length - 1 - k];
+        }
+        Laurent[][] p = {
+            { Laurent.phase(h, 0), Laurent.phase(h, 1) },
+            { Laurent.phase(g, 0), Laurent.phase(g, 1) }
+        };
+
+        Factorisation best = new Factorisation();
+        factorise(p, new ArrayList<>(), best);
+        this.steps = best.steps.toArray(new Step[0]);
+        this.evenScale = best.evenScale;
+        this.oddScale = best.oddScale;
+    }
+
+    /**
+     * Column operations peel off the lifting steps in the order they are applied:
+     * col0 -= q col1 is a predict step (odd += q even), col1 -= q col0 an
+     * update (even += q odd). Every way of dividing is tried, the best
+     * conditioned result is kept.
+     */
+    private static void factorise(Laurent[][] p, List<Step> found, Factorisation best) {
+        Laurent a = p[0][0];
+        Laurent b = p[0][1];
+        if (a.isZero() || b.isZero()) {
+            finish(copy(p), new ArrayList<>(found), best);
+            return;
+        }
+        if (a.length() >= b.length()) {
+            for (int top = 0; top <= a.length() - b.length() + 1; top++) {
+                Laurent q = a.quotient(b, top);
+                Laurent[][] next = copy(p);
+                subtractColumn(next, 0, 1, q);
+                found.add(new Step(true, q));
+                factorise(next, found, best);
+                found.remove(found.size() - 1);
+            }
+        }
+        if (b.length() >= a.length()) {
+            for (int top = 0; top <= b.length() - a.length() + 1; top++) {
+                Laurent q = b.quotient(a, top);
+                Laurent[][] next = copy(p);
+                subtractColumn(next, 1, 0, q);
+                found.add(new Step(false, q));
+                factorise(next, found, best);
+                found.remove(found.size() - 1);
+            }
+        }
+    }
+
+    private static void finish(Laurent[][] p, List<Step> found, Factorisation best) {
+        if (p[0][0].isZero()) {
+            // Row 0 is (0, b): move b to the first column
+            Laurent minusOne = Laurent.monomial(-1.0, 0);
+            subtractColumn(p, 0, 1, minusOne);
+            found.add(new Step(true, minusOne));
+            Laurent one = Laurent.monomial(1.0, 0);
+            subtractColumn(p, 1, 0, one);
+            found.add(new Step(false, one));
+        }
+        // Row 0 is (K1 S^a, 0), so p[1][1] is a monomial too: clear p[1][0]
+        if (p[0][0].length() != 1 || p[1][1].length() != 1) {
+            return;
+        }
+        if (!p[1][0].isZero()) {
+            Laurent q = p[1][0].divideByMonomial(p[1][1]);
+            subtractColumn(p, 0, 1, q);
+            found.add(new Step(true, q));
+        }
+
+        // The remaining shifts only move the subbands by whole samples and are dropped
+        double evenScale = p[0][0].leading();
+        double oddScale = p[1][1].leading();
+        double cost = Math.max(Math.max(Math.abs(evenScale), 1.0 / Math.abs(evenScale)),
+                               Math.max(Math.abs(oddScale), 1.0 / Math.abs(oddScale)));
+        for (Step step : found) {
+            for (double c : step.coefficients) {
+                cost = Math.max(cost, Math.abs(c));
+            }
+        }
+        boolean better;
+        if (best.steps == null) {
+            better = true;
+        } else if ((cost <= WELL_CONDITIONED) != (best.cost <= WELL_CONDITIONED)) {
+            better = cost <= WELL_CONDITIONED;
+        } else if (cost <= WELL_CONDITIONED && found.size() != best.steps.size()) {
+            better = found.size() < best.steps.size();
+        } else {
+            better = cost < best.cost;
+        }
+        if (better) {
+            best.cost = cost;
+            best.steps = found;
+            best.evenScale = evenScale;
+            best.oddScale = oddScale;
+        }
+    }
+
+    private static Laurent[][] copy(Laurent[][] p) {
+        return new Laurent[][] { p[0].clone(), p[1].clone() };
+    }
+
+    private static final class Factorisation {
+        double cost = Double.POSITIVE_INFINITY;
+        List<Step> steps;
+        double evenScale;
+        double oddScale;
+    }
+
+    private static void subtractColumn(Laurent[][] p, int target, int source, Laurent q) {
+        for (int row = 0; row < 2; row++) {
+            p[row][target] = p[row][target].minus(q.times(p[row][source]));
+        }
+    }
+
+    public Family getFamily() {
+        return family;
+    }
+
+    /**
+     * Number of levels that fit a signal of the given length (each needs at least 2 samples)
+     */
+    public static int maxLevels(int length) {
+        int levels = 0;
+        for (long stride = 1; (length + stride - 1) / stride >= 2; stride <<= 1) {
+            levels++;
+        }
+        return levels;
+    }
+
+    /**
+     * Forward transform of data[0 .. length) in place
+     *
+     * @return The number of levels done (at most maxLevels(length))
+     */
+    public int forward(double[] data, int length, int levels) {
+        int done = Math.min(levels, maxLevels(length));
+        for (int level = 0; level < done; level++) {
+            int stride = 1 << level;
+            int count = (length + stride - 1) / stride;
+            for (Step step : steps) {
+                step.apply(data, count, stride, 1.0);
+            }
+            scale(data, count, stride, evenScale, oddScale);
+        }
+        return done;
+    }
+
+    /**
+     * Inverse of forward(data, length, levels), in place
+     */
+    public void inverse(double[] data, int length, int levels) {
+        for (int level = levels - 1; level >= 0; level--) {
+            int stride = 1 << level;
+            int count = (length + stride - 1) / stride;
+            scale(data, count, stride, 1.0 / evenScale, 1.0 / oddScale);
+            for (int i = steps.length - 1; i >= 0; i--) {
+                steps[i].apply(data, count, stride, -1.0);
+            }
+        }
+    }
+
+    private static void scale(double[] data, int count, int stride, double even, double odd) {
+        for (int p = 0; p < count; p++) {
+            data[p * stride] *= (p & 1) == 0 ? even : odd;
+        }
+    }
+
+    /**
+     * Mirrors a level position into [0, count): whole-sample symmetric,
+     * keeps the parity (the channel) of the position
+     */
+    private static int mirror(int position, int count) {
+        if (count == 1) {
+            return 0;
+        }
+        int period = 2 * (count - 1);
+        int p = Math.floorMod(position, period);
+        return p < count ? p : period - p;
+    }
+
+    /**
+     * target[n] += sign * sum over t of c[t] * source[n + shift + t];
+     * a predict step updates the odd channel from the even one, an update
+     * step the even channel from the odd one
+     */
+    private static final class Step {
+        private final boolean predict;
+        private final int shift;
+        private final double[] coefficients;
+
+        Step(boolean predict, Laurent q) {
+            this.predict = predict;
+            this.shift = q.min;
+            this.coefficients = q.coefficients;
+        }
+
+        void apply(double[] data, int count, int stride, double sign) {
+            int targetParity = predict ? 1 : 0;
+            int sourceParity = 1 - targetParity;
+            int targetCount = predict ? count / 2 : (count + 1) / 2;
+            int sourceCount = predict ? (count + 1) / 2 : count / 2;
+            int taps = coefficients.length;
+
+            // Interior: every source index in range, no mirroring
+            int interiorFrom = Math.max(0, -shift);
+            int interiorTo = Math.min(targetCount, sourceCount - shift - taps + 1);
+
+            for (int n = 0; n < targetCount; n++) {
+                double sum = 0.0;
+                if (n >= interiorFrom && n < interiorTo) {
+                    int position = (2 * (n + shift) + sourceParity) * stride;
+                    for (int t = 0; t < taps; t++) {
+                        sum += coefficients[t] * data[position];
+                        position += 2 * stride;
+                    }
+                } else {
+                    for (int t = 0; t < taps; t++) {
+                        int position = mirror(2 * (n + shift + t) + sourceParity, count);
+                        sum += coefficients[t] * data[position * stride];
+                    }
+                }
+                data[(2 * n + targetParity) * stride] += sign * sum;
+            }
+        }
+    }
+
+    /**
+     * Laurent polynomial sum of coefficients[i] S^(min + i), S being the
+     * one-sample advance of a polyphase channel
+     */
+    private static final class Laurent {
+        final int min;
+        final double[] coefficients;
+
+        private Laurent(int min, double[] coefficients) {
+            // Drop round-off terms at both ends
+            int from = 0, to = coefficients.length;
+            while (from < to && Math.abs(coefficients[from]) < EPSILON) from++;
+            while (to > from && Math.abs(coefficients[to - 1]) < EPSILON) to--;
+            this.min = min + from;
+            this.coefficients = java.util.Arrays.copyOfRange(coefficients, from, to);
+        }
+
+        static Laurent monomial(double value, int power) {
+            return new Laurent(power, new double[] { value });
+        }
+
+        // Even (parity 0) or odd (parity 1) taps of a filter
+        static Laurent phase(double[] filter, int parity) {
+            double[] c = new double[(filter.length - parity + 1) / 2];
+            for (int m = 0; m < c.length; m++) {
+                c[m] = filter[2 * m + parity];
+            }
+            return new Laurent(0, c);
+        }
+
+        boolean isZero() {
+            return coefficients.length == 0;
+        }
+
+        int length() {
+            return coefficients.length;
+        }
+
+        int max() {
+            return min + coefficients.length - 1;
+        }
+
+        double leading() {
+            return coefficients[coefficients.length - 1];
+        }
+
+        Laurent times(Laurent other) {
+            if (isZero() || other.isZero()) {
+                return new Laurent(0, new double[0]);
+            }
+            double[] c = new double[coefficients.length + other.coefficients.length - 1];
+            for (int i = 0; i < coefficients.length; i++) {
+                for (int j = 0; j < other.coefficients.length; j++) {
+                    c[i + j] += coefficients[i] * other.coefficients[j];
+                }
+            }
+            return new Laurent(min + other.min, c);
+        }
+
+        Laurent minus(Laurent other) {
+            if (other.isZero()) return this;
+            if (isZero()) return other.times(monomial(-1.0, 0));
+            int from = Math.min(min, other.min);
+            int to = Math.max(max(), other.max());
+            double[] c = new double[to - from + 1];
+            for (int i = 0; i < coefficients.length; i++) c[min - from + i] += coefficients[i];
+            for (int i = 0; i < other.coefficients.length; i++) c[other.min - from + i] -= other.coefficients[i];
+            return new Laurent(from, c);
+        }
+
+        /**
+         * q such that this - q * divisor is shorter than the divisor: the
+         * highest term is cancelled top times, then the lowest one
+         */
+        Laurent quotient(Laurent divisor, int top) {
+            Laurent remainder = this;
+            Laurent q = new Laurent(0, new double[0]);
+            int cancelled = 0;
+            while (!remainder.isZero() && remainder.length() >= divisor.length()) {
+                Laurent term = cancelled++ < top
+                    ? monomial(remainder.leading() / divisor.leading(), remainder.max() - divisor.max())
+                    : monomial(remainder.coefficients[0] / divisor.coefficients[0], remainder.min - divisor.min);
+                q = q.minus(term.times(monomial(-1.0, 0)));
+                remainder = remainder.minus(term.times(divisor));
+            }
+            return q;
+        }
+
+        Laurent divideByMonomial(Laurent monomial) {
+            double[] c = coefficients.clone();
+            for (int i = 0; i < c.length; i++) {
+                c[i] /= monomial.coefficients[0];
+            }
+            return new Laurent(min - monomial.min, c);
+        }
+    }
+}
@@ -1,27 +1,197 @@
 package hu.ujvari.ecgprocessor;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import hu.ujvari.ecgmodel.DoubleArrayList;
 
 /**
  * Locally Weighted Regression Filter (LOESS/LOWESS)
  * Uses local approximation for signal smoothing, preserving peaks effectively.
+ *
+ * On the uniform sample grid a weighted polynomial fit evaluated at one point
+ * is a fixed linear combination of the window samples (its equivalent kernel),
+ * which depends only on where the point sits in its window. The kernels are
+ * built once per position class by solving the weighted normal equations:
+ * one for the interior, applied as a convolution, and one per truncated
+ * window at the edges. Filtering then costs the same as Savitzky-Golay,
+ * whatever the polynomial order.
+ *
+ * Robust LOWESS (Cleveland's bisquare iterations) multiplies the tricube
+ * weights by per-sample robustness weights, so those iterations fit every
+ * point directly. They run chunk by chunk on the fork-join pool (each chunk
+ * reads its window halo from the shared read-only arrays) and stop early
+ * once the fit no longer changes.
  */
 public class LoessFilter {
     private int windowSize;
     private int polynomialOrder;
     private double bandwidth;
+    private int robustIterations;
+
+    // Outputs per parallel task of a robust iteration
+    private static final int CHUNK_SIZE = 4096;
+    // Bisquare cut-off in units of the median absolute residual
+    private static final double BISQUARE_SCALE = 6.0;
+    // Stop when the fit moves on average less than this fraction of the median absolute residual
+    private static final double CONVERGENCE_TOLERANCE = 1e-2;
+
+    private final int halfWindow;
+    private final ConvolutionEngine interior;
+    // edgeKernels[i]: fit at point i of the window [0, i + halfWindow] (the right edge is mirrored)
+    private final double[][] edgeKernels;
 
     /**
      * Initializes a LOESS filter
      * @param windowSize The size of the local window
-     * @param polynomialOrder The degree of the polynomial (typically 1 or 2)
+     * @param polynomialOrder The degree of the polynomial (0 to 3; lowered where the fit would be singular)
      * @param bandwidth The bandwidth parameter (between 0 and 1), controlling local weighting
      */
     public LoessFilter(int windowSize, int polynomialOrder, double bandwidth) {
+        this(windowSize, polynomialOrder, bandwidth, 0);
+    }
+
+    /**
+     * @param robustIterations Number of bisquare reweighting iterations (0 = plain LOESS)
+     */
+    public LoessFilter(int windowSize, int polynomialOrder, double bandwidth, int robustIterations) {
+        this.robustIterations = Math.max(0, robustIterations);
         this.windowSize = windowSize;
-        this.polynomialOrder = polynomialOrder;
+        this.polynomialOrder = Math.max(0, polynomialOrder);
         this.bandwidth = bandwidth;
+
+        this.halfWindow = Math.max(0, windowSize / 2);
+        this.interior = new ConvolutionEngine(
+            equivalentKernel(halfWindow, halfWindow, this.polynomialOrder, bandwidth));
+
+        this.edgeKernels = new double[halfWindow][];
+        for (int i = 0; i < halfWindow; i++) {
+            edgeKernels[i] = equivalentKernel(i, halfWindow, this.polynomialOrder, bandwidth);
+        }
+    }
+
+    /**
+     * Tricube kernel: (1 - |d|^3)^3 for d = dist / scale, 0 beyond 1
+     */
+    private static double tricube(double dist, double scale) {
+        if (dist == 0) {
+            return 1.0;
+        }
+        double d = dist / scale;
+        if (d > 1) {
+            return 0.0;
+        }
+        double t = 1 - d * d * d;
+        return t * t * t;
+    }
+
+    /**
+     * Equivalent kernel of the weighted polynomial fit over the window
+     * [-left, right] (relative to the evaluation point), evaluated at 0.
+     * Solves (X'WX) c = e0, then kernel[u] = w(u) * sum_k c_k t^k with the
+     * coordinates scaled to t = u / maxDist for conditioning.
+     * If the system is singular (too few weighted points for the degree)
+     * the degree is lowered until it is not.
+     */
+    static double[] equivalentKernel(int left, int right, int degree, double bandwidth) {
+        int length = left + right + 1;
+        int maxDist = Math.max(Math.max(left, right), 1);
+        double[] weights = new double[length];
+        int weightedPoints = 0;
+        for (int u = -left; u <= right; u++) {
+            weights[u + left] = tricube(Math.abs(u), Math.max(left, right) * bandwidth);
+            if (weights[u + left] > 0) weightedPoints++;
+        }
+
+        for (int p = Math.min(degree, weightedPoints - 1); p > 0; p--) {
+            double[] c = solveNormalEquations(weights, left, maxDist, p);
+            if (c != null) {
+                double[] kernel = new double[length];
+                for (int u = -left; u <= right; u++) {
+                    double t = (double) u / maxDist;
+                    double value = 0;
+                    double power = 1;
+                    for (int k = 0; k <= p; k++) {
+                        value += c[k] * power;
+                        power *= t;
+                    }
+                    kernel[u + left] = weights[u + left] * value;
+                }
+                return kernel;
+            }
+        }
+
+        // Degree 0: weighted mean
+        double sum = 0;
+        for (double weight : weights) sum += weight;
+        double[] kernel = new double[length];
+        for (int k = 0; k < length; k++) {
+            kernel[k] = weights[k] / sum;
+        }
+        return kernel;
+    }
+
+    /**
+     * First column of (X'WX)^-1 by Gaussian elimination with partial pivoting
+     * @return null if the matrix is (numerically) singular
+     */
+    private static double[] solveNormalEquations(double[] weights, int left, int maxDist, int degree) {
+        // Moments sum w t^k, k = 0 .. 2 * degree
+        double[] moments = new double[2 * degree + 1];
+        for (int k = 0; k < weights.length; k++) {
+            double t = (double) (k - left) / maxDist;
+            double power = weights[k];
+            for (int e = 0; e < moments.length; e++) {
+                moments[e] += power;
+                power *= t;
+            }
+        }
+
+        double[] unit = new double[degree + 1];
+        unit[0] = 1.0;
+        double[] c = new double[degree + 1];
+        return solve(moments, unit, degree, new double[degree + 1][degree + 2], c) ? c : null;
+    }
+
+    /**
+     * Solves M c = rhs for the Hankel matrix M[r][col] = moments[r + col]
+     * @param a Scratch matrix of at least (degree + 1) x (degree + 2)
+     * @return false if M is (numerically) singular
+     */
+    private static boolean solve(double[] moments, double[] rhs, int degree, double[][] a, double[] solution) {
+        int m = degree + 1;
+        for (int r = 0; r < m; r++) {
+            for (int col = 0; col < m; col++) {
+                a[r][col] = moments[r + col];
+            }
+            a[r][m] = rhs[r];
+        }
+
+        for (int col = 0; col < m; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < m; r++) {
+                if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) pivot = r;
+            }
+            if (Math.abs(a[pivot][col]) <= 1e-12 * moments[0]) {
+                return false;
+            }
+            double[] swap = a[col]; a[col] = a[pivot]; a[pivot] = swap;
+
+            for (int r = 0; r < m; r++) {
+                if (r == col) continue;
+                double factor = a[r][col] / a[col][col];
+                for (int k = col; k <= m; k++) {
+                    a[r][k] -= factor * a[col][k];
+                }
+            }
+        }
+
+        for (int r = 0; r < m; r++) {
+            solution[r] = a[r][m] / a[r][r];
+        }
+        return true;
     }
 
     /**
@@ -30,127 +200,192 @@ public class LoessFilter {
      * @return The filtered signal
      */
     public List<Double> filter(List<Double> inputSignal) {
-        List<Double> filteredSignal = new ArrayList<>(inputSignal.size());
-        int n = inputSignal.size();
-        
-        // Perform local regression for each point
-        for (int i = 0; i < n; i++) {
-            // Determine the local window
-            int halfWindow = windowSize / 2;
-            int startIdx = Math.max(0, i - halfWindow);
-            int endIdx = Math.min(n - 1, i + halfWindow);
-            
-            // Collect the points within the window
-            List<Double> x = new ArrayList<>();
-            List<Double> y = new ArrayList<>();
-            
-            for (int j = startIdx; j <= endIdx; j++) {
-                x.add((double) j);
-                y.add(inputSignal.get(j));
-            }
-            
-            // Calculate distance-based weights
-            List<Double> weights = calculateWeights(x, i, bandwidth);
-            
-            // Perform weighted polynomial fitting
-            double[] coeffs = fitPolynomial(x, y, weights, polynomialOrder);
-            
-            // Evaluate the fitted value at point i
-            double fittedValue = evaluatePolynomial(coeffs, i);
-            filteredSignal.add(fittedValue);
-        }
-        
-        return filteredSignal;
+        return DoubleArrayList.wrap(filter(DoubleArrayList.asArray(inputSignal)));
     }
-    
+
+    public double[] filter(double[] input) {
+        double[] fitted = fit(input);
+        if (robustIterations > 0) {
+            fitted = robustFit(input, fitted);
+        }
+        return fitted;
+    }
+
     /**
-     * Calculate distance-based weights for LOESS
+     * Plain LOESS through the equivalent kernels
      */
-    private List<Double> calculateWeights(List<Double> x, int center, double bandwidth) {
-        List<Double> weights = new ArrayList<>(x.size());
-        double maxDist = 0;
-        
-        // Find the maximum distance
-        for (Double point : x) {
-            double dist = Math.abs(point - center);
-            if (dist > maxDist) {
-                maxDist = dist;
-            }
-        }
-        
-        // Compute weights using the tricube kernel
-        for (Double point : x) {
-            double dist = Math.abs(point - center) / (maxDist * bandwidth);
-            if (dist > 1) {
-                weights.add(0.0);
-            } else {
-                // Tricube kernel: (1 - |d|^3)^3
-                double weight = Math.pow(1 - Math.pow(dist, 3), 3);
-                weights.add(weight);
+    private double[] fit(double[] input) {
+        int n = input.length;
+        if (n <= 2 * halfWindow) {
+            // Every window is truncated on one or both sides
+            double[] filteredSignal = new double[n];
+            for (int i = 0; i < n; i++) {
+                int left = Math.min(i, halfWindow);
+                int right = Math.min(n - 1 - i, halfWindow);
+                double[] kernel = equivalentKernel(left, right, polynomialOrder, bandwidth);
+                filteredSignal[i] = dot(kernel, input, i - left);
+            }
+            return filteredSignal;
+        }
+
+        double[] filteredSignal = interior.correlate(input);
+        for (int i = 0; i < halfWindow; i++) {
+            double[] kernel = edgeKernels[i];
+            filteredSignal[i] = dot(kernel, input, 0);
+
+            // Mirrored window at the right edge
+            double sum = 0.0;
+            for (int k = 0; k < kernel.length; k++) {
+                sum += kernel[k] * input[n - 1 - k];
             }
+            filteredSignal[n - 1 - i] = sum;
         }
-        
-        return weights;
+        return filteredSignal;
     }
-    
-    /**
-     * Weighted polynomial fitting using least squares
-     */
-    private double[] fitPolynomial(List<Double> x, List<Double> y, List<Double> weights, int degree) {
-        // Simplified implementation: linear regression (degree = 1)
-        // For higher degree polynomials, proper matrix operations should be used
-        if (degree == 1) {
-            return fitLinear(x, y, weights);
-        } else {
-            // Simplified approach for higher degree polynomials
-            return fitLinearApproximation(x, y, weights);
+
+    private static double dot(double[] kernel, double[] input, int offset) {
+        double sum = 0.0;
+        for (int k = 0; k < kernel.length; k++) {
+            sum += kernel[k] * input[offset + k];
         }
+        return sum;
     }
-    
+
     /**
-     * Linear fitting (degree = 1)
+     * Bisquare reweighting iterations starting from the plain fit
      */
-    private double[] fitLinear(List<Double> x, List<Double> y, List<Double> weights) {
-        int n = x.size();
-        double sumW = 0, sumWX = 0, sumWY = 0, sumWXX = 0, sumWXY = 0;
-        
-        for (int i = 0; i < n; i++) {
-            double xi = x.get(i);
-            double yi = y.get(i);
-            double wi = weights.get(i);
-            
-            sumW += wi;
-            sumWX += wi * xi;
-            sumWY += wi * yi;
-            sumWXX += wi * xi * xi;
-            sumWXY += wi * xi * yi;
-        }
-        
-        double xMean = sumWX / sumW;
-        double yMean = sumWY / sumW;
-        
-        double slope = (sumWXY - sumWX * sumWY / sumW) / (sumWXX - sumWX * sumWX / sumW);
-        double intercept = yMean - slope * xMean;
-        
-        return new double[] {intercept, slope};
+    private double[] robustFit(double[] input, double[] fitted) {
+        int n = input.length;
+        double[] residuals = new double[n];
+        double[] robustness = new double[n];
+        double[][] interiorTable = interiorPowerTable();
+
+        for (int iteration = 0; iteration < robustIterations; iteration++) {
+            for (int i = 0; i < n; i++) {
+                residuals[i] = Math.abs(input[i] - fitted[i]);
+            }
+            double scale = BISQUARE_SCALE * QuickSelect.median(residuals, n);
+            if (!(scale > 0)) {
+                // At least half of the points are fitted exactly, nothing to downweight
+                break;
+            }
+
+            for (int i = 0; i < n; i++) {
+                double u = Math.abs(input[i] - fitted[i]) / scale;
+                double v = 1 - u * u;
+                robustness[i] = u < 1 ? v * v : 0.0;
+            }
+
+            double[] previous = fitted;
+            double[] next = new double[n];
+            int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            if (chunks > 1 && ForkJoinPool.getCommonPoolParallelism() > 1) {
+                IntStream.range(0, chunks).parallel().forEach(
+                    chunk -> robustChunk(input, robustness, interiorTable, previous, next,
+                                         chunk * CHUNK_SIZE, Math.min(n, (chunk + 1) * CHUNK_SIZE)));
+            } else {
+                robustChunk(input, robustness, interiorTable, previous, next, 0, n);
+            }
+            fitted = next;
+
+            // Mean absolute change of the fit, relative to the residual scale
+            double change = 0;
+            for (int i = 0; i < n; i++) {
+                change += Math.abs(next[i] - previous[i]);
+            }
+            change /= n;
+            if (change <= CONVERGENCE_TOLERANCE * scale / BISQUARE_SCALE) {
+                break;
+            }
+        }
+        return fitted;
     }
-    
+
     /**
-     * Simplified approach for higher-order polynomial fitting
+     * table[e][u + halfWindow] = tricube(u) * t^e for the full window, e = 0 .. 2 * degree
      */
-    private double[] fitLinearApproximation(List<Double> x, List<Double> y, List<Double> weights) {
-        // Simplified approach - only linear approximation
-        return fitLinear(x, y, weights);
+    private double[][] interiorPowerTable() {
+        int degree = polynomialOrder;
+        int maxDist = Math.max(halfWindow, 1);
+        double[][] table = new double[2 * degree + 1][2 * halfWindow + 1];
+        for (int u = -halfWindow; u <= halfWindow; u++) {
+            double t = (double) u / maxDist;
+            double power = tricube(Math.abs(u), halfWindow * bandwidth);
+            for (int e = 0; e <= 2 * degree; e++) {
+                table[e][u + halfWindow] = power;
+                power *= t;
+            }
+        }
+        return table;
     }
-    
+
     /**
-     * Evaluate a polynomial at a given point
+     * Weighted fits for the outputs [from, to); the windows reach halfWindow
+     * samples beyond the chunk into the shared input and robustness arrays
      */
-    private double evaluatePolynomial(double[] coeffs, double x) {
-        double result = 0;
-        for (int i = 0; i < coeffs.length; i++) {
-            result += coeffs[i] * Math.pow(x, i);
+    private void robustChunk(double[] input, double[] robustness, double[][] interiorTable,
+                             double[] previous, double[] output, int from, int to) {
+        int n = input.length;
+        int degree = polynomialOrder;
+        double[] moments = new double[2 * degree + 1];
+        double[] rhs = new double[degree + 1];
+        double[] solution = new double[degree + 1];
+        double[][] a = new double[degree + 1][degree + 2];
+
+        for (int i = from; i < to; i++) {
+            int left = Math.min(i, halfWindow);
+            int right = Math.min(n - 1 - i, halfWindow);
+            int maxDist = Math.max(Math.max(left, right), 1);
+            double kernelScale = Math.max(left, right) * bandwidth;
+
+            Arrays.fill(moments, 0.0);
+            Arrays.fill(rhs, 0.0);
+            int weightedPoints = 0;
+            if (left == halfWindow && right == halfWindow) {
+                // Full window: kernel weights and powers come from the table
+                for (int u = -halfWindow; u <= halfWindow; u++) {
+                    double r = robustness[i + u];
+                    if (r == 0 || interiorTable[0][u + halfWindow] == 0) continue;
+                    weightedPoints++;
+                    double ry = r * input[i + u];
+                    for (int e = 0; e <= degree; e++) {
+                        moments[e] += r * interiorTable[e][u + halfWindow];
+                        rhs[e] += ry * interiorTable[e][u + halfWindow];
+                    }
+                    for (int e = degree + 1; e < moments.length; e++) {
+                        moments[e] += r * interiorTable[e][u + halfWindow];
+                    }
+                }
+            } else {
+                for (int u = -left; u <= right; u++) {
+                    double w = tricube(Math.abs(u), kernelScale) * robustness[i + u];
+                    if (w == 0) continue;
+                    weightedPoints++;
+                    double t = (double) u / maxDist;
+                    double y = input[i + u];
+                    double power = w;
+                    for (int e = 0; e < moments.length; e++) {
+                        if (e <= degree) rhs[e] += power * y;
+                        moments[e] += power;
+                        power *= t;
+                    }
+                }
+            }
+
+            if (weightedPoints == 0) {
+                // Every neighbour is an outlier: keep the previous estimate
+                output[i] = previous[i];
+                continue;
+            }
+
+            double value = rhs[0] / moments[0];
+            for (int p = Math.min(degree, weightedPoints - 1); p > 0; p--) {
+                if (solve(moments, rhs, p, a, solution)) {
+                    value = solution[0];
+                    break;
+                }
+            }
+            output[i] = value;
         }
-        return result;
     }
 }
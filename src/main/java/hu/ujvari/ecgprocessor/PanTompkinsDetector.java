@@ -0,0 +1,416 @@
+package hu.ujvari.ecgprocessor;
+
+import java.util.Arrays;
+
+/**
+ * QRS (R peak) detector after Pan and Tompkins.
+ * <p>
+ * Every sample passes through a 5-15 Hz band-pass (two Butterworth biquads),
+ * a five-point derivative, squaring and a 150 ms moving-window integration
+ * (running sum). Peaks of the integrated signal are classified against
+ * adaptive signal / noise levels, with a 200 ms refractory period, a T wave
+ * check within 360 ms and a search-back with the halved threshold when no
+ * beat was found for 166% of the average RR interval (T waves are never
+ * picked by the search-back). The R peak is the raw
+ * sample farthest from the median of the integration window of the accepted
+ * peak, so a negative QRS (e.g. aVR) is located by its deepest sample rather
+ * than by the P or T wave.
+ * <p>
+ * The work per sample is constant and the state is a few ring buffers of
+ * fixed length (about 0.3 s of samples), so the detector can run on a stream
+ * (see Online) as well as on a whole recording.
+ */
+public class PanTompkinsDetector {
+    public static final double DEFAULT_SAMPLE_RATE = 1000.0;
+    // Position of the detection threshold between the noise and the signal level
+    public static final double DEFAULT_THRESHOLD_FRACTION = 0.25;
+
+    private static final double LOW_CUTOFF = 5.0;
+    private static final double HIGH_CUTOFF = 15.0;
+    // Derivative taps are spaced as the 200 Hz original
+    private static final double DERIVATIVE_RATE = 200.0;
+    private static final double INTEGRATION_WINDOW = 0.150;
+    private static final double REFRACTORY = 0.200;
+    private static final double T_WAVE_WINDOW = 0.360;
+    // A peak of the integrated signal is taken once it fell to half or after this time
+    private static final double PEAK_HOLD = 0.100;
+    // The R wave may precede the integration window by the band-pass delay
+    private static final double FILTER_DELAY = 0.050;
+    private static final double LEARNING_TIME = 2.0;
+    private static final double SEARCH_BACK_RR = 1.66;
+    private static final int RR_HISTORY = 8;
+
+    private final double sampleRate;
+    private final double thresholdFraction;
+
+    public PanTompkinsDetector() {
+        this(DEFAULT_SAMPLE_RATE);
+    }
+
+    public PanTompkinsDetector(double sampleRate) {
+        this(sampleRate, DEFAULT_THRESHOLD_FRACTION);
+    }
+
+    /**
+     * @param sampleRate        Sampling rate in Hz
+     * @param thresholdFraction Detection threshold between the noise (0) and the signal (1) level
+     */
+    public PanTompkinsDetector(double sampleRate, double thresholdFraction) {
+        if (!(sampleRate >= 4 * HIGH_CUTOFF)) {
+            throw new IllegalArgumentException("A mintavételi frekvencia legyen legalább " + 4 * HIGH_CUTOFF + " Hz.");
+        }
+        if (!(thresholdFraction > 0 && thresholdFraction < 1)) {
+            throw new IllegalArgumentException("A küszöb aránya 0 és 1 között legyen.");
+        }
+        this.sampleRate = sampleRate;
+        this.thresholdFraction = thresholdFraction;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Detects the R peaks of a whole recording. The thresholds are learnt on
+     * the first two seconds, which are then detected as well.
+     *
+     * @return Sample indices of the R peaks in ascending order
+     */
+    public int[] detect(double[] signal) {
+        Online online = online();
+        int learning = Math.min(signal.length, online.learningSamples);
+        for (int i = 0; i < learning; i++) {
+            online.offer(signal[i]);
+        }
+        online.restart();
+
+        int[] peaks = new int[16];
+        int count = 0;
+        for (double sample : signal) {
+            long peak = online.offer(sample);
+            if (peak >= 0) {
+                if (count == peaks.length) {
+                    peaks = Arrays.copyOf(peaks, 2 * count);
+                }
+                // Indices of an array fit in an int
+                peaks[count++] = (int) peak;
+            }
+        }
+        return Arrays.copyOf(peaks, count);
+    }
+
+    /**
+     * New sample-by-sample detector; it learns its thresholds on the first
+     * two seconds and reports beats after that
+     */
+    public Online online() {
+        return new Online();
+    }
+
+    /**
+     * Streaming detector state. Not thread-safe.
+     */
+    public final class Online {
+        private final Biquad highpass = Biquad.highpass(LOW_CUTOFF, sampleRate);
+        private final Biquad lowpass = Biquad.lowpass(HIGH_CUTOFF, sampleRate);
+
+        private final int derivativeSpacing = Math.max(1, (int) Math.round(sampleRate / DERIVATIVE_RATE));
+        private final double derivativeScale = sampleRate / (8.0 * derivativeSpacing);
+        private final double[] filtered = new double[4 * derivativeSpacing + 1];
+
+        private final int window = Math.max(1, (int) Math.round(INTEGRATION_WINDOW * sampleRate));
+        private final double[] squares = new double[window];
+        private double squareSum;
+
+        private final int refractory = (int) Math.round(REFRACTORY * sampleRate);
+        private final int tWaveWindow = (int) Math.round(T_WAVE_WINDOW * sampleRate);
+        private final int peakHold = (int) Math.round(PEAK_HOLD * sampleRate);
+        private final int lookBack = window + (int) Math.round(FILTER_DELAY * sampleRate);
+        private final int learningSamples = (int) Math.round(LEARNING_TIME * sampleRate);
+
+        // Raw samples and slopes of the last lookBack + peakHold samples
+        private final double[] raw = new double[lookBack + peakHold + 2];
+        private final double[] slopes = new double[raw.length];
+        private final double[] sorted = new double[raw.length];
+
+        private long index = -1;
+        private double offset;
+
+        // Peak of the integrated signal being tracked
+        private double peakValue;
+        private long peakIndex;
+        private long trackStart;
+
+        // Adaptive levels (SPKI, NPKI)
+        private boolean learnt;
+        private double learnMax;
+        private double learnSum;
+        private double signalLevel;
+        private double noiseLevel;
+
+        private long lastQrsPeak = -tWaveWindow;
+        private long lastR = -1;
+        private double lastSlope;
+
+        private final long[] rrIntervals = new long[RR_HISTORY];
+        private int rrCount;
+        private int rrNext;
+        private long rrSum;
+
+        // Largest noise peak since the last beat (T waves excluded), for the search-back
+        private double missedValue;
+        private long missedPeak;
+        private long missedR;
+        private double missedSlope;
+
+        private Online() {
+        }
+
+        /**
+         * Feeds the next sample
+         *
+         * @return Index of an R peak confirmed by this sample (it lies up to
+         *         about 0.3 s back), or -1. The index counts every sample
+         *         offered, so it is a long: a stream passes the int range
+         *         after about 25 days at 1000 Hz.
+         */
+        public long offer(double sample) {
+            index++;
+            if (index == 0) {
+                // The band-pass removes the offset anyway; starting from it avoids the step response
+                offset = sample;
+            }
+            double value = lowpass.apply(highpass.apply(sample - offset));
+
+            int slot = (int) (index % filtered.length);
+            filtered[slot] = value;
+            double slope = 0.0;
+            if (index >= filtered.length - 1) {
+                int d = derivativeSpacing;
+                slope = derivativeScale * (2.0 * value + filtered[back(slot, d)]
+                                           - filtered[back(slot, 3 * d)] - 2.0 * filtered[back(slot, 4 * d)]);
+            }
+
+            int squareSlot = (int) (index % window);
+            double square = slope * slope;
+            squareSum += square - squares[squareSlot];
+            squares[squareSlot] = square;
+            if (squareSlot == window - 1) {
+                // Refresh the running sum once per window against rounding drift
+                squareSum = 0.0;
+                for (double s : squares) {
+                    squareSum += s;
+                }
+            }
+            double integrated = squareSum / window;
+
+            int ringSlot = (int) (index % raw.length);
+            raw[ringSlot] = sample;
+            slopes[ringSlot] = Math.abs(slope);
+
+            if (!learnt) {
+                learnMax = Math.max(learnMax, integrated);
+                learnSum += integrated;
+                if (index + 1 >= learningSamples) {
+                    finishLearning();
+                }
+                return -1;
+            }
+            return track(integrated);
+        }
+
+        /**
+         * Resets the filters and the sample counter but keeps the learnt
+         * levels, to detect a recording from its start after learning on it
+         */
+        void restart() {
+            if (!learnt && index >= 0) {
+                finishLearning();
+            }
+            highpass.reset();
+            lowpass.reset();
+            Arrays.fill(filtered, 0.0);
+            Arrays.fill(squares, 0.0);
+            squareSum = 0.0;
+            index = -1;
+            peakValue = 0.0;
+            peakIndex = -1;
+            trackStart = -1;
+            lastQrsPeak = -tWaveWindow;
+            lastR = -1;
+            lastSlope = 0.0;
+            Arrays.fill(rrIntervals, 0);
+            rrCount = 0;
+            rrNext = 0;
+            rrSum = 0;
+            missedValue = 0.0;
+        }
+
+        private void finishLearning() {
+            long samples = index + 1;
+            signalLevel = learnMax / 3.0;
+            noiseLevel = samples > 0 ? learnSum / samples / 2.0 : 0.0;
+            learnt = true;
+            trackStart = index + 1;
+            peakValue = 0.0;
+        }
+
+        private int back(int slot, int steps) {
+            return (slot - steps + filtered.length) % filtered.length;
+        }
+
+        // Peak tracking of the integrated signal and the decision rules
+        private long track(double integrated) {
+            if (integrated > peakValue) {
+                peakValue = integrated;
+                peakIndex = index;
+            }
+
+            long detected = -1;
+            boolean fallen = integrated < 0.5 * peakValue;
+            if (fallen || index - peakIndex >= peakHold) {
+                if (peakIndex > trackStart) {
+                    detected = classify(peakValue, peakIndex);
+                }
+                // Start tracking again from this sample
+                peakValue = integrated;
+                peakIndex = index;
+                trackStart = index;
+            }
+
+            if (detected < 0) {
+                detected = searchBack();
+            }
+            return detected;
+        }
+
+        private long classify(double value, long peak) {
+            if (peak - lastQrsPeak < refractory) {
+                return -1;
+            }
+            double threshold = noiseLevel + thresholdFraction * (signalLevel - noiseLevel);
+            double slope = maxSlope(peak);
+            boolean tWave = peak - lastQrsPeak < tWaveWindow && slope < 0.5 * lastSlope;
+            if (value > threshold && !tWave) {
+                signalLevel = 0.125 * value + 0.875 * signalLevel;
+                return accept(peak, locateR(peak), slope);
+            }
+
+            noiseLevel = 0.125 * value + 0.875 * noiseLevel;
+            // A T wave counts as noise but is no search-back candidate: a tall T
+            // would otherwise win over the weak beat the search-back is looking for
+            if (!tWave && value > missedValue) {
+                missedValue = value;
+                missedPeak = peak;
+                missedR = locateR(peak);
+                missedSlope = slope;
+            }
+            return -1;
+        }
+
+        private long searchBack() {
+            if (rrCount == 0 || missedValue == 0.0
+                || index - lastQrsPeak <= SEARCH_BACK_RR * rrSum / rrCount) {
+                return -1;
+            }
+            double threshold = noiseLevel + thresholdFraction * (signalLevel - noiseLevel);
+            if (missedValue <= 0.5 * threshold || missedR <= lastR) {
+                return -1;
+            }
+            signalLevel = 0.25 * missedValue + 0.75 * signalLevel;
+            return accept(missedPeak, missedR, missedSlope);
+        }
+
+        private long accept(long peak, long r, double slope) {
+            if (lastR >= 0) {
+                long rr = r - lastR;
+                rrSum += rr - rrIntervals[rrNext];
+                rrIntervals[rrNext] = rr;
+                rrNext = (rrNext + 1) % RR_HISTORY;
+                rrCount = Math.min(rrCount + 1, RR_HISTORY);
+            }
+            lastQrsPeak = peak;
+            lastR = r;
+            lastSlope = slope;
+            missedValue = 0.0;
+            return r;
+        }
+
+        // Raw sample farthest from the local baseline before the peak of the integrated signal, after the previous R
+        private long locateR(long peak) {
+            long from = Math.max(Math.max(0, peak - lookBack), Math.max(lastR + 1, index - raw.length + 1));
+            int count = (int) (peak - from + 1);
+            for (int k = 0; k < count; k++) {
+                sorted[k] = raw[(int) ((from + k) % raw.length)];
+            }
+            // The QRS is narrower than the window, so the median stays near the isoelectric line
+            Arrays.sort(sorted, 0, count);
+            double baseline = count % 2 == 1
+                ? sorted[count / 2]
+                : 0.5 * (sorted[count / 2 - 1] + sorted[count / 2]);
+
+            long best = peak;
+            double bestDeviation = -1.0;
+            for (long i = peak; i >= from; i--) {
+                double deviation = Math.abs(raw[(int) (i % raw.length)] - baseline);
+                if (deviation > bestDeviation) {
+                    bestDeviation = deviation;
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        // Steepest slope in the integration window of the peak
+        private double maxSlope(long peak) {
+            long from = Math.max(Math.max(0, peak - window), index - slopes.length + 1);
+            double max = 0.0;
+            for (long i = from; i <= peak; i++) {
+                max = Math.max(max, slopes[(int) (i % slopes.length)]);
+            }
+            return max;
+        }
+    }
+
+    /**
+     * Second-order Butterworth section (bilinear transform), transposed direct form II
+     */
+    private static final class Biquad {
+        private final double b0, b1, b2, a1, a2;
+        private double z1, z2;
+
+        private Biquad(double b0, double b1, double b2, double a0, double a1, double a2) {
+            this.b0 = b0 / a0;
+            this.b1 = b1 / a0;
+            this.b2 = b2 / a0;
+            this.a1 = a1 / a0;
+            this.a2 = a2 / a0;
+        }
+
+        static Biquad lowpass(double cutoff, double sampleRate) {
+            double w = 2.0 * Math.PI * cutoff / sampleRate;
+            double cos = Math.cos(w);
+            double alpha = Math.sin(w) / Math.sqrt(2.0);
+            return new Biquad((1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+        }
+
+        static Biquad highpass(double cutoff, double sampleRate) {
+            double w = 2.0 * Math.PI * cutoff / sampleRate;
+            double cos = Math.cos(w);
+            double alpha = Math.sin(w) / Math.sqrt(2.0);
+            return new Biquad((1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+        }
+
+        double apply(double x) {
+            double y = b0 * x + z1;
+            z1 = b1 * x - a1 * y + z2;
+            z2 = b2 * x - a2 * y;
+            return y;
+        }
+
+        void reset() {
+            z1 = 0.0;
+            z2 = 0.0;
+        }
+    }
+}
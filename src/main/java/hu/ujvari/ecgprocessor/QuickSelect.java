@@ -0,0 +1,75 @@
+package hu.ujvari.ecgprocessor;
+
+/**
+ * Order statistics in expected O(n) (Hoare's selection with median-of-three
+ * pivots), for medians of residuals and wavelet coefficients without sorting
+ */
+final class QuickSelect {
+
+    private QuickSelect() {
+    }
+
+    /**
+     * @return The k-th smallest value (0-based); the array is reordered
+     */
+    static double select(double[] values, int length, int k) {
+        int left = 0;
+        int right = length - 1;
+        while (right > left) {
+            int mid = (left + right) >>> 1;
+            // Median of three as pivot
+            if (values[mid] < values[left]) swap(values, mid, left);
+            if (values[right] < values[left]) swap(values, right, left);
+            if (values[right] < values[mid]) swap(values, right, mid);
+            double pivot = values[mid];
+
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    swap(values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+
+    /**
+     * @return The median of the first length values (mean of the two middle ones
+     * for an even count); the array is reordered
+     */
+    static double median(double[] values, int length) {
+        if (length == 0) {
+            return Double.NaN;
+        }
+        int half = length / 2;
+        double upper = select(values, length, half);
+        if (length % 2 == 1) {
+            return upper;
+        }
+        // The lower middle is the largest value left of the upper one after the partition
+        double lower = values[0];
+        for (int i = 1; i < half; i++) {
+            if (values[i] > lower) lower = values[i];
+        }
+        return (lower + upper) / 2;
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double t = values[i];
+        values[i] = values[j];
+        values[j] = t;
+    }
+}
@@ -1,114 +1,129 @@
 package hu.ujvari.ecgprocessor;
 
-import java.util.ArrayList;
 import java.util.List;
 
+import hu.ujvari.ecgmodel.DoubleArrayList;
+
 public class SavitzkyGolayFilter {
 
+    /**
+     * Handling of the first and last windowSize/2 samples
+     */
+    public enum BoundaryMode {
+        // Samples outside the input count as 0.0 (pulls the edges toward zero)
+        ZERO_PADDING,
+        // The fit of the first / last full window is evaluated at the edge positions
+        POLYNOMIAL_FIT
+    }
+
     private final int windowSize;
     private final int polyOrder;
-    private final double[] coefficients;
+    private final int derivative;
+    private final BoundaryMode boundaryMode;
+    private final SavitzkyGolayKernels kernels;
 
     public SavitzkyGolayFilter(int windowSize, int polyOrder) {
+        this(windowSize, polyOrder, 0);
+    }
+
+    /**
+     * @param derivative 0 smooths, d &gt; 0 estimates the d-th derivative (per sample step)
+     */
+    public SavitzkyGolayFilter(int windowSize, int polyOrder, int derivative) {
+        this(windowSize, polyOrder, derivative, BoundaryMode.ZERO_PADDING);
+    }
+
+    public SavitzkyGolayFilter(int windowSize, int polyOrder, int derivative, BoundaryMode boundaryMode) {
         if (windowSize % 2 == 0)
             throw new IllegalArgumentException("A windowSize legyen páratlan.");
         if (polyOrder >= windowSize)
             throw new IllegalArgumentException("A polinomfok kisebb kell legyen, mint az ablakméret.");
+        if (derivative < 0 || derivative > polyOrder)
+            throw new IllegalArgumentException("A derivált foka 0 és a polinomfok között legyen.");
 
         this.windowSize = windowSize;
         this.polyOrder = polyOrder;
-        this.coefficients = computeSGCoefficients(windowSize, polyOrder);
+        this.derivative = derivative;
+        this.boundaryMode = boundaryMode;
+        // Shared, cached weights: constructing a filter is a map lookup
+        this.kernels = SavitzkyGolayKernels.get(windowSize, polyOrder, derivative);
     }
 
     public List<Double> filter(List<Double> input) {
-        List<Double> output = new ArrayList<>();
-        int half = windowSize / 2;
+        return DoubleArrayList.wrap(filter(DoubleArrayList.asArray(input)));
+    }
 
-        if (input.size() < windowSize) {
-            System.out.println("[SG] WARNING: input too short for filtering (size = " + input.size() + ")");
+    public double[] filter(double[] input) {
+        if (boundaryMode == BoundaryMode.POLYNOMIAL_FIT) {
+            return filterWithFittedEdges(input);
         }
-        
-
-        for (int i = 0; i < input.size(); i++) {
-            double sum = 0.0;
-            for (int j = -half; j <= half; j++) {
-                int idx = i + j;
-                double value = (idx < 0 || idx >= input.size()) ? 0.0 : input.get(idx);
-                sum += value * coefficients[j + half];
-            }
-            output.add(sum);
+
+        if (input.length < windowSize) {
+            System.out.println("[SG] WARNING: input too short for filtering (size = " + input.length + ")");
         }
 
-        return output;
+        return kernels.centreEngine().correlate(input);
     }
 
-    // 🔍 Calculation of weights: S-G weights for the centre point
-    private double[] computeSGCoefficients(int windowSize, int polyOrder) {
-        int half = windowSize / 2;
-        double[][] A = new double[windowSize][polyOrder + 1];
+    /**
+     * Centre kernel in the interior, precomputed off-centre kernels for the
+     * first and last half windows. An input shorter than the window is fitted
+     * as a whole with the largest odd window (and a lower order if needed).
+     */
+    private double[] filterWithFittedEdges(double[] input) {
+        int n = input.length;
+        if (n == 0) {
+            return new double[0];
+        }
 
-        for (int i = -half; i <= half; i++) {
-            for (int j = 0; j <= polyOrder; j++) {
-                A[i + half][j] = Math.pow(i, j);
+        SavitzkyGolayKernels k = kernels;
+        int w = windowSize;
+        if (n < windowSize) {
+            w = (n % 2 == 1) ? n : n - 1;
+            int order = Math.min(polyOrder, w - 1);
+            if (derivative > order) {
+                // That derivative of a lower order polynomial is zero
+                return new double[n];
+            }
+            k = SavitzkyGolayKernels.get(w, order, derivative);
+        }
+        int half = w / 2;
+
+        // Interior: only the edges differ from the zero padded convolution
+        double[] output;
+        if (n >= windowSize) {
+            output = k.centreEngine().correlate(input);
+        } else {
+            output = new double[n];
+            double[] centre = k.centre();
+            for (int i = half; i < n - half; i++) {
+                output[i] = dot(centre, input, i - half);
             }
         }
 
-        double[][] ATA = multiply(transpose(A), A);
-        double[][] ATAinv = invert(ATA);
-        double[][] pseudoInverse = multiply(ATAinv, transpose(A));
-
-        // Select the middle row (convolution weights for middle point)
-        return pseudoInverse[0];
-    }
+        // Left edge: fit of the first window, evaluated at position i
+        for (int i = 0; i < half; i++) {
+            output[i] = dot(k.position(i), input, 0);
+        }
 
-    // 🔧 Matrix operations
-    private double[][] transpose(double[][] m) {
-        int rows = m.length, cols = m[0].length;
-        double[][] result = new double[cols][rows];
-        for (int i = 0; i < rows; i++)
-            for (int j = 0; j < cols; j++)
-                result[j][i] = m[i][j];
-        return result;
-    }
+        // Right edge: fit of the last window
+        int lastWindow = n - w;
+        for (int i = Math.max(half, n - half); i < n; i++) {
+            output[i] = dot(k.position(i - lastWindow), input, lastWindow);
+        }
 
-    private double[][] multiply(double[][] a, double[][] b) {
-        int aRows = a.length, aCols = a[0].length, bCols = b[0].length;
-        double[][] result = new double[aRows][bCols];
-        for (int i = 0; i < aRows; i++)
-            for (int j = 0; j < bCols; j++)
-                for (int k = 0; k < aCols; k++)
-                    result[i][j] += a[i][k] * b[k][j];
-        return result;
+        return output;
     }
 
-    private double[][] invert(double[][] m) {
-        int n = m.length;
-        double[][] a = new double[n][n];
-        double[][] inv = new double[n][n];
-
-        // Copy input matrix and initialize identity
-        for (int i = 0; i < n; i++) {
-            System.arraycopy(m[i], 0, a[i], 0, n);
-            inv[i][i] = 1.0;
+    private static double dot(double[] weights, double[] input, int offset) {
+        double sum = 0.0;
+        for (int j = 0; j < weights.length; j++) {
+            sum += input[offset + j] * weights[j];
         }
+        return sum;
+    }
 
-        // Gauss-Jordan elimination
-        for (int i = 0; i < n; i++) {
-            double pivot = a[i][i];
-            if (pivot == 0) throw new RuntimeException("Nem invertálható mátrix.");
-            for (int j = 0; j < n; j++) {
-                a[i][j] /= pivot;
-                inv[i][j] /= pivot;
-            }
-            for (int k = 0; k < n; k++) {
-                if (k == i) continue;
-                double factor = a[k][i];
-                for (int j = 0; j < n; j++) {
-                    a[k][j] -= factor * a[i][j];
-                    inv[k][j] -= factor * inv[i][j];
-                }
-            }
-        }
-        return inv;
+    public BoundaryMode getBoundaryMode() {
+        return boundaryMode;
     }
 }
@@ -0,0 +1,204 @@
+package hu.ujvari.ecgprocessor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Savitzky-Golay convolution weights, computed once per
+ * (windowSize, polyOrder, derivative) and shared by every filter instance:
+ * the centre kernel and the off-centre kernels that evaluate the same
+ * least-squares fit at every other position of the window (used at the edges).
+ * The cache is process-wide, thread-safe and bounded (least recently used
+ * entries are dropped), so repeated and segmented runs only pay for the
+ * convolution. The arrays are shared: callers must not modify them.
+ */
+final class SavitzkyGolayKernels {
+    private static final int MAX_ENTRIES = 32;
+
+    private static final Map<Key, SavitzkyGolayKernels> CACHE = Collections.synchronizedMap(
+        new LinkedHashMap<Key, SavitzkyGolayKernels>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SavitzkyGolayKernels> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        });
+
+    private final double[] centre;
+    private final ConvolutionEngine centreEngine;
+    // positions[p] = weights giving the fit at window position p (positions[half] == centre)
+    private final double[][] positions;
+
+    private SavitzkyGolayKernels(int windowSize, int polyOrder, int derivative) {
+        double[][] pseudoInverse = computePseudoInverse(windowSize, polyOrder);
+        int half = windowSize / 2;
+
+        this.positions = new double[windowSize][];
+        for (int p = 0; p < windowSize; p++) {
+            if (p != half) {
+                positions[p] = evaluateAt(pseudoInverse, p - half, derivative);
+            }
+        }
+        this.centre = centreWeights(pseudoInverse, derivative);
+        positions[half] = centre;
+        this.centreEngine = new ConvolutionEngine(centre);
+    }
+
+    /**
+     * @return The cached kernels, computed on first use
+     */
+    static SavitzkyGolayKernels get(int windowSize, int polyOrder, int derivative) {
+        return CACHE.computeIfAbsent(new Key(windowSize, polyOrder, derivative),
+            key -> new SavitzkyGolayKernels(windowSize, polyOrder, derivative));
+    }
+
+    /**
+     * Weights for the centre point of the window (index j + half for offset j)
+     */
+    double[] centre() {
+        return centre;
+    }
+
+    /**
+     * Convolution of the centre kernel (zero padding at the ends)
+     */
+    ConvolutionEngine centreEngine() {
+        return centreEngine;
+    }
+
+    /**
+     * Weights for window position p (0 .. windowSize-1), the window being the
+     * first or last windowSize samples of the input
+     */
+    double[] position(int p) {
+        return positions[p];
+    }
+
+    // 🔍 Least-squares fit of the window: row k gives the k-th polynomial coefficient
+    private static double[][] computePseudoInverse(int windowSize, int polyOrder) {
+        int half = windowSize / 2;
+        double[][] A = new double[windowSize][polyOrder + 1];
+
+        for (int i = -half; i <= half; i++) {
+            for (int j = 0; j <= polyOrder; j++) {
+                A[i + half][j] = Math.pow(i, j);
+            }
+        }
+
+        double[][] ATA = multiply(transpose(A), A);
+        double[][] ATAinv = invert(ATA);
+        return multiply(ATAinv, transpose(A));
+    }
+
+    // 🔍 Calculation of weights: S-G weights for the centre point
+    private static double[] centreWeights(double[][] pseudoInverse, int derivative) {
+        // Row d gives the d-th polynomial coefficient at the middle point,
+        // the d-th derivative there is d! times that coefficient
+        double[] coefficients = pseudoInverse[derivative].clone();
+        if (derivative > 0) {
+            double factorial = 1.0;
+            for (int k = 2; k <= derivative; k++) {
+                factorial *= k;
+            }
+            for (int i = 0; i < coefficients.length; i++) {
+                coefficients[i] *= factorial;
+            }
+        }
+        return coefficients;
+    }
+
+    /**
+     * Weights of the d-th derivative of the fitted polynomial at offset t
+     * from the centre: sum over k &gt;= d of k!/(k-d)! * t^(k-d) * row k
+     */
+    private static double[] evaluateAt(double[][] pseudoInverse, int t, int derivative) {
+        int windowSize = pseudoInverse[0].length;
+        double[] weights = new double[windowSize];
+        for (int k = derivative; k < pseudoInverse.length; k++) {
+            double factor = Math.pow(t, k - derivative);
+            for (int m = k - derivative + 1; m <= k; m++) {
+                factor *= m;
+            }
+            for (int i = 0; i < windowSize; i++) {
+                weights[i] += factor * pseudoInverse[k][i];
+            }
+        }
+        return weights;
+    }
+
+    // 🔧 Matrix operations
+    private static double[][] transpose(double[][] m) {
+        int rows = m.length, cols = m[0].length;
+        double[][] result = new double[cols][rows];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                result[j][i] = m[i][j];
+        return result;
+    }
+
+    private static double[][] multiply(double[][] a, double[][] b) {
+        int aRows = a.length, aCols = a[0].length, bCols = b[0].length;
+        double[][] result = new double[aRows][bCols];
+        for (int i = 0; i < aRows; i++)
+            for (int j = 0; j < bCols; j++)
+                for (int k = 0; k < aCols; k++)
+                    result[i][j] += a[i][k] * b[k][j];
+        return result;
+    }
+
+    private static double[][] invert(double[][] m) {
+        int n = m.length;
+        double[][] a = new double[n][n];
+        double[][] inv = new double[n][n];
+
+        // Copy input matrix and initialize identity
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(m[i], 0, a[i], 0, n);
+            inv[i][i] = 1.0;
+        }
+
+        // Gauss-Jordan elimination
+        for (int i = 0; i < n; i++) {
+            double pivot = a[i][i];
+            if (pivot == 0) throw new RuntimeException("Nem invertálható mátrix.");
+            for (int j = 0; j < n; j++) {
+                a[i][j] /= pivot;
+                inv[i][j] /= pivot;
+            }
+            for (int k = 0; k < n; k++) {
+                if (k == i) continue;
+                double factor = a[k][i];
+                for (int j = 0; j < n; j++) {
+                    a[k][j] -= factor * a[i][j];
+                    inv[k][j] -= factor * inv[i][j];
+                }
+            }
+        }
+        return inv;
+    }
+
+    private static final class Key {
+        private final int windowSize;
+        private final int polyOrder;
+        private final int derivative;
+
+        Key(int windowSize, int polyOrder, int derivative) {
+            this.windowSize = windowSize;
+            this.polyOrder = polyOrder;
+            this.derivative = derivative;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return windowSize == other.windowSize && polyOrder == other.polyOrder && derivative == other.derivative;
+        }
+
+        @Override
+        public int hashCode() {
+            return (windowSize * 31 + polyOrder) * 31 + derivative;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package hu.ujvari.ecgprocessor;
+
+import java.util.Arrays;
+
+import hu.ujvari.ecgmodel.SampleStorage;
+import hu.ujvari.ecgmodel.Signal;
+
+/**
+ * Converts signals to another sampling rate (e.g. 250 / 1000 Hz recordings
+ * to 500 Hz before analysis).
+ * <ul>
+ * <li>CUBIC_SPLINE: natural cubic spline through the samples, evaluated at
+ * the new grid in one forward sweep. Long signals are fitted in blocks with
+ * a halo of samples on both sides; the influence of a knot decays by about
+ * 0.27 per sample, so the block seams are invisible (below 1e-15).</li>
+ * <li>POLYPHASE_FIR: band-limited resampling by the rational ratio L/M (terms
+ * up to 10000, otherwise the nearest such fraction) with
+ * a windowed-sinc low-pass split into L phases, so only the taps of the
+ * current phase are applied per output sample. Use it for downsampling,
+ * where the spline would alias.</li>
+ * </ul>
+ * Samples beyond the ends repeat the edge sample.
+ */
+public class SignalResampler {
+
+    public enum Method {
+        CUBIC_SPLINE,
+        POLYPHASE_FIR
+    }
+
+    // Spline block length and the extra knots fitted on each side of a block
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int HALO = 32;
+
+    // FIR: input samples per side of the kernel, passband edge relative to the lower Nyquist rate
+    private static final int HALF_TAPS_PER_PHASE = 16;
+    private static final double CUTOFF = 0.9;
+    // Largest L or M of the rate ratio (the kernel has about 32 * max(L, M) taps)
+    private static final int MAX_RATIO_TERM = 10000;
+
+    private final double targetRate;
+    private final Method method;
+
+    /**
+     * @param targetRate Output sampling rate in Hz
+     */
+    public SignalResampler(double targetRate, Method method) {
+        if (!(targetRate > 0)) {
+            throw new IllegalArgumentException("A cél mintavételi frekvencia legyen pozitív.");
+        }
+        this.targetRate = targetRate;
+        this.method = method;
+    }
+
+    /**
+     * Resamples the stored samples; lead name, origin and scale are kept and
+     * the increment is given in the unit of the source increment
+     */
+    public Signal resample(Signal signal) {
+        double sourceRate = getSampleRate(signal);
+        double[] output = resample(signal.getSamples(), sourceRate);
+
+        double unitsPerSecond = signal.getSampleIncrement() * sourceRate;
+        return new Signal(signal.getLeadName(), SampleStorage.of(output),
+                          signal.getOriginValue(), signal.getOriginUnit(),
+                          signal.getScaleValue(), signal.getScaleUnit(),
+                          unitsPerSecond / targetRate, signal.getSampleIncrementUnit());
+    }
+
+    public double[] resample(double[] input, double sourceRate) {
+        if (!(sourceRate > 0)) {
+            throw new IllegalArgumentException("A forrás mintavételi frekvencia legyen pozitív.");
+        }
+        if (input.length < 2 || sourceRate == targetRate) {
+            return input.clone();
+        }
+        return method == Method.POLYPHASE_FIR
+            ? resampleFir(input, sourceRate)
+            : resampleSpline(input, sourceRate);
+    }
+
+    /**
+     * Sampling rate in Hz from the sequence increment (unit s, ms or us)
+     */
+    public static double getSampleRate(Signal signal) {
+        double increment = signal.getSampleIncrement();
+        if (!(increment > 0)) {
+            throw new IllegalArgumentException("A jelnek nincs mintavételi időköze: " + signal.getLeadName());
+        }
+        String unit = signal.getSampleIncrementUnit() == null ? "s" : signal.getSampleIncrementUnit().trim();
+        switch (unit) {
+            case "":
+            case "s":
+                return 1.0 / increment;
+            case "ms":
+                return 1e3 / increment;
+            case "us":
+            case "µs":
+                return 1e6 / increment;
+            default:
+                throw new IllegalArgumentException("Ismeretlen időegység: " + unit);
+        }
+    }
+
+    // Number of output samples that fall on [0, n - 1] of the input
+    private int outputLength(int n, double step) {
+        return (int) Math.floor((n - 1) / step + 1e-9) + 1;
+    }
+
+    private double[] resampleSpline(double[] input, double sourceRate) {
+        int n = input.length;
+        double step = sourceRate / targetRate;
+        int count = outputLength(n, step);
+        double[] output = new double[count];
+
+        double[] ramp = new double[Math.min(n, BLOCK_SIZE + 2 * HALO)];
+        for (int i = 0; i < ramp.length; i++) {
+            ramp[i] = i;
+        }
+
+        int k = 0;
+        for (int start = 0; start < n && k < count; start += BLOCK_SIZE) {
+            int end = Math.min(n, start + BLOCK_SIZE);
+            int from = Math.max(0, start - HALO);
+            int to = Math.min(n, end + HALO);
+
+            // Knots at the block-relative positions 0 .. to-from-1
+            CubicSpline.Evaluator evaluator = CubicSpline.natural(
+                Arrays.copyOf(ramp, to - from), Arrays.copyOfRange(input, from, to)).evaluator();
+            boolean lastBlock = end == n;
+            while (k < count) {
+                double t = k * step;
+                if (!lastBlock && t >= end) {
+                    break;
+                }
+                output[k++] = evaluator.value(t - from);
+            }
+        }
+        return output;
+    }
+
+    private double[] resampleFir(double[] input, double sourceRate) {
+        int[] ratio = ratio(targetRate, sourceRate);
+        int up = ratio[0];
+        int down = ratio[1];
+        PolyphaseKernel kernel = new PolyphaseKernel(up, down);
+
+        int n = input.length;
+        int count = outputLength(n, (double) down / up);
+        double[] output = new double[count];
+        int last = n - 1;
+        for (int m = 0; m < count; m++) {
+            long position = (long) m * down;
+            int base = (int) (position / up);
+            int phase = (int) (position % up);
+            double[] taps = kernel.phases[phase];
+            int jFrom = kernel.firstOffset[phase];
+
+            // tap t belongs to input sample base - (jFrom + t)
+            double sum = 0.0;
+            for (int t = 0; t < taps.length; t++) {
+                int index = base - jFrom - t;
+                sum += taps[t] * input[index < 0 ? 0 : index > last ? last : index];
+            }
+            output[m] = sum;
+        }
+        return output;
+    }
+
+    /**
+     * {L, M} with L / M = target / source, reduced; rates with up to 3
+     * decimals give the exact fraction, others (or too large terms) are
+     * approximated by continued fractions
+     */
+    static int[] ratio(double target, double source) {
+        double r = target / source;
+        for (double scale = 1.0; scale <= 1000.0; scale *= 10.0) {
+            long num = Math.round(target * scale), den = Math.round(source * scale);
+            if (Math.abs(target * scale - num) < 1e-6 && Math.abs(source * scale - den) < 1e-6 && num > 0 && den > 0) {
+                long g = gcd(num, den);
+                if (num / g <= MAX_RATIO_TERM && den / g <= MAX_RATIO_TERM) {
+                    return new int[] { (int) (num / g), (int) (den / g) };
+                }
+                break;
+            }
+        }
+
+        // Convergents h/k of the continued fraction of r
+        long h0 = 1, h1 = 0, k0 = 0, k1 = 1;
+        double x = r;
+        int[] best = r >= 1
+            ? new int[] { (int) Math.min(MAX_RATIO_TERM, Math.round(r)), 1 }
+            : new int[] { 1, (int) Math.min(MAX_RATIO_TERM, Math.round(1.0 / r)) };
+        for (int iteration = 0; iteration < 40; iteration++) {
+            long a = (long) Math.floor(x);
+            long h2 = a * h0 + h1;
+            long k2 = a * k0 + k1;
+            if (h2 > MAX_RATIO_TERM || k2 > MAX_RATIO_TERM) {
+                break;
+            }
+            if (h2 > 0) {
+                best = new int[] { (int) h2, (int) k2 };
+            }
+            h1 = h0; h0 = h2;
+            k1 = k0; k0 = k2;
+            double fraction = x - a;
+            if (fraction < 1e-12) {
+                break;
+            }
+            x = 1.0 / fraction;
+        }
+        return best;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Windowed-sinc low-pass at the upsampled rate, split into the L phases:
+     * phases[p][t] multiplies input sample base - (firstOffset[p] + t).
+     * Each phase is normalised to unit DC gain.
+     */
+    private static final class PolyphaseKernel {
+        final double[][] phases;
+        final int[] firstOffset;
+
+        PolyphaseKernel(int up, int down) {
+            int factor = Math.max(up, down);
+            // Cut-off in cycles per upsampled sample
+            double cutoff = CUTOFF * 0.5 / factor;
+            int half = HALF_TAPS_PER_PHASE * factor;
+
+            this.phases = new double[up][];
+            this.firstOffset = new int[up];
+            for (int p = 0; p < up; p++) {
+                // Upsampled offset of tap j is p + j * up, |offset| <= half
+                int jFrom = (int) Math.ceil((double) (-half - p) / up);
+                int jTo = (int) Math.floor((double) (half - p) / up);
+                double[] taps = new double[jTo - jFrom + 1];
+                double sum = 0.0;
+                for (int j = jFrom; j <= jTo; j++) {
+                    double offset = p + (double) j * up;
+                    double value = sinc(2.0 * cutoff * offset) * blackman(offset / half);
+                    taps[j - jFrom] = value;
+                    sum += value;
+                }
+                for (int t = 0; t < taps.length; t++) {
+                    taps[t] /= sum;
+                }
+                phases[p] = taps;
+                firstOffset[p] = jFrom;
+            }
+        }
+
+        private static double sinc(double x) {
+            if (x == 0) {
+                return 1.0;
+            }
+            double a = Math.PI * x;
+            return Math.sin(a) / a;
+        }
+
+        // Blackman window on [-1, 1]
+        private static double blackman(double u) {
+            double a = Math.PI * (u + 1.0);
+            return 0.42 - 0.5 * Math.cos(a) + 0.08 * Math.cos(2.0 * a);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package hu.ujvari.ecgprocessor;
+
+import java.util.List;
+
+import hu.ujvari.ecgmodel.DoubleArrayList;
+
+/**
+ * Penalised (Reinsch) smoothing spline over every sample: unlike
+ * CubicSplineFilter no sample is interpolated exactly, lambda trades
+ * fidelity against curvature. With unit sample spacing the response is about
+ * 1 / (1 + lambda * omega^4), i.e. the cut-off is near lambda^(-1/4) rad/sample.
+ * Solved in linear time and memory (CubicSpline.smoothing).
+ */
+public class SmoothingSplineFilter {
+
+    private final double lambda;
+
+    public SmoothingSplineFilter(double lambda) {
+        if (!(lambda >= 0)) {
+            throw new IllegalArgumentException("A lambda nem lehet negatív.");
+        }
+        this.lambda = lambda;
+    }
+
+    public List<Double> filter(List<Double> inputValues) {
+        return DoubleArrayList.wrap(filter(DoubleArrayList.asArray(inputValues)));
+    }
+
+    public double[] filter(double[] inputSignal) {
+        int n = inputSignal.length;
+        if (n < 3) {
+            return inputSignal.clone();
+        }
+        return fit(inputSignal).sample(0.0, 1.0, n);
+    }
+
+    /**
+     * The smoothing spline of the input (knots at the sample indices)
+     */
+    public CubicSpline fit(double[] inputSignal) {
+        double[] x = new double[inputSignal.length];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i;
+        }
+        return CubicSpline.smoothing(x, inputSignal, lambda);
+    }
+
+    public double getLambda() {
+        return lambda;
+    }
+}
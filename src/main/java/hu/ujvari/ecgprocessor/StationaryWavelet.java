@@ -0,0 +1,236 @@
+package hu.ujvari.ecgprocessor;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Stationary (undecimated, "à trous") wavelet transform.
+ * <p>
+ * Level j filters the previous approximation with the filters of the family
+ * dilated by 2^j (2^j - 1 holes between the taps) and keeps every sample, so
+ * the decomposition is shift-invariant: thresholding does not produce the
+ * block artefacts of the decimated transform. The inverse averages the two
+ * synthesis branches, which reconstructs exactly for orthonormal filters.
+ * <p>
+ * The signal is extended by reflection on both sides by the support of the
+ * filter cascade and then treated as periodic. Each level is split into
+ * chunks computed on the common fork-join pool. The level buffers
+ * ((levels + 2) arrays of the padded length) come from a small shared
+ * pool and are reused by later calls.
+ */
+public final class StationaryWavelet {
+
+    /**
+     * Operation on the detail band of one level, e.g. thresholding
+     */
+    public interface DetailOperator {
+        /**
+         * @param detail Detail coefficients, valid in [0, length), modified in place
+         * @param from   First coefficient of the signal itself; the ones outside
+         *               [from, to) belong to the reflected extension, so band
+         *               statistics should be estimated over [from, to) only
+         * @param to     End of the signal's coefficients (to - from is the input length)
+         * @param level  0 for the finest level
+         */
+        void apply(double[] detail, int length, int from, int to, int level);
+    }
+
+    private static final Map<LiftingWavelet.Family, StationaryWavelet> INSTANCES =
+        new EnumMap<>(LiftingWavelet.Family.class);
+    static {
+        for (LiftingWavelet.Family family : LiftingWavelet.Family.values()) {
+            INSTANCES.put(family, new StationaryWavelet(family));
+        }
+    }
+
+    // Samples per parallel task
+    private static final int CHUNK_SIZE = 16384;
+    // Buffer sets kept between calls
+    private static final int POOL_SIZE = 2;
+    private static final ConcurrentLinkedQueue<Buffers> POOL = new ConcurrentLinkedQueue<>();
+
+    private final double[] lowpass;
+    private final double[] highpass;
+
+    public static StationaryWavelet of(LiftingWavelet.Family family) {
+        return INSTANCES.get(family);
+    }
+
+    private StationaryWavelet(LiftingWavelet.Family family) {
+        this.lowpass = family.getLowpass();
+        int length = lowpass.length;
+        this.highpass = new double[length];
+        for (int k = 0; k < length; k++) {
+            highpass[k] = (k % 2 == 0 ? 1 : -1) * lowpass[length - 1 - k];
+        }
+    }
+
+    /**
+     * Decomposes the signal into the given number of levels, applies the
+     * operator to every detail band and reconstructs
+     *
+     * @return A new array of the input length
+     */
+    public double[] transform(double[] signal, int levels, DetailOperator operator) {
+        int n = signal.length;
+        if (n < 2 || levels < 1) {
+            return signal.clone();
+        }
+        int taps = lowpass.length;
+        long support = (long) (taps - 1) * ((1L << levels) - 1);
+        int pad = (int) Math.min(support, 4L * n);
+        int length = n + 2 * pad;
+
+        Buffers buffers = acquire(levels, length);
+        try {
+            double[] approximation = buffers.approximation;
+            double[] next = buffers.scratch;
+            for (int i = 0; i < length; i++) {
+                approximation[i] = signal[reflect(i - pad, n)];
+            }
+
+            // Analysis: details of level j go to their own buffer
+            for (int level = 0; level < levels; level++) {
+                int dilation = dilation(level, length);
+                double[] current = approximation;
+                double[] lowOut = next;
+                double[] highOut = buffers.details[level];
+                forEachChunk(length, from -> analyse(current, lowOut, highOut, length, dilation,
+                                                     from, Math.min(length, from + CHUNK_SIZE)));
+                next = approximation;
+                approximation = lowOut;
+            }
+
+            for (int level = 0; level < levels; level++) {
+                operator.apply(buffers.details[level], length, pad, pad + n, level);
+            }
+
+            // Synthesis from the coarsest level
+            for (int level = levels - 1; level >= 0; level--) {
+                int dilation = dilation(level, length);
+                double[] low = approximation;
+                double[] high = buffers.details[level];
+                double[] out = next;
+                forEachChunk(length, from -> synthesise(low, high, out, length, dilation,
+                                                        from, Math.min(length, from + CHUNK_SIZE)));
+                next = approximation;
+                approximation = out;
+            }
+
+            double[] result = new double[n];
+            System.arraycopy(approximation, pad, result, 0, n);
+            return result;
+        } finally {
+            release(buffers);
+        }
+    }
+
+    // Tap spacing of a level, reduced modulo the (periodic) length
+    private static int dilation(int level, int length) {
+        return (int) ((1L << level) % length);
+    }
+
+    private static void forEachChunk(int length, IntConsumer chunk) {
+        int chunks = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunks > 1 && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            IntStream.range(0, chunks).parallel().forEach(c -> chunk.accept(c * CHUNK_SIZE));
+        } else {
+            for (int c = 0; c < chunks; c++) {
+                chunk.accept(c * CHUNK_SIZE);
+            }
+        }
+    }
+
+    // low[i] = sum h[k] in[i + k * dilation], high[i] likewise with g (periodic)
+    private void analyse(double[] in, double[] low, double[] high, int length, int dilation, int from, int to) {
+        int taps = lowpass.length;
+        long reach = (long) (taps - 1) * dilation;
+        for (int i = from; i < to; i++) {
+            double sumLow = 0.0;
+            double sumHigh = 0.0;
+            if (i + reach < length) {
+                int index = i;
+                for (int k = 0; k < taps; k++) {
+                    double value = in[index];
+                    sumLow += lowpass[k] * value;
+                    sumHigh += highpass[k] * value;
+                    index += dilation;
+                }
+            } else {
+                for (int k = 0; k < taps; k++) {
+                    double value = in[(int) ((i + (long) k * dilation) % length)];
+                    sumLow += lowpass[k] * value;
+                    sumHigh += highpass[k] * value;
+                }
+            }
+            low[i] = sumLow;
+            high[i] = sumHigh;
+        }
+    }
+
+    // out[i] = (sum h[k] low[i - k * dilation] + sum g[k] high[i - k * dilation]) / 2 (periodic)
+    private void synthesise(double[] low, double[] high, double[] out, int length, int dilation, int from, int to) {
+        int taps = lowpass.length;
+        long reach = (long) (taps - 1) * dilation;
+        for (int i = from; i < to; i++) {
+            double sum = 0.0;
+            if (i - reach >= 0) {
+                int index = i;
+                for (int k = 0; k < taps; k++) {
+                    sum += lowpass[k] * low[index] + highpass[k] * high[index];
+                    index -= dilation;
+                }
+            } else {
+                for (int k = 0; k < taps; k++) {
+                    int index = (int) Math.floorMod(i - (long) k * dilation, (long) length);
+                    sum += lowpass[k] * low[index] + highpass[k] * high[index];
+                }
+            }
+            out[i] = 0.5 * sum;
+        }
+    }
+
+    // Whole-sample symmetric reflection into [0, n)
+    private static int reflect(int index, int n) {
+        int period = 2 * (n - 1);
+        int p = Math.floorMod(index, period);
+        return p < n ? p : period - p;
+    }
+
+    private static Buffers acquire(int levels, int length) {
+        Buffers buffers = POOL.poll();
+        if (buffers != null && buffers.fits(levels, length)) {
+            return buffers;
+        }
+        return new Buffers(levels, length);
+    }
+
+    private static void release(Buffers buffers) {
+        if (POOL.size() < POOL_SIZE) {
+            POOL.offer(buffers);
+        }
+    }
+
+    /**
+     * One detail band per level plus the approximation and a scratch array
+     */
+    private static final class Buffers {
+        final double[][] details;
+        final double[] approximation;
+        final double[] scratch;
+
+        Buffers(int levels, int length) {
+            this.details = new double[levels][length];
+            this.approximation = new double[length];
+            this.scratch = new double[length];
+        }
+
+        boolean fits(int levels, int length) {
+            return details.length >= levels && approximation.length >= length;
+        }
+    }
+}
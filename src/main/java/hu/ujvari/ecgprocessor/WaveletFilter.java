@@ -1,25 +1,82 @@
 package hu.ujvari.ecgprocessor;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
+import hu.ujvari.ecgmodel.DoubleArrayList;
+
 /**
- * Wavelet-based filter  
- * Uses discrete wavelet transform for signal decomposition and reconstruction
+ * Wavelet-based filter
+ * Uses discrete wavelet transform for signal decomposition and reconstruction.
+ * The decimated transform is the in-place lifting scheme of LiftingWavelet,
+ * so the signal is neither padded nor copied per level: one output buffer,
+ * O(n). The stationary transform (StationaryWavelet) is shift-invariant,
+ * at O(n * levels) cost.
  **/
 public class WaveletFilter {
+    /**
+     * Wavelet transform used for the decomposition
+     */
+    public enum Transform {
+        // Critically sampled DWT: fast, but the result depends on the signal alignment
+        DECIMATED,
+        // Undecimated "à trous" transform: no blocky artefacts around sharp waves
+        STATIONARY
+    }
+
+    /**
+     * How the threshold of each detail band is chosen (see WaveletThresholds)
+     */
+    public enum ThresholdRule {
+        // The given absolute threshold for every band
+        FIXED,
+        // sigma * sqrt(2 ln n) per band, sigma from the median absolute deviation
+        UNIVERSAL,
+        // Stein's unbiased risk estimate per band
+        SURE,
+        // BayesShrink: noise variance / signal deviation per band
+        BAYES
+    }
+
     private int level;          // Decomposition level
-    private double threshold;   // Threshold value
+    private double threshold;   // Threshold value (FIXED rule)
+    private LiftingWavelet.Family family;
+    private Transform transform;
+    private ThresholdRule rule;
 
     /**
-     * Initializes the wavelet filter
+     * Initializes the wavelet filter (Haar wavelet)
      * @param level The decomposition level
      * @param threshold The threshold value used for noise removal
      */
     public WaveletFilter(int level, double threshold) {
+        this(level, threshold, LiftingWavelet.Family.HAAR);
+    }
+
+    /**
+     * @param family The wavelet used for the decomposition
+     */
+    public WaveletFilter(int level, double threshold, LiftingWavelet.Family family) {
+        this(level, threshold, family, Transform.DECIMATED);
+    }
+
+    /**
+     * @param transform Decimated or stationary decomposition
+     */
+    public WaveletFilter(int level, double threshold, LiftingWavelet.Family family, Transform transform) {
+        this(level, threshold, family, transform, ThresholdRule.FIXED);
+    }
+
+    /**
+     * @param rule Fixed threshold or one estimated from the noise of each band
+     *             (then threshold is not used)
+     */
+    public WaveletFilter(int level, double threshold, LiftingWavelet.Family family, Transform transform,
+                         ThresholdRule rule) {
         this.level = level;
         this.threshold = threshold;
+        this.family = family;
+        this.transform = transform;
+        this.rule = rule;
     }
 
     /**
@@ -28,110 +85,68 @@ public class WaveletFilter {
      * @return The filtered signal
      */
     public List<Double> filter(List<Double> inputSignal) {
-        // Convert input to array for easier processing
-        int n = inputSignal.size();
-        double[] signal = new double[n];
-        for (int i = 0; i < n; i++) {
-            signal[i] = inputSignal.get(i);
-        }
+        return DoubleArrayList.wrap(filter(DoubleArrayList.asArray(inputSignal)));
+    }
 
-        // Pad signal to the nearest power of 2, if needed
-        int powerOfTwo = 1;
-        while (powerOfTwo < n) {
-            powerOfTwo *= 2;
+    public double[] filter(double[] inputSignal) {
+        if (transform == Transform.STATIONARY) {
+            int levels = Math.min(level, LiftingWavelet.maxLevels(inputSignal.length));
+            // Noise level of the finest band, which is handed over first
+            double[] sigma = new double[1];
+            return StationaryWavelet.of(family).transform(inputSignal, levels, (detail, length, from, to, detailLevel) -> {
+                // Estimated over the signal's own coefficients (the reflected padding
+                // would count the edge samples twice), applied to the whole band
+                if (detailLevel == 0 && rule != ThresholdRule.FIXED) {
+                    sigma[0] = WaveletThresholds.noiseSigma(detail, from, to, 1, new double[to - from]);
+                }
+                double t = WaveletThresholds.estimate(rule, threshold, sigma[0], detail, from, to, 1);
+                softThreshold(detail, 0, length, 1, t);
+            });
         }
 
-        double[] paddedSignal = new double[powerOfTwo];
-        System.arraycopy(signal, 0, paddedSignal, 0, n);
-        for (int i = n; i < powerOfTwo; i++) {
-            paddedSignal[i] = signal[n - 1]; // Repeat last value
-        }
+        LiftingWavelet lifting = LiftingWavelet.of(family);
+        int n = inputSignal.length;
+        double[] coefficients = inputSignal.clone();
 
-        // Haar wavelet transform
-        double[] transformed = discreteWaveletTransform(paddedSignal, level);
+        // Forward transform, in place
+        int levels = lifting.forward(coefficients, n, level);
 
         // Thresholding to remove noise
-        thresholdCoefficients(transformed, threshold);
+        thresholdDetails(coefficients, n, levels, threshold);
 
-        // Inverse wavelet transform
-        double[] filtered = inverseWaveletTransform(transformed, level);
+        // Inverse wavelet transform, in place
+        lifting.inverse(coefficients, n, levels);
 
-        // Convert back to list
-        List<Double> filteredSignal = new ArrayList<>(n);
-        for (int i = 0; i < n; i++) {
-            filteredSignal.add(filtered[i]);
-        }
-
-        return filteredSignal;
+        return coefficients;
     }
 
     /**
-     * Performs discrete wavelet transform (Haar wavelet)
+     * Soft thresholding of the detail coefficients of every level; the
+     * approximation (multiples of 2^levels) is kept. The noise level comes
+     * from the finest details (the odd positions).
      */
-    private double[] discreteWaveletTransform(double[] signal, int levels) {
-        int n = signal.length;
-        double[] transformed = Arrays.copyOf(signal, n);
-
-        for (int level = 0; level < levels; level++) {
-            int levelSize = n >> level;
-            int halfSize = levelSize >> 1;
-
-            for (int i = 0; i < halfSize; i++) {
-                int idx = i << 1;
-                double avg = (transformed[idx] + transformed[idx + 1]) / Math.sqrt(2);
-                double diff = (transformed[idx] - transformed[idx + 1]) / Math.sqrt(2);
-
-                transformed[i] = avg;
-                transformed[i + halfSize] = diff;
-            }
-
-            // Copy averages and details back to the correct position
-            double[] temp = Arrays.copyOf(transformed, levelSize);
-            System.arraycopy(temp, 0, transformed, 0, levelSize);
+    private void thresholdDetails(double[] coefficients, int n, int levels, double threshold) {
+        if (levels == 0) {
+            return;
         }
-
-        return transformed;
-    }
-
-    /**
-     * Applies thresholding to the wavelet coefficients for noise removal
-     */
-    private void thresholdCoefficients(double[] transformed, double threshold) {
-        for (int i = 0; i < transformed.length; i++) {
-            // Soft thresholding
-            if (Math.abs(transformed[i]) <= threshold) {
-                transformed[i] = 0;
-            } else {
-                transformed[i] = Math.signum(transformed[i]) * (Math.abs(transformed[i]) - threshold);
-            }
+        double sigma = rule == ThresholdRule.FIXED
+            ? 0.0
+            : WaveletThresholds.noiseSigma(coefficients, 1, n, 2, new double[n / 2]);
+        for (int l = 0; l < levels; l++) {
+            int stride = 1 << l;
+            double t = WaveletThresholds.estimate(rule, threshold, sigma, coefficients, stride, n, 2 * stride);
+            softThreshold(coefficients, stride, n, 2 * stride, t);
         }
     }
 
-    /**
-     * Performs inverse wavelet transform (Haar wavelet)
-     */
-    private double[] inverseWaveletTransform(double[] transformed, int levels) {
-        int n = transformed.length;
-        double[] signal = Arrays.copyOf(transformed, n);
-
-        for (int level = levels - 1; level >= 0; level--) {
-            int levelSize = n >> level;
-            int halfSize = levelSize >> 1;
-
-            // Temporary copy
-            double[] temp = Arrays.copyOf(signal, levelSize);
-
-            for (int i = 0; i < halfSize; i++) {
-                int j = i << 1;
-
-                double avg = temp[i];
-                double diff = temp[i + halfSize];
-
-                signal[j] = (avg + diff) / Math.sqrt(2);
-                signal[j + 1] = (avg - diff) / Math.sqrt(2);
+    private static void softThreshold(double[] coefficients, int from, int to, int step, double threshold) {
+        for (int i = from; i < to; i += step) {
+            double value = coefficients[i];
+            if (Math.abs(value) <= threshold) {
+                coefficients[i] = 0;
+            } else {
+                coefficients[i] = Math.signum(value) * (Math.abs(value) - threshold);
             }
         }
-
-        return signal;
     }
 }
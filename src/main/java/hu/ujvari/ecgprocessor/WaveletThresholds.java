@@ -0,0 +1,141 @@
+package hu.ujvari.ecgprocessor;
+
+/**
+ * Data-driven thresholds for the detail bands. The noise level is estimated
+ * once, from the finest band: sigma = MAD / 0.6745 (median by QuickSelect,
+ * no sort). That band holds little of an ECG, while the coarser bands are
+ * mostly signal, so their own MAD would overestimate the noise. Both the
+ * lifting and the à trous transform use orthonormal filters, so white noise
+ * keeps the same sigma in every band and no per-level rescaling is needed.
+ * The rules then need a single pass over each band:
+ * <ul>
+ * <li>UNIVERSAL: sigma * sqrt(2 ln n) (VisuShrink)</li>
+ * <li>SURE: minimiser of Stein's unbiased risk estimate over [0, universal],
+ * evaluated on a histogram of |x| / sigma; sparse bands fall back to the
+ * universal threshold (SureShrink hybrid)</li>
+ * <li>BAYES: sigma^2 / sigma_signal, the signal deviation of the band itself
+ * (BayesShrink)</li>
+ * </ul>
+ */
+final class WaveletThresholds {
+    // MAD of a standard normal
+    private static final double MAD_TO_SIGMA = 1.0 / 0.6745;
+    // Mean absolute value of a standard normal is sqrt(2 / pi)
+    private static final double MEAN_ABS_TO_SIGMA = Math.sqrt(Math.PI / 2.0);
+    private static final int SURE_BINS = 256;
+
+    private WaveletThresholds() {
+    }
+
+    /**
+     * Noise sigma from the finest detail band[from], band[from + step], ... below to
+     *
+     * @param scratch Work array with room for the band (its content is overwritten)
+     */
+    static double noiseSigma(double[] band, int from, int to, int step, double[] scratch) {
+        int count = 0;
+        for (int i = from; i < to; i += step) {
+            scratch[count++] = Math.abs(band[i]);
+        }
+        if (count == 0) {
+            return 0.0;
+        }
+        double mad = QuickSelect.median(scratch, count);
+        if (mad > 0) {
+            return mad * MAD_TO_SIGMA;
+        }
+        // Mostly zero coefficients (e.g. quantized samples): use the mean absolute value
+        double sum = 0.0;
+        for (int i = 0; i < count; i++) {
+            sum += scratch[i];
+        }
+        return sum / count * MEAN_ABS_TO_SIGMA;
+    }
+
+    /**
+     * Threshold for the coefficients band[from], band[from + step], ... below to
+     *
+     * @param sigma Noise level from noiseSigma (not used by FIXED)
+     */
+    static double estimate(WaveletFilter.ThresholdRule rule, double fixed, double sigma,
+                           double[] band, int from, int to, int step) {
+        if (rule == WaveletFilter.ThresholdRule.FIXED) {
+            return fixed;
+        }
+        int count = (to - from + step - 1) / step;
+        if (count <= 0 || sigma == 0) {
+            return 0.0;
+        }
+        double universal = sigma * Math.sqrt(2.0 * Math.log(Math.max(count, 2)));
+        switch (rule) {
+            case UNIVERSAL:
+                return universal;
+            case BAYES:
+                return bayes(band, from, to, step, count, sigma);
+            case SURE:
+                return sure(band, from, to, step, count, sigma, universal);
+            default:
+                return fixed;
+        }
+    }
+
+    private static double bayes(double[] band, int from, int to, int step, int count, double sigma) {
+        double sumSquares = 0.0;
+        double max = 0.0;
+        for (int i = from; i < to; i += step) {
+            double value = band[i];
+            sumSquares += value * value;
+            max = Math.max(max, Math.abs(value));
+        }
+        double signalVariance = sumSquares / count - sigma * sigma;
+        if (signalVariance <= 0) {
+            // Pure noise: remove the whole band
+            return max;
+        }
+        return sigma * sigma / Math.sqrt(signalVariance);
+    }
+
+    private static double sure(double[] band, int from, int to, int step, int count, double sigma, double universal) {
+        // In units of sigma, thresholds are searched on [0, limit]
+        double limit = universal / sigma;
+        double binWidth = limit / SURE_BINS;
+        long[] binCounts = new long[SURE_BINS];
+        double[] binSquares = new double[SURE_BINS];
+        double sumSquares = 0.0;
+        for (int i = from; i < to; i += step) {
+            double u = Math.abs(band[i]) / sigma;
+            double square = u * u;
+            sumSquares += square;
+            if (u < limit) {
+                int bin = Math.min(SURE_BINS - 1, (int) (u / binWidth));
+                binCounts[bin]++;
+                binSquares[bin] += square;
+            }
+        }
+
+        // Sparse band: SURE is unreliable, use the universal threshold
+        double log2 = Math.log(count) / Math.log(2.0);
+        if ((sumSquares - count) / count <= Math.pow(log2, 1.5) / Math.sqrt(count)) {
+            return universal;
+        }
+
+        // SURE(t) = n - 2 #{u <= t} + sum over u <= t of u^2 + t^2 #{u > t}, at the bin edges
+        double bestRisk = Double.POSITIVE_INFINITY;
+        double bestT = limit;
+        long below = 0;
+        double squaresBelow = 0.0;
+        for (int b = 0; b <= SURE_BINS; b++) {
+            double t = b * binWidth;
+            double risk = count - 2.0 * below + squaresBelow + t * t * (count - below);
+            if (risk < bestRisk) {
+                bestRisk = risk;
+                bestT = t;
+            }
+            if (b < SURE_BINS) {
+                below += binCounts[b];
+                squaresBelow += binSquares[b];
+            }
+        }
+        return bestT * sigma;
+    }
+}
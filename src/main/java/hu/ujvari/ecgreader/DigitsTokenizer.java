@@ -0,0 +1,161 @@
+package hu.ujvari.ecgreader;
+
+import java.util.Arrays;
+
+import hu.ujvari.ecgmodel.SampleStorage;
+
+/**
+ * Scanner for the aECG digits payload (whitespace-separated integers).
+ * Characters can be fed in arbitrary chunks, e.g. straight from the StAX text
+ * buffer, and are decoded into a growable int[] without creating a String or a
+ * boxed value per sample. Tokens that are not valid integers are skipped and
+ * counted instead of being silently swallowed.
+ */
+public class DigitsTokenizer {
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private int[] samples = new int[INITIAL_CAPACITY];
+    private int count;
+    private int malformedCount;
+
+    // State of the token currently being read (it may span several chunks)
+    private boolean inToken;
+    private boolean negative;
+    private boolean hasDigits;
+    private boolean malformed;
+    private long value;
+
+    /**
+     * Clears the decoded samples and the counters, the buffer is kept for reuse
+     */
+    public void reset() {
+        count = 0;
+        malformedCount = 0;
+        inToken = false;
+    }
+
+    public void feed(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            accept(text.charAt(i));
+        }
+    }
+
+    public void feed(char[] buffer, int start, int length) {
+        int end = start + length;
+        for (int i = start; i < end; i++) {
+            accept(buffer[i]);
+        }
+    }
+
+    /**
+     * Closes the last token, must be called after the final chunk
+     */
+    public void finish() {
+        if (inToken) {
+            endToken();
+        }
+    }
+
+    private void accept(char c) {
+        if (c == ' ' || c == '\n' || c == '\t' || c == '\r') {
+            if (inToken) {
+                endToken();
+            }
+            return;
+        }
+
+        if (!inToken) {
+            inToken = true;
+            negative = false;
+            hasDigits = false;
+            malformed = false;
+            value = 0;
+
+            if (c == '-' || c == '+') {
+                negative = c == '-';
+                return;
+            }
+        }
+
+        if (malformed) {
+            return;
+        }
+
+        if (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            hasDigits = true;
+            // Anything beyond the int range can not be an ADC count
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                malformed = true;
+            }
+        } else {
+            malformed = true;
+        }
+    }
+
+    private void endToken() {
+        inToken = false;
+        long signed = negative ? -value : value;
+
+        if (malformed || !hasDigits || signed > Integer.MAX_VALUE || signed < Integer.MIN_VALUE) {
+            malformedCount++;
+            return;
+        }
+
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = (int) signed;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getMalformedCount() {
+        return malformedCount;
+    }
+
+    public int[] toIntArray() {
+        return Arrays.copyOf(samples, count);
+    }
+
+    public double[] toDoubleArray() {
+        double[] result = new double[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = samples[i];
+        }
+        return result;
+    }
+
+    /**
+     * Converts the decoded samples to the requested primitive representation
+     */
+    public SampleStorage toStorage(SampleStorage.Type type) {
+        if (type == SampleStorage.Type.QUANTIZED) {
+            return toQuantizedStorage();
+        }
+        if (type == SampleStorage.Type.FLOAT) {
+            float[] result = new float[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = samples[i];
+            }
+            return SampleStorage.of(result);
+        }
+        return SampleStorage.of(toDoubleArray());
+    }
+
+    private SampleStorage toQuantizedStorage() {
+        for (int i = 0; i < count; i++) {
+            if (samples[i] < Short.MIN_VALUE || samples[i] > Short.MAX_VALUE) {
+                return SampleStorage.of(toIntArray());
+            }
+        }
+
+        short[] result = new short[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = (short) samples[i];
+        }
+        return SampleStorage.of(result);
+    }
+}
@@ -0,0 +1,382 @@
+package hu.ujvari.ecgreader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import hu.ujvari.ecgmodel.SampleStorage;
+import hu.ujvari.ecgmodel.Signal;
+
+/**
+ * Binary sidecar cache for parsed aECG recordings.
+ *
+ * Layout (all little-endian):
+ * <pre>
+ * magic "ECGB", int32 version, int64 source size, int64 source modification time (ms),
+ * 32 byte SHA-256 of the source XML, int32 lead count
+ * per lead: lead code, origin value + unit, scale value + unit, increment value + unit,
+ *           int32 sample count, int8 sample width (2 or 4), int64 data offset
+ * per lead: int16 or int32 sample block (8 byte aligned)
+ * </pre>
+ * Strings are stored as int16 length + UTF-8 bytes. The file is opened through
+ * FileChannel.map, the returned signals read their samples straight from the
+ * mapping, so nothing is loaded until a lead is actually touched.
+ * <p>
+ * A sidecar is accepted when the SHA-256 of the source equals the stored one;
+ * a different source size is a miss without hashing. Matching size and
+ * modification time alone only suffice when the caller opts in (trustStamp),
+ * since an edit that keeps the size within the timestamp resolution of the
+ * file system would then go unnoticed.
+ */
+public final class EcgBinaryCache {
+    private static final int MAGIC = 0x42474345; // "ECGB" read as little-endian int
+    private static final int VERSION = 2;
+    private static final int HASH_LENGTH = 32;
+    // Position of the source size, modification time and hash in the header
+    private static final int STAMP_OFFSET = 8;
+    private static final int HASH_OFFSET = STAMP_OFFSET + 16;
+
+    private EcgBinaryCache() {
+    }
+
+    /**
+     * Computes the source hash only when the size check was not enough
+     */
+    @FunctionalInterface
+    public interface HashSupplier {
+        byte[] get() throws IOException;
+    }
+
+    /**
+     * Size and modification time of a source; a negative time means unknown
+     * (e.g. a classpath resource), then the hash is compared even if the stamp is trusted
+     */
+    public static final class SourceStamp {
+        private final long size;
+        private final long modified;
+
+        public SourceStamp(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        public static SourceStamp of(Path file) throws IOException {
+            return new SourceStamp(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        }
+
+        boolean matches(long storedSize, long storedModified) {
+            return modified >= 0 && size == storedSize && modified == storedModified;
+        }
+    }
+
+    /**
+     * Writes the signals into a sidecar file (via a temp file and a move,
+     * so a reader never sees a half written cache)
+     * @return false if a lead holds non-integer samples and can not be cached
+     */
+    public static boolean write(Path cacheFile, SourceStamp stamp, byte[] sourceHash,
+                                List<Signal> signals) throws IOException {
+        List<int[]> blocks = new ArrayList<>(signals.size());
+        for (Signal signal : signals) {
+            int[] counts = toCounts(signal.getStorage());
+            if (counts == null) {
+                return false;
+            }
+            blocks.add(counts);
+        }
+
+        // Header size
+        int headerSize = HASH_OFFSET + HASH_LENGTH + 4;
+        for (Signal signal : signals) {
+            headerSize += stringSize(signal.getLeadName())
+                        + 8 + stringSize(signal.getOriginUnit())
+                        + 8 + stringSize(signal.getScaleUnit())
+                        + 8 + stringSize(signal.getSampleIncrementUnit())
+                        + 4 + 1 + 8;
+        }
+
+        // Sample block offsets
+        long[] offsets = new long[signals.size()];
+        byte[] widths = new byte[signals.size()];
+        long offset = align(headerSize);
+        for (int i = 0; i < blocks.size(); i++) {
+            widths[i] = (byte) (fitsInShort(blocks.get(i)) ? 2 : 4);
+            offsets[i] = offset;
+            offset = align(offset + (long) blocks.get(i).length * widths[i]);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(stamp.size);
+        header.putLong(stamp.modified);
+        header.put(sourceHash, 0, HASH_LENGTH);
+        header.putInt(signals.size());
+        for (int i = 0; i < signals.size(); i++) {
+            Signal signal = signals.get(i);
+            putString(header, signal.getLeadName());
+            header.putDouble(signal.getOriginValue());
+            putString(header, signal.getOriginUnit());
+            header.putDouble(signal.getScaleValue());
+            putString(header, signal.getScaleUnit());
+            header.putDouble(signal.getSampleIncrement());
+            putString(header, signal.getSampleIncrementUnit());
+            header.putInt(blocks.get(i).length);
+            header.put(widths[i]);
+            header.putLong(offsets[i]);
+        }
+        header.flip();
+
+        Path tempFile = tempFile(cacheFile);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header, 0);
+            for (int i = 0; i < blocks.size(); i++) {
+                writeFully(channel, encodeBlock(blocks.get(i), widths[i]), offsets[i]);
+            }
+        }
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * Opens a sidecar file if it belongs to the given source
+     * @param trustStamp Accept a matching size and modification time without hashing the source
+     * @param sourceHash Called unless the stamp is trusted and matches the stored one
+     * @param leadFilter Leads to return, null returns all
+     * @return The cached signals, or null if the file is missing, unreadable or stale
+     */
+    public static List<Signal> open(Path cacheFile, SourceStamp stamp, boolean trustStamp,
+                                    HashSupplier sourceHash, Predicate<String> leadFilter) throws IOException {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long storedSize = buffer.getLong();
+            long storedModified = buffer.getLong();
+            byte[] storedHash = new byte[HASH_LENGTH];
+            buffer.get(storedHash);
+            if (stamp.size != storedSize) {
+                return null;
+            }
+            if (!trustStamp || !stamp.matches(storedSize, storedModified)) {
+                if (!Arrays.equals(storedHash, sourceHash.get())) {
+                    return null;
+                }
+                if (trustStamp && stamp.modified >= 0) {
+                    // Same content with a new stamp (e.g. copied or touched): skip the hash next time
+                    refreshStamp(cacheFile, stamp);
+                }
+            }
+
+            int leadCount = buffer.getInt();
+            List<Signal> signals = new ArrayList<>(leadCount);
+            for (int i = 0; i < leadCount; i++) {
+                String leadName = getString(buffer);
+                double originValue = buffer.getDouble();
+                String originUnit = getString(buffer);
+                double scaleValue = buffer.getDouble();
+                String scaleUnit = getString(buffer);
+                double increment = buffer.getDouble();
+                String incrementUnit = getString(buffer);
+                int sampleCount = buffer.getInt();
+                int width = buffer.get();
+                long dataOffset = buffer.getLong();
+
+                if (leadFilter != null && !leadFilter.test(leadName)) {
+                    continue;
+                }
+
+                SampleStorage values = new MappedStorage(buffer, (int) dataOffset, sampleCount, width);
+                signals.add(new Signal(leadName, values, originValue, originUnit,
+                                       scaleValue, scaleUnit, increment, incrementUnit));
+            }
+            return signals;
+        } catch (RuntimeException e) {
+            // Truncated or corrupt header: treat as a cache miss
+            return null;
+        }
+    }
+
+    /**
+     * Rewrites the stored stamp on a copy that is then moved over the sidecar,
+     * the sidecar itself is never written: the signals just opened read from its mapping
+     */
+    private static void refreshStamp(Path cacheFile, SourceStamp stamp) {
+        ByteBuffer fields = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        fields.putLong(stamp.size).putLong(stamp.modified).flip();
+        Path tempFile = tempFile(cacheFile);
+        try {
+            Files.copy(cacheFile, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                writeFully(channel, fields, STAMP_OFFSET);
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Read-only location, or a mapped file that can not be replaced:
+            // the hash is compared again on the next open
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static Path tempFile(Path cacheFile) {
+        return cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+    }
+
+    public static byte[] sha256(Path file) throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            MessageDigest digest = newDigest();
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(chunk)) > 0) {
+                digest.update(chunk, 0, read);
+            }
+            return digest.digest();
+        }
+    }
+
+    public static byte[] sha256(byte[] content) {
+        return newDigest().digest(content);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int[] toCounts(SampleStorage samples) {
+        // Quantized storages already hold the integer counts
+        if (samples instanceof SampleStorage.IntStorage) {
+            return ((SampleStorage.IntStorage) samples).array();
+        }
+        if (samples instanceof SampleStorage.ShortStorage) {
+            short[] shorts = ((SampleStorage.ShortStorage) samples).array();
+            int[] counts = new int[shorts.length];
+            for (int i = 0; i < shorts.length; i++) {
+                counts[i] = shorts[i];
+            }
+            return counts;
+        }
+
+        int[] counts = new int[samples.size()];
+        for (int i = 0; i < counts.length; i++) {
+            double value = samples.get(i);
+            if (value != Math.rint(value) || value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+                return null;
+            }
+            counts[i] = (int) value;
+        }
+        return counts;
+    }
+
+    private static boolean fitsInShort(int[] counts) {
+        for (int count : counts) {
+            if (count < Short.MIN_VALUE || count > Short.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer encodeBlock(int[] counts, int width) {
+        ByteBuffer block = ByteBuffer.allocate(counts.length * width).order(ByteOrder.LITTLE_ENDIAN);
+        if (width == 2) {
+            for (int count : counts) {
+                block.putShort((short) count);
+            }
+            block.flip();
+        } else {
+            block.asIntBuffer().put(counts);
+        }
+        return block;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static int stringSize(String value) {
+        return 2 + (value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sample storage reading one lead's block straight from the mapped file
+     */
+    private static class MappedStorage extends SampleStorage {
+        private final ShortBuffer shorts;
+        private final IntBuffer ints;
+        private final int size;
+
+        MappedStorage(ByteBuffer mapped, int offset, int size, int width) {
+            ByteBuffer block = mapped.duplicate();
+            block.position(offset);
+            block.limit(offset + size * width);
+            block = block.slice().order(ByteOrder.LITTLE_ENDIAN);
+            this.shorts = width == 2 ? block.asShortBuffer() : null;
+            this.ints = width == 2 ? null : block.asIntBuffer();
+            this.size = size;
+        }
+
+        @Override
+        public double get(int index) {
+            return shorts != null ? shorts.get(index) : ints.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
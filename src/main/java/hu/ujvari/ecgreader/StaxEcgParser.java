@@ -0,0 +1,215 @@
+package hu.ujvari.ecgreader;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import hu.ujvari.ecgmodel.SampleStorage;
+import hu.ujvari.ecgmodel.Signal;
+
+/**
+ * Streaming (StAX) parser for HL7 aECG files.
+ * Walks the document once and emits a Signal for every
+ * sequenceSet/component/sequence whose code is an MDC_ECG_LEAD_* code.
+ * Only the current sequence is kept in memory, so the heap usage is bounded
+ * by the largest single digits block instead of the whole document.
+ */
+public class StaxEcgParser {
+    private static final String LEAD_CODE_PREFIX = "MDC_ECG_LEAD_";
+
+    private final XMLInputFactory inputFactory;
+    private final DigitsTokenizer tokenizer = new DigitsTokenizer();
+    private int malformedTokenCount;
+    private Predicate<String> leadFilter = code -> true;
+    private SampleStorage.Type storageType = SampleStorage.Type.DOUBLE;
+
+    public StaxEcgParser() {
+        this.inputFactory = XMLInputFactory.newInstance();
+        // aECG files do not need DTDs or external entities, keep the parser closed
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    }
+
+    /**
+     * Restricts the parser to the leads accepted by the filter.
+     * The digits of every other lead are skipped without being tokenized.
+     * @param leadFilter Predicate on the MDC_ECG_LEAD_* code, null selects all leads
+     */
+    public void setLeadFilter(Predicate<String> leadFilter) {
+        this.leadFilter = leadFilter != null ? leadFilter : code -> true;
+    }
+
+    /**
+     * Sets the primitive representation of the emitted samples (double by default)
+     */
+    public void setStorageType(SampleStorage.Type storageType) {
+        this.storageType = storageType;
+    }
+
+    /**
+     * Parses the stream and collects every lead into a list
+     * @param is The aECG XML input
+     * @return The extracted signals in document order
+     */
+    public List<Signal> parse(InputStream is) throws XMLStreamException {
+        List<Signal> signals = new ArrayList<>();
+        parse(is, signals::add);
+        return signals;
+    }
+
+    /**
+     * Parses the stream and hands every lead to the consumer as soon as its
+     * closing sequence tag has been read
+     * @param is The aECG XML input
+     * @param consumer Receives the signals in document order
+     */
+    public void parse(InputStream is, Consumer<Signal> consumer) throws XMLStreamException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(is);
+        malformedTokenCount = 0;
+        try {
+            SequenceState sequence = null;
+            int depth = 0;
+            // The sample increment is given once per sequenceSet, on its time sequence
+            String increment = null;
+            String incrementUnit = null;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String name = reader.getLocalName();
+
+                    if ("sequenceSet".equals(name)) {
+                        increment = null;
+                        incrementUnit = null;
+                    } else if ("sequence".equals(name)) {
+                        sequence = new SequenceState(depth);
+                    } else if (sequence != null) {
+                        if ("code".equals(name) && depth == sequence.depth + 1 && sequence.code == null) {
+                            sequence.code = reader.getAttributeValue(null, "code");
+                        } else if ("value".equals(name) && depth == sequence.depth + 1) {
+                            sequence.inValue = true;
+                        } else if (sequence.inValue && "increment".equals(name)) {
+                            increment = reader.getAttributeValue(null, "value");
+                            incrementUnit = reader.getAttributeValue(null, "unit");
+                        } else if (sequence.inValue && "origin".equals(name)) {
+                            sequence.originValue = reader.getAttributeValue(null, "value");
+                            sequence.originUnit = reader.getAttributeValue(null, "unit");
+                        } else if (sequence.inValue && "scale".equals(name)) {
+                            sequence.scaleValue = reader.getAttributeValue(null, "value");
+                            sequence.scaleUnit = reader.getAttributeValue(null, "unit");
+                        } else if (sequence.inValue && "digits".equals(name) && sequence.values == null) {
+                            // readDigits and skipDigits consume the END_ELEMENT as well
+                            if (sequence.code == null || isSelected(sequence.code)) {
+                                sequence.values = readDigits(reader);
+                            } else {
+                                skipDigits(reader);
+                            }
+                            depth--;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (sequence != null) {
+                        String name = reader.getLocalName();
+                        if ("value".equals(name) && depth == sequence.depth + 1) {
+                            sequence.inValue = false;
+                        } else if ("sequence".equals(name) && depth == sequence.depth) {
+                            Signal signal = sequence.toSignal(increment, incrementUnit);
+                            if (signal != null && isSelected(signal.getLeadName())) {
+                                consumer.accept(signal);
+                            }
+                            sequence = null;
+                        }
+                    }
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Decodes the text of the current digits element directly from the
+     * parser's character buffer, up to and including its END_ELEMENT
+     */
+    private SampleStorage readDigits(XMLStreamReader reader) throws XMLStreamException {
+        tokenizer.reset();
+        int event = reader.next();
+        while (event != XMLStreamConstants.END_ELEMENT) {
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                tokenizer.feed(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Unexpected element inside digits", reader.getLocation());
+            }
+            event = reader.next();
+        }
+        tokenizer.finish();
+        malformedTokenCount += tokenizer.getMalformedCount();
+        return tokenizer.toStorage(storageType);
+    }
+
+    /**
+     * Moves past the current digits element without looking at its text
+     */
+    private void skipDigits(XMLStreamReader reader) throws XMLStreamException {
+        int event = reader.next();
+        while (event != XMLStreamConstants.END_ELEMENT) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Unexpected element inside digits", reader.getLocation());
+            }
+            event = reader.next();
+        }
+    }
+
+    private boolean isSelected(String code) {
+        return code.startsWith(LEAD_CODE_PREFIX) && leadFilter.test(code);
+    }
+
+    /**
+     * @return The number of digits tokens skipped during the last parse
+     * because they were not valid integers
+     */
+    public int getMalformedTokenCount() {
+        return malformedTokenCount;
+    }
+
+    /**
+     * Collects the fields of the sequence currently being read
+     */
+    private static class SequenceState {
+        private final int depth;
+        private boolean inValue;
+        private String code;
+        private String originValue;
+        private String originUnit;
+        private String scaleValue;
+        private String scaleUnit;
+        private SampleStorage values;
+
+        SequenceState(int depth) {
+            this.depth = depth;
+        }
+
+        Signal toSignal(String increment, String incrementUnit) {
+            if (code == null || !code.startsWith(LEAD_CODE_PREFIX)) return null;
+            if (originValue == null || scaleValue == null || values == null) return null;
+
+            return new Signal(code, values,
+                    Double.parseDouble(originValue), originUnit != null ? originUnit : "",
+                    Double.parseDouble(scaleValue), scaleUnit != null ? scaleUnit : "",
+                    increment != null ? Double.parseDouble(increment) : 0.0,
+                    incrementUnit != null ? incrementUnit : "");
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package hu.ujvari.ecgreader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -18,14 +27,20 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import hu.ujvari.ecgmodel.SampleStorage;
 import hu.ujvari.ecgmodel.Signal;
 
 
 public class XmlEcgReader {
+    private static final String CACHE_SUFFIX = ".ecgbin";
 
     private Document xmlDocument;
     private double[] Signal;
     private List<Signal> signals = new ArrayList<>();
+    private int malformedTokenCount;
+    private Predicate<String> leadSelection;
+    private SampleStorage.Type storageType = SampleStorage.Type.DOUBLE;
+    private boolean trustCacheStamp;
 
 
     public void loadXmlFile(String filePath) {
@@ -146,6 +161,63 @@ public class XmlEcgReader {
     }
     
 
+    /**
+     * The increment belongs to the time sequence of the enclosing sequenceSet
+     */
+    private Element findSampleIncrement(Element leadComponent) {
+        Node node = leadComponent.getParentNode();
+        while (node != null && !"sequenceSet".equals(node.getNodeName())) {
+            node = node.getParentNode();
+        }
+        if (node == null) return null;
+        return (Element) ((Element) node).getElementsByTagName("increment").item(0);
+    }
+
+    /**
+     * Limits extractSignals and the streaming methods to the given leads.
+     * The digits of the other leads are not tokenized at all.
+     * @param leadCodes MDC_ECG_LEAD_* codes to keep, e.g. "MDC_ECG_LEAD_II"
+     */
+    public void setLeadSelection(Set<String> leadCodes) {
+        Set<String> codes = new HashSet<>(leadCodes);
+        this.leadSelection = codes::contains;
+    }
+
+    /**
+     * Limits extractSignals and the streaming methods to the leads
+     * whose code is accepted by the predicate
+     */
+    public void setLeadSelection(Predicate<String> leadSelection) {
+        this.leadSelection = leadSelection;
+    }
+
+    /**
+     * Primitive representation of the extracted samples: double (default),
+     * float to halve the memory of long recordings, or quantized to keep the
+     * raw int16/int32 counts (origin/scale are then applied on read)
+     */
+    public void setStorageType(SampleStorage.Type storageType) {
+        this.storageType = storageType;
+    }
+
+    /**
+     * Lets loadCachedFile accept a sidecar whose stored size and modification
+     * time match the XML without hashing the XML. Faster for large files, but
+     * an edit that keeps the size within the timestamp resolution of the file
+     * system is not noticed. Off by default.
+     */
+    public void setTrustCacheStamp(boolean trustCacheStamp) {
+        this.trustCacheStamp = trustCacheStamp;
+    }
+
+    public void clearLeadSelection() {
+        this.leadSelection = null;
+    }
+
+    private boolean isLeadSelected(String leadName) {
+        return leadSelection == null || leadSelection.test(leadName);
+    }
+
     public void extractSignals() {
         if (this.xmlDocument == null) {
             System.out.println("Nincs betöltve XML dokumentum.");
@@ -153,6 +225,8 @@ public class XmlEcgReader {
         }
     
         this.signals.clear();
+        this.malformedTokenCount = 0;
+        DigitsTokenizer tokenizer = new DigitsTokenizer();
     
         List<Element> leadComponents = findLeadComponents();
     
@@ -161,6 +235,7 @@ public class XmlEcgReader {
             NodeList codeList = component.getElementsByTagName("code");
             if (codeList.getLength() == 0) continue;
             String leadName = ((Element) codeList.item(0)).getAttribute("code");
+            if (!isLeadSelected(leadName)) continue;
     
             
             Element valueElement = (Element) component.getElementsByTagName("value").item(0);
@@ -178,19 +253,214 @@ public class XmlEcgReader {
             double scaleVal = Double.parseDouble(scaleElement.getAttribute("value"));
             String scaleUnit = scaleElement.getAttribute("unit");
     
-            String digitsText = digitsElement.getTextContent().trim();
-            List<Double> values = new ArrayList<>();
-            for (String token : digitsText.split("\\s+")) {
-                try {
-                    values.add(Double.parseDouble(token));
-                } catch (NumberFormatException ignored) {}
+            tokenizer.reset();
+            tokenizer.feed(digitsElement.getTextContent());
+            tokenizer.finish();
+            malformedTokenCount += tokenizer.getMalformedCount();
+            SampleStorage values = tokenizer.toStorage(storageType);
+    
+            double incrementVal = 0.0;
+            String incrementUnit = "";
+            Element incrementElement = findSampleIncrement(component);
+            if (incrementElement != null) {
+                incrementVal = Double.parseDouble(incrementElement.getAttribute("value"));
+                incrementUnit = incrementElement.getAttribute("unit");
             }
     
-            Signal signal = new Signal(leadName, values, originVal, originUnit, scaleVal, scaleUnit);
+            Signal signal = new Signal(leadName, values, originVal, originUnit, scaleVal, scaleUnit,
+                                       incrementVal, incrementUnit);
             this.signals.add(signal);
         }
     
         System.out.println("Beolvasott elvezetések száma: " + signals.size());
+        reportMalformedTokens();
+    }
+
+    /**
+     * Streaming alternative of loadXmlFile + extractSignals.
+     * The leads are read in one forward pass with StAX, no DOM is built,
+     * so printXmlStructure and printAvailableLeads are not available afterwards.
+     */
+    public void streamSignalsFromFile(String filePath) {
+        try (InputStream is = new FileInputStream(new File(filePath))) {
+            streamSignals(is);
+        } catch (IOException e) {
+            System.err.println("Fájl nem olvasható: " + e.getMessage());
+        }
+    }
+
+    public void streamSignalsFromResource(String resourcePath) {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream(resourcePath)) {
+            if (is == null) {
+                System.err.println("Nem található az erőforrás: " + resourcePath);
+                return;
+            }
+            streamSignals(is);
+        } catch (IOException e) {
+            System.err.println("Hiba a resource beolvasásakor: " + e.getMessage());
+        }
+    }
+
+    public void streamSignals(InputStream is) {
+        this.xmlDocument = null;
+        this.signals.clear();
+        streamSignals(is, this.signals::add);
+        System.out.println("Beolvasott elvezetések száma: " + signals.size());
+        reportMalformedTokens();
+    }
+
+    /**
+     * Hands every lead to the consumer as soon as it has been parsed,
+     * without collecting them in this reader
+     */
+    public void streamSignals(InputStream is, Consumer<Signal> consumer) {
+        StaxEcgParser parser = new StaxEcgParser();
+        parser.setLeadFilter(leadSelection);
+        parser.setStorageType(storageType);
+        this.malformedTokenCount = 0;
+        try {
+            parser.parse(is, consumer);
+        } catch (XMLStreamException e) {
+            System.err.println("Hiba az XML streamelt beolvasásakor: " + e.getMessage());
+        }
+        this.malformedTokenCount = parser.getMalformedTokenCount();
+    }
+
+    private void reportMalformedTokens() {
+        if (malformedTokenCount > 0) {
+            System.err.println("Hibás (nem egész) minták kihagyva: " + malformedTokenCount);
+        }
+    }
+
+    /**
+     * @return The number of digits tokens skipped during the last extraction
+     * because they were not valid integers
+     */
+    public int getMalformedTokenCount() {
+        return malformedTokenCount;
+    }
+
+    /**
+     * Loads the leads through a binary sidecar (filePath + ".ecgbin").
+     * If the sidecar matches the hash of the XML (or only its size and
+     * modification time, see setTrustCacheStamp) it is memory-mapped and the
+     * XML is not parsed, otherwise the XML is parsed once and the
+     * sidecar is (re)written for the next load.
+     */
+    public void loadCachedFile(String filePath) {
+        Path source = Paths.get(filePath);
+        Path cacheFile = Paths.get(filePath + CACHE_SUFFIX);
+        try {
+            EcgBinaryCache.SourceStamp stamp = EcgBinaryCache.SourceStamp.of(source);
+            byte[][] hash = new byte[1][];
+            EcgBinaryCache.HashSupplier sourceHash = () -> {
+                if (hash[0] == null) {
+                    hash[0] = EcgBinaryCache.sha256(source);
+                }
+                return hash[0];
+            };
+            if (openCache(cacheFile, stamp, trustCacheStamp, sourceHash)) {
+                return;
+            }
+            try (InputStream is = Files.newInputStream(source)) {
+                parseAndCache(is, cacheFile, stamp, sourceHash.get());
+            }
+        } catch (IOException e) {
+            System.err.println("Fájl nem olvasható: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Same as loadCachedFile for classpath resources, which can not have a
+     * sidecar next to them; the sidecar is kept in cacheDir instead
+     */
+    public void loadCachedResource(String resourcePath, Path cacheDir) {
+        byte[] content;
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream(resourcePath)) {
+            if (is == null) {
+                System.err.println("Nem található az erőforrás: " + resourcePath);
+                return;
+            }
+            content = readAll(is);
+        } catch (IOException e) {
+            System.err.println("Hiba a resource beolvasásakor: " + e.getMessage());
+            return;
+        }
+
+        Path cacheFile = cacheDir.resolve(resourcePath.replace('/', '_') + CACHE_SUFFIX);
+        try {
+            // Resources have no modification time, so their content is always hashed
+            EcgBinaryCache.SourceStamp stamp = new EcgBinaryCache.SourceStamp(content.length, -1);
+            byte[] hash = EcgBinaryCache.sha256(content);
+            if (openCache(cacheFile, stamp, false, () -> hash)) {
+                return;
+            }
+            Files.createDirectories(cacheDir);
+            parseAndCache(new ByteArrayInputStream(content), cacheFile, stamp, hash);
+        } catch (IOException e) {
+            System.err.println("Hiba a gyorsítótár kezelésekor: " + e.getMessage());
+        }
+    }
+
+    private boolean openCache(Path cacheFile, EcgBinaryCache.SourceStamp stamp, boolean trustStamp,
+                              EcgBinaryCache.HashSupplier hash) {
+        try {
+            List<Signal> cached = EcgBinaryCache.open(cacheFile, stamp, trustStamp, hash, leadSelection);
+            if (cached == null) {
+                return false;
+            }
+            this.xmlDocument = null;
+            this.signals.clear();
+            this.signals.addAll(cached);
+            this.malformedTokenCount = 0;
+            System.out.println("Elvezetések a gyorsítótárból: " + signals.size() + " (" + cacheFile + ")");
+            return true;
+        } catch (IOException e) {
+            System.err.println("A gyorsítótár nem olvasható, XML feldolgozás következik: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void parseAndCache(InputStream is, Path cacheFile, EcgBinaryCache.SourceStamp stamp, byte[] hash) {
+        // The sidecar has to hold every lead, the selection is applied afterwards
+        Predicate<String> selection = this.leadSelection;
+        List<Signal> allSignals = new ArrayList<>();
+        this.leadSelection = null;
+        try {
+            streamSignals(is, allSignals::add);
+        } finally {
+            this.leadSelection = selection;
+        }
+
+        this.xmlDocument = null;
+        this.signals.clear();
+        for (Signal signal : allSignals) {
+            if (isLeadSelected(signal.getLeadName())) {
+                this.signals.add(signal);
+            }
+        }
+        System.out.println("Beolvasott elvezetések száma: " + signals.size());
+        reportMalformedTokens();
+
+        try {
+            if (EcgBinaryCache.write(cacheFile, stamp, hash, allSignals)) {
+                System.out.println("Gyorsítótár elmentve: " + cacheFile);
+            } else {
+                System.err.println("Nem egész minták miatt a gyorsítótár nem készült el");
+            }
+        } catch (IOException e) {
+            System.err.println("A gyorsítótár nem írható: " + e.getMessage());
+        }
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[64 * 1024];
+        int read;
+        while ((read = is.read(chunk)) > 0) {
+            out.write(chunk, 0, read);
+        }
+        return out.toByteArray();
     }
 
     public List<Signal> getSignals() {
@@ -0,0 +1,96 @@
+package hu.ujvari;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+/**
+ * Signals and comparisons shared by the unit tests
+ */
+public final class TestSignals {
+
+    private TestSignals() {
+    }
+
+    /**
+     * @return Standard normal samples, the same for the same seed
+     */
+    public static double[] random(int length, long seed) {
+        return random(length, new Random(seed));
+    }
+
+    /**
+     * @return Standard normal samples drawn from the given generator
+     */
+    public static double[] random(int length, Random random) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextGaussian();
+        }
+        return values;
+    }
+
+    /**
+     * ECG-like beats (P, QRS, T) every 0.8 s at 1000 Hz over a 12 Hz oscillation, peak about 11
+     */
+    public static double[] beats(int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            double t = i / 1000.0;
+            double phase = t % 0.8;
+            values[i] = 10 * gauss(phase, 0.30, 0.012) + 2 * gauss(phase, 0.55, 0.05) + gauss(phase, 0.15, 0.03)
+                      + Math.sin(2 * Math.PI * 12 * t);
+        }
+        return values;
+    }
+
+    private static double gauss(double x, double center, double width) {
+        double u = (x - center) / width;
+        return Math.exp(-u * u);
+    }
+
+    /**
+     * @return The signal plus standard normal noise
+     */
+    public static double[] addNoise(double[] clean, long seed) {
+        Random random = new Random(seed);
+        double[] noisy = clean.clone();
+        for (int i = 0; i < noisy.length; i++) {
+            noisy[i] += random.nextGaussian();
+        }
+        return noisy;
+    }
+
+    /**
+     * Same length and every sample within the tolerance
+     */
+    public static void assertClose(double[] expected, double[] actual, double tolerance) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("index " + i, expected[i], actual[i], tolerance);
+        }
+    }
+
+    /**
+     * @return Root mean square difference of two signals of the same length
+     */
+    public static double rmse(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += (a[i] - b[i]) * (a[i] - b[i]);
+        }
+        return Math.sqrt(sum / a.length);
+    }
+
+    /**
+     * @return Largest absolute difference over the common length, the first and last margin samples excluded
+     */
+    public static double maxError(double[] expected, double[] actual, int margin) {
+        double max = 0.0;
+        int length = Math.min(expected.length, actual.length);
+        for (int i = margin; i < length - margin; i++) {
+            max = Math.max(max, Math.abs(expected[i] - actual[i]));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,66 @@
+package hu.ujvari.ecgplotter.filter;
+
+import static hu.ujvari.TestSignals.random;
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import hu.ujvari.ecgmodel.DoubleArrayList;
+import hu.ujvari.ecgplotter.model.FilterParameters.WaveletParameters;
+import hu.ujvari.ecgprocessor.LiftingWavelet;
+
+public class WaveletFilterTest {
+
+    @Test
+    public void everyFamilyMapsToTheSameProcessorFamily() {
+        Set<LiftingWavelet.Family> mapped = EnumSet.noneOf(LiftingWavelet.Family.class);
+        for (WaveletParameters.Family family : WaveletParameters.Family.values()) {
+            LiftingWavelet.Family processor = WaveletFilter.toFamily(family);
+            assertEquals(family.name(), processor.name());
+            mapped.add(processor);
+        }
+        assertEquals(EnumSet.allOf(LiftingWavelet.Family.class), mapped);
+    }
+
+    @Test
+    public void everyTransformMapsToTheSameProcessorTransform() {
+        Set<hu.ujvari.ecgprocessor.WaveletFilter.Transform> mapped =
+            EnumSet.noneOf(hu.ujvari.ecgprocessor.WaveletFilter.Transform.class);
+        for (WaveletParameters.Transform transform : WaveletParameters.Transform.values()) {
+            hu.ujvari.ecgprocessor.WaveletFilter.Transform processor = WaveletFilter.toTransform(transform);
+            assertEquals(transform.name(), processor.name());
+            mapped.add(processor);
+        }
+        assertEquals(EnumSet.allOf(hu.ujvari.ecgprocessor.WaveletFilter.Transform.class), mapped);
+    }
+
+    @Test
+    public void everyRuleMapsToTheSameProcessorRule() {
+        Set<hu.ujvari.ecgprocessor.WaveletFilter.ThresholdRule> mapped =
+            EnumSet.noneOf(hu.ujvari.ecgprocessor.WaveletFilter.ThresholdRule.class);
+        for (WaveletParameters.ThresholdRule rule : WaveletParameters.ThresholdRule.values()) {
+            hu.ujvari.ecgprocessor.WaveletFilter.ThresholdRule processor = WaveletFilter.toRule(rule);
+            assertEquals(rule.name(), processor.name());
+            mapped.add(processor);
+        }
+        assertEquals(EnumSet.allOf(hu.ujvari.ecgprocessor.WaveletFilter.ThresholdRule.class), mapped);
+    }
+
+    @Test
+    public void everyCombinationFilters() {
+        List<Double> signal = DoubleArrayList.wrap(random(1000, 5));
+        WaveletFilter filter = new WaveletFilter();
+        for (WaveletParameters.Family family : WaveletParameters.Family.values()) {
+            for (WaveletParameters.Transform transform : WaveletParameters.Transform.values()) {
+                for (WaveletParameters.ThresholdRule rule : WaveletParameters.ThresholdRule.values()) {
+                    filter.setParameters(new WaveletParameters(3, 0.1, family, transform, rule));
+                    assertEquals(signal.size(), filter.filter(signal).size());
+                }
+            }
+        }
+    }
+}
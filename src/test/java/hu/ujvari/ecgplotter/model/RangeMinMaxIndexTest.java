@@ -0,0 +1,87 @@
+package hu.ujvari.ecgplotter.model;
+
+import static hu.ujvari.TestSignals.random;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RangeMinMaxIndexTest {
+
+    private static void assertRange(double[] values, RangeMinMaxIndex index, int from, int to) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = Math.max(0, from); i <= Math.min(values.length - 1, to); i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        String range = "n=" + values.length + " [" + from + ", " + to + "]";
+        assertEquals(range, min, index.min(from, to), 0.0);
+        assertEquals(range, max, index.max(from, to), 0.0);
+    }
+
+    @Test
+    public void matchesBruteForceOnRandomRanges() {
+        Random random = new Random(8);
+        // Shorter than, exactly one and several 32-sample blocks, with and without a partial last block
+        for (int n : new int[] { 1, 2, 31, 32, 33, 64, 65, 100, 1000, 4097 }) {
+            double[] values = random(n, n);
+            RangeMinMaxIndex index = new RangeMinMaxIndex(values);
+            assertEquals(n, index.size());
+            for (int q = 0; q < 2000; q++) {
+                int from = random.nextInt(n);
+                int to = from + random.nextInt(n - from);
+                assertRange(values, index, from, to);
+            }
+        }
+    }
+
+    @Test
+    public void matchesBruteForceAroundBlockEdges() {
+        int n = 1000;
+        double[] values = random(n, 1);
+        RangeMinMaxIndex index = new RangeMinMaxIndex(values);
+        for (int block = 0; block * 32 < n; block++) {
+            int start = block * 32;
+            // Inside one block, single samples at its edges, and just across them
+            assertRange(values, index, start + 3, start + 20);
+            assertRange(values, index, start, start);
+            assertRange(values, index, start + 31, start + 31);
+            assertRange(values, index, start, start + 31);
+            assertRange(values, index, start - 1, start);
+            assertRange(values, index, start + 30, start + 33);
+            assertRange(values, index, start - 2, start + 65);
+        }
+        // The ends of the array
+        assertRange(values, index, 0, 0);
+        assertRange(values, index, n - 1, n - 1);
+        assertRange(values, index, n - 40, n - 1);
+        assertRange(values, index, 0, n - 1);
+        assertEquals(index.min(0, n - 1), index.getMin(), 0.0);
+        assertEquals(index.max(0, n - 1), index.getMax(), 0.0);
+    }
+
+    @Test
+    public void rangesAreClampedToTheSeries() {
+        double[] values = random(100, 2);
+        RangeMinMaxIndex index = new RangeMinMaxIndex(values);
+        assertEquals(index.getMin(), index.min(-50, 500), 0.0);
+        assertEquals(index.getMax(), index.max(-50, 500), 0.0);
+        assertRange(values, index, -5, 10);
+        assertRange(values, index, 90, 105);
+
+        // Empty ranges
+        assertEquals(Double.POSITIVE_INFINITY, index.min(10, 9), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, index.max(200, 300), 0.0);
+    }
+
+    @Test
+    public void emptySeriesHasNoRange() {
+        RangeMinMaxIndex index = new RangeMinMaxIndex(new double[0]);
+        assertEquals(0, index.size());
+        assertEquals(Double.POSITIVE_INFINITY, index.getMin(), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, index.getMax(), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, index.min(0, 10), 0.0);
+    }
+}
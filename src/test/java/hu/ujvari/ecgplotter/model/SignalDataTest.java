@@ -0,0 +1,131 @@
+package hu.ujvari.ecgplotter.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SignalDataTest {
+
+    @Test
+    public void rangeCoversEverySeriesWithPadding() {
+        SignalData data = new SignalData(Arrays.asList(1.0, 3.0, 2.0));
+        // 5% of the 2.0 range on both sides
+        assertEquals(0.9, data.getMinValue(), 1e-12);
+        assertEquals(3.1, data.getMaxValue(), 1e-12);
+
+        data.addFilteredSignal("wide", Arrays.asList(-1.0, 0.0, 5.0));
+        assertEquals(-1.3, data.getMinValue(), 1e-12);
+        assertEquals(5.3, data.getMaxValue(), 1e-12);
+    }
+
+    @Test
+    public void replacedSeriesNoLongerWidensTheRange() {
+        SignalData data = new SignalData(Arrays.asList(0.0, 10.0));
+        data.addFilteredSignal("filter", Arrays.asList(-90.0, 100.0));
+        assertEquals(-99.5, data.getMinValue(), 1e-12);
+
+        data.addFilteredSignal("filter", Arrays.asList(2.0, 8.0));
+        assertEquals(-0.5, data.getMinValue(), 1e-12);
+        assertEquals(10.5, data.getMaxValue(), 1e-12);
+    }
+
+    @Test
+    public void negativeSignalHasANegativeMaximum() {
+        SignalData data = new SignalData(Arrays.asList(-5.0, -3.0, -4.0));
+        assertEquals(-5.1, data.getMinValue(), 1e-12);
+        assertEquals(-2.9, data.getMaxValue(), 1e-12);
+    }
+
+    @Test
+    public void emptySignalHasAZeroRange() {
+        SignalData data = new SignalData(new ArrayList<Double>());
+        assertEquals(0.0, data.getMinValue(), 0.0);
+        assertEquals(0.0, data.getMaxValue(), 0.0);
+    }
+
+    private static List<Double> sine(int n, double amplitude) {
+        List<Double> values = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            values.add(amplitude * Math.sin(i / 20.0));
+        }
+        return values;
+    }
+
+    @Test
+    public void replacingTheSignalResetsTheState() {
+        SignalData data = new SignalData(Arrays.asList(0.0, 1.0, 2.0), 250.0);
+        data.addFilteredSignal("filter", Arrays.asList(5.0, 6.0, 7.0));
+        data.setViewport(1, 2);
+
+        data.setOriginalSignal(Arrays.asList(4.0, 2.0, 3.0, 1.0));
+        assertEquals(Arrays.asList(4.0, 2.0, 3.0, 1.0), data.getOriginalSignal());
+        assertEquals(SignalData.DEFAULT_SAMPLE_RATE, data.getSampleRate(), 0.0);
+        assertTrue(data.getAllFilteredSignals().isEmpty());
+        assertEquals(0, data.getViewStartIdx());
+        assertEquals(3, data.getViewEndIdx());
+
+        data.setOriginalSignal(Arrays.asList(1.0, 2.0), 500.0);
+        assertEquals(500.0, data.getSampleRate(), 0.0);
+    }
+
+    @Test
+    public void publishedSnapshotNeverChanges() {
+        SignalData data = new SignalData(sine(1000, 1.0));
+        data.addFilteredSignal("A", sine(1000, 0.5));
+
+        SignalData.Snapshot before = data.getSnapshot();
+        List<Double> original = new ArrayList<>(before.getOriginalSignal());
+        List<Double> filtered = new ArrayList<>(before.getFilteredSignal("A"));
+        double min = before.getMinValue();
+        double max = before.getMaxValue();
+        double[] viewportRange = before.getViewportRange(Arrays.asList(SignalData.ORIGINAL_SERIES, "A"));
+
+        data.addFilteredSignal("B", sine(1000, 40.0));
+        data.addFilteredSignal("A", sine(1000, 7.0));
+        data.setViewport(100, 200);
+        data.moveViewport(50);
+        data.setZoomLevel(4);
+
+        assertEquals(original, before.getOriginalSignal());
+        assertEquals(Collections.singleton("A"), before.getFilteredSignals().keySet());
+        assertEquals(filtered, before.getFilteredSignal("A"));
+        assertEquals(min, before.getMinValue(), 0.0);
+        assertEquals(max, before.getMaxValue(), 0.0);
+        assertEquals(0, before.getViewStartIdx());
+        assertEquals(999, before.getViewEndIdx());
+        assertEquals(1, before.getZoomLevel());
+        assertEquals(1000, before.getSignalSize());
+        assertArrayEquals(viewportRange,
+            before.getViewportRange(Arrays.asList(SignalData.ORIGINAL_SERIES, "A")), 0.0);
+
+        // The changes went into a new snapshot
+        SignalData.Snapshot after = data.getSnapshot();
+        assertNotSame(before, after);
+        assertEquals(new HashSet<>(Arrays.asList("A", "B")), after.getFilteredSignals().keySet());
+        assertEquals(4, after.getZoomLevel());
+        assertTrue(after.getMaxValue() > 40.0);
+    }
+
+    @Test
+    public void snapshotSeriesAreReadOnly() {
+        SignalData data = new SignalData(sine(10, 1.0));
+        data.addFilteredSignal("A", sine(10, 0.5));
+        SignalData.Snapshot snapshot = data.getSnapshot();
+        try {
+            snapshot.getFilteredSignals().put("B", sine(10, 2.0));
+            fail("the series map of a snapshot must not be modifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertEquals(Collections.singleton("A"), data.getSnapshot().getFilteredSignals().keySet());
+    }
+}
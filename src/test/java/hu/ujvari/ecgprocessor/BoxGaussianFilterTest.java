@@ -0,0 +1,79 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.addNoise;
+import static hu.ujvari.TestSignals.beats;
+import static hu.ujvari.TestSignals.maxError;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BoxGaussianFilterTest {
+
+    @Test
+    public void interiorStaysCloseToTheExactKernel() {
+        double[] input = addNoise(beats(20000), 13);
+        for (int passes = 3; passes <= 4; passes++) {
+            for (int window : new int[] { 7, 31, 101, 301, 1501 }) {
+                double[] exact = new GaussianMovingAverage(window).filter(input);
+                double[] box = BoxGaussianFilter.forWindow(window, passes).filter(input);
+                // Away from the edges, within 3% of the QRS amplitude
+                double error = maxError(exact, box, window);
+                assertTrue(passes + " passes, window " + window + ": " + error, error < 0.3);
+            }
+        }
+    }
+
+    @Test
+    public void edgesFollowTheExactKernel() {
+        // Offset so that zero padding would show at both ends
+        double[] input = addNoise(beats(20000), 13);
+        for (int i = 0; i < input.length; i++) {
+            input[i] += 5.0;
+        }
+        for (int passes = 3; passes <= 4; passes++) {
+            for (int window : new int[] { 7, 31, 101, 301, 1501 }) {
+                double[] exact = new GaussianMovingAverage(window).filter(input);
+                double[] box = BoxGaussianFilter.forWindow(window, passes).filter(input);
+                double error = maxError(exact, box, 0);
+                assertTrue(passes + " passes, window " + window + ": " + error, error < 0.4);
+            }
+        }
+    }
+
+    @Test
+    public void boxesAddUpToTheVariance() {
+        for (double sigma : new double[] { 1.0, 2.5, 10.0, 50.0, 250.0 }) {
+            for (int passes = 3; passes <= 4; passes++) {
+                // Odd widths can only approximate sigma in steps
+                int[] widths = new BoxGaussianFilter(sigma, passes).getBoxWidths();
+                assertEquals(passes, widths.length);
+                double variance = 0.0;
+                for (int width : widths) {
+                    assertEquals(1, width % 2);
+                    variance += (width * (double) width - 1.0) / 12.0;
+                }
+                assertEquals("sigma " + sigma + ", " + passes + " passes", sigma, Math.sqrt(variance), 0.2);
+            }
+        }
+    }
+
+    @Test
+    public void constantSignalIsUnchanged() {
+        double[] constant = new double[500];
+        Arrays.fill(constant, 7.5);
+        for (int window : new int[] { 7, 101, 1501 }) {
+            double[] output = BoxGaussianFilter.forWindow(window, BoxGaussianFilter.DEFAULT_PASSES).filter(constant);
+            for (double value : output) {
+                assertEquals(7.5, value, 1e-9);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void twoPassesAreRejected() {
+        new BoxGaussianFilter(5.0, 2);
+    }
+}
@@ -0,0 +1,76 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.assertClose;
+import static hu.ujvari.TestSignals.random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ConvolutionEngineTest {
+
+    // out[i] = sum over j of kernel[j] * in[i + j - kernel.length / 2], zeros outside
+    private static double[] naive(double[] input, double[] kernel) {
+        int half = kernel.length / 2;
+        double[] output = new double[input.length];
+        for (int i = 0; i < input.length; i++) {
+            double sum = 0.0;
+            for (int j = 0; j < kernel.length; j++) {
+                int k = i + j - half;
+                if (k >= 0 && k < input.length) {
+                    sum += kernel[j] * input[k];
+                }
+            }
+            output[i] = sum;
+        }
+        return output;
+    }
+
+    @Test
+    public void fftMatchesDirectCorrelation() {
+        // Odd and even kernels, inputs shorter than, equal to and much longer than one block
+        int[] kernelLengths = { 65, 128, 201, 513 };
+        int[] inputLengths = { 1, 50, 300, 1000, 4099, 20000 };
+        for (int taps : kernelLengths) {
+            double[] kernel = random(taps, taps);
+            for (int n : inputLengths) {
+                double[] input = random(n, 31L * n + taps);
+                ConvolutionEngine fft = new ConvolutionEngine(kernel, true);
+                ConvolutionEngine direct = new ConvolutionEngine(kernel, false);
+                assertTrue(fft.usesFft());
+                assertFalse(direct.usesFft());
+
+                double[] expected = naive(input, kernel);
+                assertClose(expected, direct.correlate(input), 1e-9);
+                assertClose(expected, fft.correlate(input), 1e-8);
+            }
+        }
+    }
+
+    @Test
+    public void shortKernelsAreAppliedDirectly() {
+        double[] kernel = random(ConvolutionEngine.DIRECT_MAX_TAPS, 7);
+        double[] input = random(3000, 8);
+        ConvolutionEngine engine = new ConvolutionEngine(kernel);
+        assertFalse(engine.usesFft());
+        assertClose(naive(input, kernel), engine.correlate(input), 1e-9);
+
+        double[] longKernel = random(ConvolutionEngine.DIRECT_MAX_TAPS + 1, 9);
+        assertTrue(new ConvolutionEngine(longKernel).usesFft());
+    }
+
+    @Test
+    public void singleTapKernelIsAScale() {
+        double[] input = random(777, 3);
+        double[] output = new ConvolutionEngine(new double[] { 2.5 }).correlate(input);
+        for (int i = 0; i < input.length; i++) {
+            assertEquals(2.5 * input[i], output[i], 0.0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyKernelIsRejected() {
+        new ConvolutionEngine(new double[0]);
+    }
+}
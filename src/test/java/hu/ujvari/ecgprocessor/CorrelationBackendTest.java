@@ -0,0 +1,78 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class CorrelationBackendTest {
+
+    // Only there when the JDK 17+ profile built it and the incubator module is enabled
+    private static CorrelationBackend vectorBackend() {
+        try {
+            return (CorrelationBackend) Class.forName(CorrelationBackend.VECTOR_CLASS)
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    @Test
+    public void vectorBackendIsBitIdenticalToTheScalarLoop() {
+        CorrelationBackend vector = vectorBackend();
+        Assume.assumeTrue("Vector API backend not available", vector != null);
+        CorrelationBackend scalar = new CorrelationBackend.Scalar();
+
+        // Kernels shorter than, equal to and longer than the lane count (2 to 8 doubles),
+        // inputs whose interior is not a multiple of it
+        int[] kernelLengths = { 1, 2, 3, 4, 5, 7, 8, 9, 15, 16, 17, 31, 33, 64, 65 };
+        for (int taps : kernelLengths) {
+            double[] kernel = random(taps, taps);
+            int half = taps / 2;
+            for (int n = taps; n <= taps + 37; n++) {
+                assertSameOutput(scalar, vector, random(n, 1000L * taps + n), kernel, half, n - (taps - 1 - half));
+            }
+            double[] input = random(1001, taps);
+            assertSameOutput(scalar, vector, input, kernel, half, input.length - (taps - 1 - half));
+            // Ranges starting off the lane grid
+            assertSameOutput(scalar, vector, input, kernel, half + 3, input.length - (taps - 1 - half) - 5);
+        }
+    }
+
+    private static void assertSameOutput(CorrelationBackend scalar, CorrelationBackend vector,
+                                         double[] input, double[] kernel, int from, int to) {
+        double[] expected = new double[input.length];
+        double[] actual = new double[input.length];
+        scalar.correlate(input, kernel, expected, from, to);
+        vector.correlate(input, kernel, actual, from, to);
+        assertArrayEquals("taps=" + kernel.length + " n=" + input.length + " [" + from + ", " + to + ")",
+            expected, actual, 0.0);
+    }
+
+    @Test
+    public void propertyForcesTheScalarLoop() {
+        String previous = System.getProperty(CorrelationBackend.VECTOR_PROPERTY);
+        System.setProperty(CorrelationBackend.VECTOR_PROPERTY, "false");
+        try {
+            CorrelationBackend backend = CorrelationBackend.load();
+            assertTrue(backend instanceof CorrelationBackend.Scalar);
+            assertEquals(64, backend.getDirectMaxTaps());
+        } finally {
+            if (previous == null) {
+                System.clearProperty(CorrelationBackend.VECTOR_PROPERTY);
+            } else {
+                System.setProperty(CorrelationBackend.VECTOR_PROPERTY, previous);
+            }
+        }
+    }
+
+    @Test
+    public void crossoverFollowsTheLoadedBackend() {
+        boolean vector = ConvolutionEngine.getBackendName().startsWith("vector");
+        CorrelationBackend loaded = vector ? vectorBackend() : new CorrelationBackend.Scalar();
+        assertEquals(loaded.getDirectMaxTaps(), ConvolutionEngine.DIRECT_MAX_TAPS);
+    }
+}
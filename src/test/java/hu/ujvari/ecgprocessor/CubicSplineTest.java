@@ -0,0 +1,206 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.random;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CubicSplineTest {
+
+    // Strictly increasing, unevenly spaced knots
+    private static double[] unevenKnots(int count, Random random) {
+        double[] x = new double[count];
+        x[0] = -1.0;
+        for (int i = 1; i < count; i++) {
+            x[i] = x[i - 1] + 0.1 + random.nextDouble();
+        }
+        return x;
+    }
+
+    @Test
+    public void naturalSplineInterpolatesTheKnots() {
+        Random random = new Random(1);
+        for (int count : new int[] { 2, 3, 10, 500 }) {
+            double[] x = unevenKnots(count, random);
+            double[] y = random(count, random);
+            CubicSpline spline = CubicSpline.natural(x, y);
+            for (int i = 0; i < count; i++) {
+                assertEquals(y[i], spline.value(x[i]), 1e-12);
+            }
+            double[] values = spline.values(x);
+            for (int i = 0; i < count; i++) {
+                assertEquals(y[i], values[i], 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void linearDataStaysLinear() {
+        Random random = new Random(2);
+        double[] x = unevenKnots(50, random);
+        double[] y = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            y[i] = 2.0 - 0.5 * x[i];
+        }
+        CubicSpline spline = CubicSpline.natural(x, y);
+        // Between the knots and continued beyond both ends
+        double[] samples = spline.sample(x[0] - 3.0, 0.01, (int) ((x[x.length - 1] - x[0] + 6.0) / 0.01));
+        for (int i = 0; i < samples.length; i++) {
+            double at = x[0] - 3.0 + i * 0.01;
+            assertEquals(2.0 - 0.5 * at, samples[i], 1e-10);
+        }
+    }
+
+    @Test
+    public void threeKnotSplineMatchesTheClosedForm() {
+        // Inner second derivative -3, so s(x) = 1.5 x - 0.5 x^3 on [0, 1], mirrored on [1, 2]
+        CubicSpline spline = CubicSpline.natural(new double[] { 0, 1, 2 }, new double[] { 0, 1, 0 });
+        assertEquals(0.6875, spline.value(0.5), 1e-14);
+        assertEquals(0.6875, spline.value(1.5), 1e-14);
+        assertEquals(1.0, spline.value(1.0), 1e-14);
+    }
+
+    @Test
+    public void derivativesAreContinuousAtInnerKnots() {
+        Random random = new Random(3);
+        double[] x = unevenKnots(20, random);
+        CubicSpline spline = CubicSpline.natural(x, random(20, random));
+        double eps = 1e-4;
+        for (int i = 1; i < x.length - 1; i++) {
+            double left = (spline.value(x[i]) - spline.value(x[i] - eps)) / eps;
+            double right = (spline.value(x[i] + eps) - spline.value(x[i])) / eps;
+            assertEquals(left, right, 1e-2 * (1 + Math.abs(left)));
+
+            double secondLeft = (spline.value(x[i]) - 2 * spline.value(x[i] - eps) + spline.value(x[i] - 2 * eps)) / (eps * eps);
+            double secondRight = (spline.value(x[i] + 2 * eps) - 2 * spline.value(x[i] + eps) + spline.value(x[i])) / (eps * eps);
+            assertEquals(secondLeft, secondRight, 1e-2 * (1 + Math.abs(secondLeft)));
+        }
+    }
+
+    @Test
+    public void evaluatorAgreesWithBinarySearchInAnyOrder() {
+        Random random = new Random(4);
+        double[] x = unevenKnots(100, random);
+        CubicSpline spline = CubicSpline.natural(x, random(100, random));
+        CubicSpline.Evaluator evaluator = spline.evaluator();
+        double span = x[x.length - 1] - x[0];
+        for (int i = 0; i < 2000; i++) {
+            // Random order (backward steps re-search the cursor), also outside the knots
+            double at = x[0] - 1.0 + random.nextDouble() * (span + 2.0);
+            assertEquals(spline.value(at), evaluator.value(at), 0.0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsortedKnotsAreRejected() {
+        CubicSpline.natural(new double[] { 0, 2, 1 }, new double[] { 0, 0, 0 });
+    }
+
+    @Test
+    public void smoothingWithZeroLambdaIsInterpolation() {
+        Random random = new Random(5);
+        for (int count : new int[] { 2, 3, 4, 5, 300 }) {
+            double[] x = unevenKnots(count, random);
+            double[] y = random(count, random);
+            CubicSpline natural = CubicSpline.natural(x, y);
+            CubicSpline smoothing = CubicSpline.smoothing(x, y, 0.0);
+            double span = x[count - 1] - x[0];
+            for (int i = 0; i <= 1000; i++) {
+                double at = x[0] - 0.5 + i * (span + 1.0) / 1000;
+                assertEquals(natural.value(at), smoothing.value(at), 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void smoothingLeavesLinearDataUnchanged() {
+        Random random = new Random(6);
+        double[] x = unevenKnots(200, random);
+        double[] y = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            y[i] = -1.0 + 0.25 * x[i];
+        }
+        // A line has no curvature to penalise, whatever lambda is
+        for (double lambda : new double[] { 0.1, 10.0, 1e6 }) {
+            CubicSpline spline = CubicSpline.smoothing(x, y, lambda);
+            for (int i = 0; i < x.length; i++) {
+                assertEquals(y[i], spline.value(x[i]), 1e-8);
+            }
+        }
+    }
+
+    @Test
+    public void largeLambdaApproachesTheLeastSquaresLine() {
+        Random random = new Random(7);
+        int n = 100;
+        double[] x = new double[n];
+        double[] y = random(n, random);
+        double meanX = 0, meanY = 0;
+        for (int i = 0; i < n; i++) {
+            x[i] = i;
+            meanX += x[i] / n;
+            meanY += y[i] / n;
+        }
+        double sxy = 0, sxx = 0;
+        for (int i = 0; i < n; i++) {
+            sxy += (x[i] - meanX) * (y[i] - meanY);
+            sxx += (x[i] - meanX) * (x[i] - meanX);
+        }
+        double slope = sxy / sxx;
+
+        CubicSpline spline = CubicSpline.smoothing(x, y, 1e12);
+        for (int i = 0; i < n; i++) {
+            assertEquals(meanY + slope * (x[i] - meanX), spline.value(x[i]), 1e-4);
+        }
+    }
+
+    @Test
+    public void pentadiagonalSolverMatchesDenseElimination() {
+        Random random = new Random(8);
+        int n = 40;
+        double[] d1 = random(n - 1, random);
+        double[] d2 = random(n - 2, random);
+        double[] d0 = new double[n];
+        for (int i = 0; i < n; i++) {
+            // Diagonally dominant, hence positive definite
+            d0[i] = 5.0 + random.nextDouble();
+        }
+        double[] r = random(n, random);
+
+        double[][] a = new double[n][n + 1];
+        for (int i = 0; i < n; i++) {
+            a[i][i] = d0[i];
+            if (i + 1 < n) { a[i][i + 1] = d1[i]; a[i + 1][i] = d1[i]; }
+            if (i + 2 < n) { a[i][i + 2] = d2[i]; a[i + 2][i] = d2[i]; }
+            a[i][n] = r[i];
+        }
+        for (int col = 0; col < n; col++) {
+            for (int row = col + 1; row < n; row++) {
+                double factor = a[row][col] / a[col][col];
+                for (int k = col; k <= n; k++) {
+                    a[row][k] -= factor * a[col][k];
+                }
+            }
+        }
+        double[] expected = new double[n];
+        for (int row = n - 1; row >= 0; row--) {
+            double sum = a[row][n];
+            for (int k = row + 1; k < n; k++) {
+                sum -= a[row][k] * expected[k];
+            }
+            expected[row] = sum / a[row][row];
+        }
+
+        double[] solution = CubicSpline.solvePentadiagonal(d0, d1, d2, r);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected[i], solution[i], 1e-12);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeLambdaIsRejected() {
+        new SmoothingSplineFilter(-1.0);
+    }
+}
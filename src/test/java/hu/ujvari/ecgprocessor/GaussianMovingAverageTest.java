@@ -0,0 +1,65 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.random;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class GaussianMovingAverageTest {
+
+    // Direct sum over the sampled kernel with the index clamped to the input
+    private static double[] reference(double[] input, int window) {
+        double sigma = window / 6.0;
+        int half = window / 2;
+        double[] weights = new double[window];
+        double sum = 0.0;
+        for (int j = 0; j < window; j++) {
+            double x = j - half;
+            weights[j] = Math.exp(-0.5 * x * x / (sigma * sigma));
+            sum += weights[j];
+        }
+        double[] output = new double[input.length];
+        for (int i = 0; i < input.length; i++) {
+            for (int j = 0; j < window; j++) {
+                int k = Math.max(0, Math.min(input.length - 1, i + j - half));
+                output[i] += weights[j] / sum * input[k];
+            }
+        }
+        return output;
+    }
+
+    @Test
+    public void samplesBeyondTheEndsRepeatTheEdgeSample() {
+        // Short windows run the direct loop, the wide one the FFT path; lengths shorter than the window too
+        for (int window : new int[] { 3, 31, 301 }) {
+            for (int n : new int[] { 1, 2, 50, 1000 }) {
+                double[] input = random(n, window + n);
+                double[] expected = reference(input, window);
+                double[] output = new GaussianMovingAverage(window).filter(input);
+                assertEquals(n, output.length);
+                for (int i = 0; i < n; i++) {
+                    assertEquals("window " + window + " n=" + n + " at " + i, expected[i], output[i], 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void constantSignalIsUnchangedUpToTheEdges() {
+        double[] constant = new double[800];
+        Arrays.fill(constant, 7.5);
+        for (int window : new int[] { 5, 101, 501 }) {
+            for (double value : new GaussianMovingAverage(window).filter(constant)) {
+                assertEquals(7.5, value, 1e-9);
+            }
+        }
+        assertEquals(0, new GaussianMovingAverage(5).filter(new double[0]).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void evenWindowIsRejected() {
+        new GaussianMovingAverage(10);
+    }
+}
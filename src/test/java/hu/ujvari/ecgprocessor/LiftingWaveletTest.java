@@ -0,0 +1,80 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.random;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import hu.ujvari.ecgprocessor.LiftingWavelet.Family;
+
+public class LiftingWaveletTest {
+
+    @Test
+    public void inverseReconstructsEveryFamilyAndLength() {
+        int[] lengths = { 2, 3, 5, 7, 17, 64, 100, 1001, 4099 };
+        for (Family family : Family.values()) {
+            LiftingWavelet wavelet = LiftingWavelet.of(family);
+            for (int n : lengths) {
+                double[] input = random(n, n);
+                for (int levels = 1; levels <= LiftingWavelet.maxLevels(n) + 1; levels++) {
+                    // Spare capacity behind the signal must stay untouched
+                    double[] data = new double[n + 3];
+                    System.arraycopy(input, 0, data, 0, n);
+                    int done = wavelet.forward(data, n, levels);
+                    assertEquals(Math.min(levels, LiftingWavelet.maxLevels(n)), done);
+                    wavelet.inverse(data, n, done);
+                    for (int i = 0; i < n; i++) {
+                        assertEquals(family + " n=" + n + " levels=" + levels, input[i], data[i], 1e-10);
+                    }
+                    for (int i = n; i < data.length; i++) {
+                        assertEquals(0.0, data[i], 0.0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void detailsVanishOnPolynomialsOfLowDegree() {
+        // Vanishing moments: HAAR 1, DB4 2, SYM4 4
+        int[] moments = { 1, 2, 4 };
+        Family[] families = { Family.HAAR, Family.DB4, Family.SYM4 };
+        int n = 257;
+        for (int f = 0; f < families.length; f++) {
+            double[] data = new double[n];
+            for (int i = 0; i < n; i++) {
+                double x = i / 100.0;
+                data[i] = moments[f] == 1 ? 3.0 : moments[f] == 2 ? 3.0 - 2.0 * x : 3.0 - 2.0 * x + x * x * x;
+            }
+            LiftingWavelet.of(families[f]).forward(data, n, 1);
+
+            // First-level details sit at the odd positions; the mirrored edges are not polynomial
+            int margin = families[f].getLowpass().length;
+            for (int i = margin | 1; i < n - margin; i += 2) {
+                assertEquals(families[f] + " at " + i, 0.0, data[i], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void haarKeepsTheEnergyOfPowerOfTwoLengths() {
+        double[] data = random(1024, 1);
+        double before = 0;
+        for (double value : data) before += value * value;
+        LiftingWavelet.of(Family.HAAR).forward(data, data.length, 10);
+        double after = 0;
+        for (double value : data) after += value * value;
+        assertEquals(before, after, 1e-9 * before);
+    }
+
+    @Test
+    public void levelsFitTheLength() {
+        assertEquals(0, LiftingWavelet.maxLevels(1));
+        assertEquals(1, LiftingWavelet.maxLevels(2));
+        assertEquals(2, LiftingWavelet.maxLevels(3));
+        assertEquals(2, LiftingWavelet.maxLevels(4));
+        assertEquals(3, LiftingWavelet.maxLevels(5));
+        assertEquals(10, LiftingWavelet.maxLevels(1024));
+        assertEquals(11, LiftingWavelet.maxLevels(1025));
+    }
+}
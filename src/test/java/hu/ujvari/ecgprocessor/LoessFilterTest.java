@@ -0,0 +1,152 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.assertClose;
+import static hu.ujvari.TestSignals.random;
+import static hu.ujvari.TestSignals.rmse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LoessFilterTest {
+
+    private static double tricube(double dist, double scale) {
+        if (dist == 0) {
+            return 1.0;
+        }
+        double d = dist / scale;
+        if (d > 1) {
+            return 0.0;
+        }
+        double t = 1 - d * d * d;
+        return t * t * t;
+    }
+
+    // Weighted least-squares line through the (truncated) window of every point, evaluated at the point
+    private static double[] weightedLinearFit(double[] input, int windowSize, double bandwidth) {
+        int n = input.length;
+        int half = windowSize / 2;
+        double[] output = new double[n];
+        for (int i = 0; i < n; i++) {
+            int left = Math.min(i, half);
+            int right = Math.min(n - 1 - i, half);
+            double scale = Math.max(left, right) * bandwidth;
+            double sw = 0, sx = 0, sy = 0;
+            for (int u = -left; u <= right; u++) {
+                double w = tricube(Math.abs(u), scale);
+                sw += w;
+                sx += w * u;
+                sy += w * input[i + u];
+            }
+            double mx = sx / sw;
+            double my = sy / sw;
+            double sxx = 0, sxy = 0;
+            for (int u = -left; u <= right; u++) {
+                double w = tricube(Math.abs(u), scale);
+                sxx += w * (u - mx) * (u - mx);
+                sxy += w * (u - mx) * (input[i + u] - my);
+            }
+            output[i] = sxx > 0 ? my - sxy / sxx * mx : my;
+        }
+        return output;
+    }
+
+    @Test
+    public void linearFitMatchesTheDirectDefinition() {
+        int[] windows = { 3, 10, 21, 101 };
+        int[] lengths = { 1, 2, 15, 60, 1000 };
+        for (int window : windows) {
+            for (int n : lengths) {
+                double[] input = random(n, 17L * window + n);
+                double[] expected = weightedLinearFit(input, window, 0.8);
+                assertClose(expected, new LoessFilter(window, 1, 0.8).filter(input), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void linearSignalIsReproduced() {
+        double[] line = new double[500];
+        for (int i = 0; i < line.length; i++) {
+            line[i] = 3.0 - 0.02 * i;
+        }
+        // Interior and truncated edge windows alike
+        assertClose(line, new LoessFilter(51, 1, 0.5).filter(line), 1e-10);
+        assertClose(line, new LoessFilter(51, 1, 1.0).filter(line), 1e-10);
+    }
+
+    @Test
+    public void polynomialsUpToTheDegreeAreReproduced() {
+        for (int degree = 0; degree <= 3; degree++) {
+            // Coordinates scaled to [0, 2] keep the cubic term comparable to the others
+            for (int n : new int[] { 7, 40, 1000 }) {
+                double[] polynomial = new double[n];
+                for (int i = 0; i < n; i++) {
+                    double x = 2.0 * i / n;
+                    double value = 0;
+                    double power = 1;
+                    for (int k = 0; k <= degree; k++) {
+                        value += (k + 1) * (k % 2 == 0 ? 1 : -1) * power;
+                        power *= x;
+                    }
+                    polynomial[i] = value;
+                }
+                for (int window : new int[] { 9, 31 }) {
+                    for (double bandwidth : new double[] { 0.6, 1.0 }) {
+                        double[] filtered = new LoessFilter(window, degree, bandwidth).filter(polynomial);
+                        assertClose(polynomial, filtered, 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void higherDegreeFollowsCurvatureBetter() {
+        double[] parabola = new double[300];
+        for (int i = 0; i < parabola.length; i++) {
+            double x = (i - 150) / 50.0;
+            parabola[i] = x * x;
+        }
+        double[] linear = new LoessFilter(41, 1, 1.0).filter(parabola);
+        double[] quadratic = new LoessFilter(41, 2, 1.0).filter(parabola);
+        // A local line overestimates the minimum of a parabola, a local parabola does not
+        assertEquals(0.0, quadratic[150], 1e-12);
+        assertTrue(linear[150] > 0.01);
+    }
+
+    @Test
+    public void robustIterationsRejectOutliers() {
+        // Several parallel chunks worth of a noisy slow sine with sparse large spikes
+        int n = 10000;
+        Random random = new Random(5);
+        double[] clean = new double[n];
+        double[] spiky = new double[n];
+        for (int i = 0; i < n; i++) {
+            clean[i] = Math.sin(2 * Math.PI * i / 400.0);
+            spiky[i] = clean[i] + 0.1 * random.nextGaussian() + (i % 97 == 13 ? 20.0 : 0.0);
+        }
+
+        double[] plain = new LoessFilter(31, 2, 1.0).filter(spiky);
+        double[] robust = new LoessFilter(31, 2, 1.0, 4).filter(spiky);
+
+        assertTrue(rmse(plain, clean) > 0.5);
+        assertTrue(rmse(robust, clean) < 0.05);
+        for (int i = 0; i < n; i++) {
+            assertEquals("index " + i, clean[i], robust[i], 0.3);
+        }
+    }
+
+    @Test
+    public void robustFitOfAnExactPolynomialIsThePlainFit() {
+        double[] cubic = new double[5000];
+        for (int i = 0; i < cubic.length; i++) {
+            double x = i / 2500.0 - 1;
+            cubic[i] = x * x * x - x;
+        }
+        double[] plain = new LoessFilter(25, 3, 1.0).filter(cubic);
+        assertClose(plain, new LoessFilter(25, 3, 1.0, 3).filter(cubic), 1e-9);
+    }
+}
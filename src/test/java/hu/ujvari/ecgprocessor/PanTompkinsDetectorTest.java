@@ -0,0 +1,227 @@
+package hu.ujvari.ecgprocessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import hu.ujvari.ecgmodel.Signal;
+import hu.ujvari.ecgreader.XmlEcgReader;
+
+public class PanTompkinsDetectorTest {
+
+    // R peaks of the aVL rhythm lead of the bundled ecg3.xml (1000 Hz, 10 s)
+    private static final int[] EXPECTED_PEAKS = {
+        61, 640, 1251, 1838, 2425, 3050, 3622, 4217, 4823, 5418, 6019, 6603, 7214, 7802, 8401, 9009, 9601
+    };
+
+    // R waves of the synthetic tallTWaves trace
+    private static final int FIRST_R = 300;
+    private static final int RR = 800;
+
+    private static Signal lead;
+    private static Signal leadII;
+    private static Signal leadAVR;
+
+    @BeforeClass
+    public static void loadLeads() {
+        XmlEcgReader reader = new XmlEcgReader();
+        reader.loadFromResource("xml/ecg3.xml");
+        reader.extractSignals();
+        lead = rhythmLead(reader, "MDC_ECG_LEAD_AVL");
+        leadII = rhythmLead(reader, "MDC_ECG_LEAD_II");
+        leadAVR = rhythmLead(reader, "MDC_ECG_LEAD_AVR");
+    }
+
+    // The rhythm leads come first, the median beats of the same leads follow
+    static Signal rhythmLead(XmlEcgReader reader, String name) {
+        for (Signal signal : reader.getSignals()) {
+            if (name.equals(signal.getLeadName())) {
+                assertEquals(10000, signal.getSamples().length);
+                return signal;
+            }
+        }
+        fail("Missing lead " + name);
+        return null;
+    }
+
+    @Test
+    public void findsTheBeatsOfTheBundledRecording() {
+        assertEquals(1000.0, SignalResampler.getSampleRate(lead), 1e-9);
+        int[] peaks = new PanTompkinsDetector(1000).detect(lead.getSamples());
+        assertArrayEquals(EXPECTED_PEAKS, peaks);
+    }
+
+    @Test
+    public void peaksAreLocalMaximaOfTheRawLead() {
+        double[] values = lead.getSamples();
+        for (int peak : new PanTompkinsDetector(1000).detect(values)) {
+            // Nothing higher within 50 ms on either side
+            for (int i = Math.max(0, peak - 50); i <= Math.min(values.length - 1, peak + 50); i++) {
+                assertTrue("peak " + peak + " < sample " + i, values[i] <= values[peak]);
+            }
+        }
+    }
+
+    @Test
+    public void peaksRespectTheRefractoryPeriod() {
+        for (Signal signal : new Signal[] { lead, leadII }) {
+            int[] peaks = new PanTompkinsDetector(1000).detect(signal.getSamples());
+            for (int i = 1; i < peaks.length; i++) {
+                assertTrue(signal.getLeadName() + " at " + peaks[i], peaks[i] - peaks[i - 1] >= 200);
+            }
+        }
+    }
+
+    @Test
+    public void agreesWithTheThresholdDetectorOnAClearLead() {
+        // Lead II has tall R waves and low T waves, where a fixed threshold at half the maximum suffices
+        double[] values = leadII.getSamples();
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            max = Math.max(max, value);
+        }
+        List<Integer> simple = ECGSegmenter.detectRPeaks(leadII.getValues(), 0.5 * max);
+        int[] peaks = new PanTompkinsDetector(1000).detect(values);
+        assertEquals(simple.size(), peaks.length);
+        for (int i = 0; i < peaks.length; i++) {
+            assertEquals(simple.get(i), peaks[i], 15.0);
+        }
+    }
+
+    @Test
+    public void negativeQrsIsLocatedOnTheQrs() {
+        // aVR points away from the heart axis: its P and T waves are higher than its (negative) QRS
+        int[] peaks = new PanTompkinsDetector(1000).detect(leadAVR.getSamples());
+        int[] reference = new PanTompkinsDetector(1000).detect(leadII.getSamples());
+        assertEquals(reference.length, peaks.length);
+        for (int i = 0; i < peaks.length; i++) {
+            assertEquals("beat " + i, reference[i], peaks[i], 20.0);
+        }
+    }
+
+    @Test
+    public void invertedLeadGivesTheSamePeaks() {
+        double[] inverted = lead.getSamples();
+        for (int i = 0; i < inverted.length; i++) {
+            inverted[i] = -inverted[i];
+        }
+        assertArrayEquals(EXPECTED_PEAKS, new PanTompkinsDetector(1000).detect(inverted));
+    }
+
+    // Beats every 800 ms with T waves 1.5 times the R wave, 260 ms after it; one beat (T included) scaled down
+    private static double[] tallTWaves(int weakBeat, double weakAmplitude) {
+        double[] x = new double[12000];
+        for (int b = 0; b * RR + FIRST_R < x.length; b++) {
+            int r = b * RR + FIRST_R;
+            double amplitude = b == weakBeat ? weakAmplitude : 1.0;
+            for (int i = Math.max(0, r - 400); i < Math.min(x.length, r + 500); i++) {
+                double q = (i - r) / 12.0;
+                double t = (i - r - 260) / 70.0;
+                x[i] += amplitude * (Math.exp(-q * q) + 1.5 * Math.exp(-t * t));
+            }
+        }
+        Random random = new Random(4);
+        for (int i = 0; i < x.length; i++) {
+            x[i] += 0.01 * random.nextGaussian();
+        }
+        return x;
+    }
+
+    private static void assertOnTheBeats(int[] peaks, int beats) {
+        assertEquals(beats, peaks.length);
+        for (int i = 0; i < peaks.length; i++) {
+            assertEquals("beat " + i, FIRST_R + i * RR, peaks[i], 5.0);
+        }
+    }
+
+    @Test
+    public void tallTWavesAreNotReportedAsBeats() {
+        assertOnTheBeats(new PanTompkinsDetector(1000).detect(tallTWaves(-1, 1.0)), 15);
+    }
+
+    @Test
+    public void searchBackFindsTheWeakBeatRatherThanTheTWave() {
+        // The weak beat stays under the threshold; the T wave before it is higher but must not be taken
+        double[] signal = tallTWaves(8, 0.5);
+        assertOnTheBeats(new PanTompkinsDetector(1000).detect(signal), 15);
+
+        PanTompkinsDetector.Online online = new PanTompkinsDetector(1000).online();
+        long weakBeat = FIRST_R + 8 * RR;
+        long reportedAt = -1;
+        for (int i = 0; i < signal.length; i++) {
+            long peak = online.offer(signal[i]);
+            if (Math.abs(peak - weakBeat) <= 5) {
+                reportedAt = i;
+            }
+        }
+        // Only reported once 166% of the RR interval passed without a beat
+        assertTrue("reported at " + reportedAt, reportedAt > weakBeat - RR + 1.66 * RR);
+    }
+
+    @Test
+    public void findsTheSameBeatsAtLowerSampleRates() {
+        for (double rate : new double[] { 250, 360, 500 }) {
+            double[] resampled = new SignalResampler(rate, SignalResampler.Method.POLYPHASE_FIR)
+                .resample(lead.getSamples(), 1000);
+            int[] peaks = new PanTompkinsDetector(rate).detect(resampled);
+            assertEquals("rate " + rate, EXPECTED_PEAKS.length, peaks.length);
+            for (int i = 0; i < peaks.length; i++) {
+                // Within 10 ms of the 1000 Hz detection
+                assertEquals("rate " + rate, EXPECTED_PEAKS[i], peaks[i] * 1000.0 / rate, 10.0);
+            }
+        }
+    }
+
+    @Test
+    public void onlineDetectorReportsBeatsAfterLearning() {
+        PanTompkinsDetector.Online online = new PanTompkinsDetector(1000).online();
+        List<Long> peaks = new ArrayList<>();
+        for (double sample : lead.getSamples()) {
+            long peak = online.offer(sample);
+            if (peak >= 0) {
+                peaks.add(peak);
+            }
+        }
+        // The first two seconds only train the thresholds; every later beat is found in order
+        List<Long> expected = new ArrayList<>();
+        for (int peak : EXPECTED_PEAKS) {
+            if (peak >= 2000) {
+                expected.add((long) peak);
+            }
+        }
+        assertEquals(expected, peaks);
+    }
+
+    @Test
+    public void segmenterUsesTheDetector() {
+        List<Integer> peaks = ECGSegmenter.detectRPeaks(lead.getValues(), new PanTompkinsDetector(1000));
+        assertEquals(EXPECTED_PEAKS.length, peaks.size());
+        for (int i = 0; i < EXPECTED_PEAKS.length; i++) {
+            assertEquals(EXPECTED_PEAKS[i], (int) peaks.get(i));
+        }
+    }
+
+    @Test
+    public void flatSignalHasNoBeats() {
+        assertEquals(0, new PanTompkinsDetector(500).detect(new double[5000]).length);
+        assertEquals(0, new PanTompkinsDetector().detect(new double[0]).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLowSampleRateIsRejected() {
+        new PanTompkinsDetector(50);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void thresholdFractionOutsideTheRangeIsRejected() {
+        new PanTompkinsDetector(1000, 1.0);
+    }
+}
@@ -0,0 +1,64 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.addNoise;
+import static hu.ujvari.TestSignals.beats;
+import static hu.ujvari.TestSignals.maxError;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class RecursiveGaussianFilterTest {
+
+    @Test
+    public void interiorStaysCloseToTheExactKernel() {
+        double[] input = addNoise(beats(20000), 12);
+        for (int window : new int[] { 7, 31, 101, 301, 1501 }) {
+            double[] exact = new GaussianMovingAverage(window).filter(input);
+            double[] recursive = RecursiveGaussianFilter.forWindow(window).filter(input);
+            // Away from the edges, within 3% of the QRS amplitude
+            double error = maxError(exact, recursive, window);
+            assertTrue("window " + window + ": " + error, error < 0.3);
+        }
+    }
+
+    @Test
+    public void edgesFollowTheExactKernel() {
+        // Offset so that zero padding would show at both ends
+        double[] input = addNoise(beats(20000), 12);
+        for (int i = 0; i < input.length; i++) {
+            input[i] += 5.0;
+        }
+        for (int window : new int[] { 7, 31, 101, 301, 1501 }) {
+            double[] exact = new GaussianMovingAverage(window).filter(input);
+            double[] recursive = RecursiveGaussianFilter.forWindow(window).filter(input);
+            double error = maxError(exact, recursive, 0);
+            assertTrue("window " + window + ": " + error, error < 0.3);
+        }
+    }
+
+    @Test
+    public void constantSignalIsUnchanged() {
+        double[] constant = new double[500];
+        Arrays.fill(constant, -3.25);
+        for (double sigma : new double[] { 0.7, 4.0, 60.0 }) {
+            double[] output = new RecursiveGaussianFilter(sigma).filter(constant);
+            for (double value : output) {
+                assertEquals(-3.25, value, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void sigmaFollowsTheWindow() {
+        assertEquals(10.0, RecursiveGaussianFilter.forWindow(60).getSigma(), 0.0);
+        assertEquals(0, new RecursiveGaussianFilter(2.0).filter(new double[0]).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveSigmaIsRejected() {
+        new RecursiveGaussianFilter(0.0);
+    }
+}
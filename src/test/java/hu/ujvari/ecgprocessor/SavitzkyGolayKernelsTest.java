@@ -0,0 +1,163 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SavitzkyGolayKernelsTest {
+
+    // Least-squares polynomial through (-half .. half, window) by the normal equations,
+    // returning its derivative-th derivative at offset
+    static double directFit(double[] window, int polyOrder, int derivative, double offset) {
+        int half = window.length / 2;
+        int m = polyOrder + 1;
+        double[][] a = new double[m][m + 1];
+        for (int i = 0; i < window.length; i++) {
+            double t = i - half;
+            for (int r = 0; r < m; r++) {
+                for (int c = 0; c < m; c++) {
+                    a[r][c] += Math.pow(t, r + c);
+                }
+                a[r][m] += Math.pow(t, r) * window[i];
+            }
+        }
+        for (int col = 0; col < m; col++) {
+            for (int row = col + 1; row < m; row++) {
+                double factor = a[row][col] / a[col][col];
+                for (int k = col; k <= m; k++) {
+                    a[row][k] -= factor * a[col][k];
+                }
+            }
+        }
+        double[] coefficients = new double[m];
+        for (int row = m - 1; row >= 0; row--) {
+            double sum = a[row][m];
+            for (int k = row + 1; k < m; k++) {
+                sum -= a[row][k] * coefficients[k];
+            }
+            coefficients[row] = sum / a[row][row];
+        }
+
+        double value = 0.0;
+        for (int k = derivative; k < m; k++) {
+            double factor = 1.0;
+            for (int j = 0; j < derivative; j++) {
+                factor *= k - j;
+            }
+            value += coefficients[k] * factor * Math.pow(offset, k - derivative);
+        }
+        return value;
+    }
+
+    static double dot(double[] weights, double[] window) {
+        double sum = 0.0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i] * window[i];
+        }
+        return sum;
+    }
+
+    @Test
+    public void centreKernelIsTheLeastSquaresFit() {
+        Random random = new Random(10);
+        for (int windowSize : new int[] { 5, 7, 11, 25 }) {
+            for (int polyOrder = 1; polyOrder <= 4; polyOrder++) {
+                for (int derivative = 0; derivative <= Math.min(2, polyOrder); derivative++) {
+                    double[] weights = SavitzkyGolayKernels.get(windowSize, polyOrder, derivative).centre();
+                    assertEquals(windowSize, weights.length);
+                    for (int trial = 0; trial < 5; trial++) {
+                        double[] window = random(windowSize, random);
+                        assertEquals("w=" + windowSize + " order=" + polyOrder + " d=" + derivative,
+                            directFit(window, polyOrder, derivative, 0.0), dot(weights, window), 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void interiorSamplesAreTheCentreFit() {
+        double[] input = random(200, 3);
+        double[] output = new SavitzkyGolayFilter(9, 3).filter(input);
+        for (int i = 4; i < input.length - 4; i++) {
+            double[] window = new double[9];
+            System.arraycopy(input, i - 4, window, 0, 9);
+            assertEquals("index " + i, directFit(window, 3, 0, 0.0), output[i], 1e-10);
+        }
+    }
+
+    @Test
+    public void offCentreKernelsAreTheLeastSquaresFit() {
+        Random random = new Random(11);
+        for (int windowSize : new int[] { 5, 9, 21 }) {
+            int half = windowSize / 2;
+            for (int polyOrder = 1; polyOrder <= 4; polyOrder++) {
+                for (int derivative = 0; derivative <= Math.min(2, polyOrder); derivative++) {
+                    SavitzkyGolayKernels kernels = SavitzkyGolayKernels.get(windowSize, polyOrder, derivative);
+                    assertSame(kernels.centre(), kernels.position(half));
+                    for (int p = 0; p < windowSize; p++) {
+                        double[] window = random(windowSize, random);
+                        assertEquals("w=" + windowSize + " order=" + polyOrder + " d=" + derivative + " p=" + p,
+                            directFit(window, polyOrder, derivative, p - half), dot(kernels.position(p), window), 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    // derivative-th derivative (per sample) of sum c_k ((i - centre) / scale)^k
+    private static double polynomial(double[] c, int i, double centre, double scale, int derivative) {
+        double u = (i - centre) / scale;
+        double value = 0.0;
+        for (int k = derivative; k < c.length; k++) {
+            double factor = 1.0;
+            for (int j = 0; j < derivative; j++) {
+                factor *= k - j;
+            }
+            value += c[k] * factor * Math.pow(u, k - derivative);
+        }
+        return value / Math.pow(scale, derivative);
+    }
+
+    @Test
+    public void fittedEdgesReproducePolynomialsUpToTheOrder() {
+        double[] c = { 1.5, -2.0, 0.7, 0.3, -0.2 };
+        for (int windowSize : new int[] { 7, 15 }) {
+            for (int polyOrder = 2; polyOrder <= 4; polyOrder++) {
+                double[] coefficients = Arrays.copyOf(c, polyOrder + 1);
+                for (int n : new int[] { windowSize, windowSize + 1, 2 * windowSize + 1, 300 }) {
+                    double scale = n / 2.0;
+                    double[] input = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        input[i] = polynomial(coefficients, i, scale, scale, 0);
+                    }
+                    for (int derivative = 0; derivative <= 2; derivative++) {
+                        double[] output = new SavitzkyGolayFilter(windowSize, polyOrder, derivative,
+                            SavitzkyGolayFilter.BoundaryMode.POLYNOMIAL_FIT).filter(input);
+                        for (int i = 0; i < n; i++) {
+                            assertEquals("w=" + windowSize + " order=" + polyOrder + " n=" + n + " d=" + derivative + " i=" + i,
+                                polynomial(coefficients, i, scale, scale, derivative), output[i], 1e-9);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameParametersShareOneInstance() {
+        SavitzkyGolayKernels kernels = SavitzkyGolayKernels.get(11, 3, 0);
+        assertSame(kernels, SavitzkyGolayKernels.get(11, 3, 0));
+        assertSame(kernels.centre(), SavitzkyGolayKernels.get(11, 3, 0).centre());
+
+        assertNotSame(kernels, SavitzkyGolayKernels.get(11, 3, 1));
+        assertNotSame(kernels, SavitzkyGolayKernels.get(11, 2, 0));
+        assertNotSame(kernels, SavitzkyGolayKernels.get(13, 3, 0));
+    }
+}
@@ -0,0 +1,108 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.maxError;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import hu.ujvari.ecgmodel.SampleStorage;
+import hu.ujvari.ecgmodel.Signal;
+import hu.ujvari.ecgprocessor.SignalResampler.Method;
+
+public class SignalResamplerTest {
+
+    // Band-limited test signal (5, 23 and 41 Hz), well below the Nyquist rate of every tested rate
+    private static double[] tones(int n, double rate) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            double t = i / rate;
+            x[i] = Math.sin(2 * Math.PI * 5 * t) + 0.5 * Math.sin(2 * Math.PI * 23 * t + 1)
+                 + 0.2 * Math.cos(2 * Math.PI * 41 * t);
+        }
+        return x;
+    }
+
+    @Test
+    public void roundTripRestoresTheSignal() {
+        double[] input = tones(10000, 1000);
+        double[] rates = { 250, 360, 500, 2500, 4000 };
+        for (Method method : Method.values()) {
+            double tolerance = method == Method.POLYPHASE_FIR ? 1e-4 : 2e-3;
+            for (double rate : rates) {
+                double[] there = new SignalResampler(rate, method).resample(input, 1000);
+                double[] back = new SignalResampler(1000, method).resample(there, rate);
+
+                assertTrue(method + " " + rate, maxError(tones(there.length, rate), there, 100) < tolerance);
+                assertTrue(method + " " + rate, Math.abs(back.length - input.length) <= 3);
+                double error = maxError(input, back, 100);
+                assertTrue(method + " " + rate + ": " + error, error < tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void splineUpsamplingKeepsTheOriginalSamples() {
+        double[] input = tones(2000, 500);
+        double[] output = new SignalResampler(2000, Method.CUBIC_SPLINE).resample(input, 500);
+        assertEquals(4 * (input.length - 1) + 1, output.length);
+        for (int i = 0; i < input.length; i++) {
+            assertEquals(input[i], output[4 * i], 1e-12);
+        }
+    }
+
+    @Test
+    public void splineBlocksMatchOneSplineOverTheWholeSignal() {
+        // Longer than one block, so the seams between block fits are crossed
+        int n = 150000;
+        double[] input = new double[n];
+        double[] x = new double[n];
+        Random random = new Random(9);
+        for (int i = 0; i < n; i++) {
+            input[i] = random.nextGaussian();
+            x[i] = i;
+        }
+        double[] output = new SignalResampler(1500, Method.CUBIC_SPLINE).resample(input, 1000);
+        double[] expected = CubicSpline.natural(x, input).sample(0.0, 1000.0 / 1500.0, output.length);
+        assertEquals(0.0, maxError(expected, output, 0), 1e-12);
+    }
+
+    @Test
+    public void firDownsamplingRemovesTonesAboveTheNewNyquistRate() {
+        double[] tone = new double[10000];
+        for (int i = 0; i < tone.length; i++) {
+            tone[i] = Math.sin(2 * Math.PI * 400 * i / 1000.0);
+        }
+        double[] output = new SignalResampler(250, Method.POLYPHASE_FIR).resample(tone, 1000);
+        assertEquals(0.0, maxError(new double[output.length], output, 50), 1e-3);
+    }
+
+    @Test
+    public void rateRatioIsReduced() {
+        assertArrayEquals(new int[] { 1, 2 }, SignalResampler.ratio(500, 1000));
+        assertArrayEquals(new int[] { 36, 25 }, SignalResampler.ratio(360, 250));
+        assertArrayEquals(new int[] { 1000, 1001 }, SignalResampler.ratio(1000, 1001));
+        assertArrayEquals(new int[] { 1000, 999 }, SignalResampler.ratio(500, 499.5));
+
+        // Irrational ratio: nearest fraction with terms up to 10000
+        int[] ratio = SignalResampler.ratio(Math.PI * 100, 100);
+        assertTrue(ratio[0] <= 10000 && ratio[1] <= 10000);
+        assertEquals(Math.PI, (double) ratio[0] / ratio[1], 1e-6);
+    }
+
+    @Test
+    public void signalKeepsItsIncrementUnit() {
+        Signal signal = new Signal("II", SampleStorage.of(tones(1000, 1000)), 0.0, "uV", 1.0, "uV", 1.0, "ms");
+        assertEquals(1000.0, SignalResampler.getSampleRate(signal), 0.0);
+
+        Signal resampled = new SignalResampler(500, Method.POLYPHASE_FIR).resample(signal);
+        assertEquals("II", resampled.getLeadName());
+        assertEquals("ms", resampled.getSampleIncrementUnit());
+        assertEquals(2.0, resampled.getSampleIncrement(), 1e-12);
+        assertEquals(500, resampled.getSamples().length);
+        assertEquals(500.0, SignalResampler.getSampleRate(resampled), 1e-9);
+    }
+}
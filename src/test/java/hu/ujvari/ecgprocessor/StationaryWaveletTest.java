@@ -0,0 +1,80 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import hu.ujvari.ecgprocessor.LiftingWavelet.Family;
+
+public class StationaryWaveletTest {
+
+    private static final StationaryWavelet.DetailOperator KEEP = (detail, length, from, to, level) -> { };
+    private static final StationaryWavelet.DetailOperator DROP =
+        (detail, length, from, to, level) -> Arrays.fill(detail, 0, length, 0.0);
+
+    @Test
+    public void untouchedDetailsReconstructTheInput() {
+        // Odd lengths, lengths shorter than the filter cascade and several parallel chunks
+        int[] lengths = { 2, 3, 5, 17, 101, 1001, 40001 };
+        for (Family family : Family.values()) {
+            StationaryWavelet wavelet = StationaryWavelet.of(family);
+            for (int n : lengths) {
+                double[] input = random(n, n);
+                for (int levels : new int[] { 1, 3, 6 }) {
+                    double[] output = wavelet.transform(input, levels, KEEP);
+                    assertEquals(n, output.length);
+                    for (int i = 0; i < n; i++) {
+                        assertEquals(family + " n=" + n + " levels=" + levels, input[i], output[i], 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void droppingTheDetailsKeepsAConstant() {
+        double[] constant = new double[999];
+        Arrays.fill(constant, 4.5);
+        for (Family family : Family.values()) {
+            double[] output = StationaryWavelet.of(family).transform(constant, 5, DROP);
+            for (double value : output) {
+                assertEquals(4.5, value, 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void denoisingIsShiftInvariant() {
+        // Unlike the decimated transform, shifting the input shifts the smoothed output
+        double[] input = random(2000, 3);
+        double[] shifted = Arrays.copyOfRange(input, 1, input.length);
+        for (Family family : Family.values()) {
+            StationaryWavelet wavelet = StationaryWavelet.of(family);
+            double[] output = wavelet.transform(input, 4, DROP);
+            double[] shiftedOutput = wavelet.transform(shifted, 4, DROP);
+            // Away from the reflected edges
+            for (int i = 200; i < shifted.length - 200; i++) {
+                assertEquals(family + " at " + i, output[i + 1], shiftedOutput[i], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void operatorSeesEveryLevel() {
+        boolean[] seen = new boolean[4];
+        StationaryWavelet.of(Family.DB4).transform(random(500, 4), 4, (detail, length, from, to, level) -> {
+            // The signal's coefficients sit in the middle of the padded band
+            assertEquals(500, to - from);
+            assertEquals(length - to, from);
+            assertTrue(from > 0);
+            seen[level] = true;
+        });
+        for (boolean level : seen) {
+            assertTrue(level);
+        }
+    }
+}
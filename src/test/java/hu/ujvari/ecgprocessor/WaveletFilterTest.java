@@ -0,0 +1,61 @@
+package hu.ujvari.ecgprocessor;
+
+import static hu.ujvari.TestSignals.addNoise;
+import static hu.ujvari.TestSignals.beats;
+import static hu.ujvari.TestSignals.rmse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WaveletFilterTest {
+
+    // The oscillation fills the coarse bands, whose own MAD would overestimate the noise
+    @Test
+    public void everyCombinationLowersTheError() {
+        for (int n : new int[] { 5000, 4099 }) {
+            double[] clean = beats(n);
+            double[] noisy = addNoise(clean, n);
+            double before = rmse(noisy, clean);
+            for (WaveletFilter.Transform transform : WaveletFilter.Transform.values()) {
+                for (LiftingWavelet.Family family : LiftingWavelet.Family.values()) {
+                    for (WaveletFilter.ThresholdRule rule : WaveletFilter.ThresholdRule.values()) {
+                        double[] filtered = new WaveletFilter(5, 3.0, family, transform, rule).filter(noisy);
+                        double after = rmse(filtered, clean);
+                        assertTrue(transform + " " + family + " " + rule + ": " + after + " >= " + before,
+                                   after < 0.6 * before);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void whiteNoiseHasTheSameSigmaInEveryBand() {
+        // The thresholds use the finest band's sigma for all levels
+        int n = 1 << 15;
+        double[] noise = addNoise(new double[n], 3);
+        for (LiftingWavelet.Family family : LiftingWavelet.Family.values()) {
+            double[] coefficients = noise.clone();
+            int levels = LiftingWavelet.of(family).forward(coefficients, n, 5);
+            for (int l = 0; l < levels; l++) {
+                int stride = 1 << l;
+                double sum = 0.0;
+                int count = 0;
+                for (int i = stride; i < n; i += 2 * stride) {
+                    sum += coefficients[i] * coefficients[i];
+                    count++;
+                }
+                assertEquals(family + " decimated level " + l, 1.0, Math.sqrt(sum / count), 0.05);
+            }
+
+            StationaryWavelet.of(family).transform(noise, 5, (detail, length, from, to, level) -> {
+                double sum = 0.0;
+                for (int i = from; i < to; i++) {
+                    sum += detail[i] * detail[i];
+                }
+                assertEquals(family + " stationary level " + level, 1.0, Math.sqrt(sum / (to - from)), 0.05);
+            });
+        }
+    }
+}
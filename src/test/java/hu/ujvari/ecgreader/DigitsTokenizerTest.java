@@ -0,0 +1,96 @@
+package hu.ujvari.ecgreader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DigitsTokenizerTest {
+
+    private static DigitsTokenizer tokenize(String text) {
+        DigitsTokenizer tokenizer = new DigitsTokenizer();
+        tokenizer.feed(text);
+        tokenizer.finish();
+        return tokenizer;
+    }
+
+    @Test
+    public void signedTokensAreDecoded() {
+        DigitsTokenizer tokenizer = tokenize("  12 -7\t+3\n0\r\n-0 007 ");
+        assertArrayEquals(new int[] { 12, -7, 3, 0, 0, 7 }, tokenizer.toIntArray());
+        assertEquals(6, tokenizer.getCount());
+        assertEquals(0, tokenizer.getMalformedCount());
+    }
+
+    @Test
+    public void malformedTokensAreSkippedAndCounted() {
+        // Letters, decimals, a lone sign, doubled and trailing signs
+        DigitsTokenizer tokenizer = tokenize("1 2a 3.5 - + 4 --5 5- x 6");
+        assertArrayEquals(new int[] { 1, 4, 6 }, tokenizer.toIntArray());
+        assertEquals(7, tokenizer.getMalformedCount());
+    }
+
+    @Test
+    public void valuesOutsideTheIntRangeAreMalformed() {
+        DigitsTokenizer tokenizer = tokenize("2147483647 -2147483648 2147483648 -2147483649 99999999999999999999");
+        assertArrayEquals(new int[] { Integer.MAX_VALUE, Integer.MIN_VALUE }, tokenizer.toIntArray());
+        assertEquals(3, tokenizer.getMalformedCount());
+    }
+
+    @Test
+    public void tokensMaySpanChunks() {
+        DigitsTokenizer tokenizer = new DigitsTokenizer();
+        tokenizer.feed("12");
+        tokenizer.feed("34 -");
+        tokenizer.feed("5");
+        tokenizer.feed(" 6");
+        tokenizer.feed("7a");
+        tokenizer.feed("8 ");
+        char[] buffer = "xx-90 1xx".toCharArray();
+        tokenizer.feed(buffer, 2, 5);
+        tokenizer.finish();
+        assertArrayEquals(new int[] { 1234, -5, -90, 1 }, tokenizer.toIntArray());
+        assertEquals(1, tokenizer.getMalformedCount());
+    }
+
+    @Test
+    public void anyChunkingGivesTheSameSamples() {
+        Random random = new Random(11);
+        int[] expected = new int[5000];
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = random.nextInt(20001) - 10000;
+            text.append(expected[i]).append(" \n\t\r".charAt(random.nextInt(4)));
+            if (random.nextInt(10) == 0) {
+                text.append("  ");
+            }
+        }
+        char[] chars = text.toString().toCharArray();
+
+        DigitsTokenizer tokenizer = new DigitsTokenizer();
+        for (int round = 0; round < 20; round++) {
+            tokenizer.reset();
+            int start = 0;
+            while (start < chars.length) {
+                int length = Math.min(chars.length - start, 1 + random.nextInt(7));
+                tokenizer.feed(chars, start, length);
+                start += length;
+            }
+            tokenizer.finish();
+            assertArrayEquals(expected, tokenizer.toIntArray());
+            assertEquals(0, tokenizer.getMalformedCount());
+        }
+    }
+
+    @Test
+    public void resetForgetsSamplesAndCounters() {
+        DigitsTokenizer tokenizer = tokenize("1 2 a");
+        tokenizer.reset();
+        tokenizer.feed("3");
+        tokenizer.finish();
+        assertArrayEquals(new int[] { 3 }, tokenizer.toIntArray());
+        assertEquals(0, tokenizer.getMalformedCount());
+    }
+}
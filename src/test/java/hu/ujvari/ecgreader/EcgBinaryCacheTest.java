@@ -0,0 +1,261 @@
+package hu.ujvari.ecgreader;
+
+import static hu.ujvari.ecgreader.XmlEcgReaderTest.assertSameLeads;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hu.ujvari.ecgmodel.SampleStorage;
+import hu.ujvari.ecgmodel.Signal;
+
+public class EcgBinaryCacheTest {
+
+    private static final Pattern DIGITS = Pattern.compile("<digits>([^<]*)</digits>");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // ISO-8859-1 keeps every byte, so an edit of one character keeps the file size
+    private static String readResource(String resourcePath) throws IOException {
+        try (InputStream is = EcgBinaryCacheTest.class.getClassLoader().getResourceAsStream(resourcePath)) {
+            assertNotNull(resourcePath, is);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[64 * 1024];
+            for (int read; (read = is.read(chunk)) > 0; ) {
+                out.write(chunk, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private Path writeXml(String name, String content) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    private static Path sidecar(Path xml) {
+        return Paths.get(xml + ".ecgbin");
+    }
+
+    private static List<Signal> parse(Path xml) {
+        XmlEcgReader reader = new XmlEcgReader();
+        reader.streamSignalsFromFile(xml.toString());
+        return reader.getSignals();
+    }
+
+    private static List<Signal> loadCached(Path xml) {
+        XmlEcgReader reader = new XmlEcgReader();
+        reader.loadCachedFile(xml.toString());
+        return reader.getSignals();
+    }
+
+    private static void assertSameSignals(String context, List<Signal> expected, List<Signal> actual) {
+        assertSameLeads(context, expected, actual);
+        for (int l = 0; l < expected.size(); l++) {
+            Signal e = expected.get(l);
+            Signal a = actual.get(l);
+            assertEquals(context + " " + e.getLeadName(), e.getSampleIncrement(), a.getSampleIncrement(), 0.0);
+            assertEquals(context + " " + e.getLeadName(), e.getSampleIncrementUnit(), a.getSampleIncrementUnit());
+        }
+    }
+
+    private static List<Signal> openWithHash(Path xml, boolean trustStamp) throws IOException {
+        return EcgBinaryCache.open(sidecar(xml), EcgBinaryCache.SourceStamp.of(xml), trustStamp,
+                                   () -> EcgBinaryCache.sha256(xml), null);
+    }
+
+    @Test
+    public void int16LeadsRoundTripThroughTheSidecar() throws Exception {
+        Path xml = writeXml("ecg1.xml", readResource("xml/ecg1.xml"));
+        List<Signal> expected = parse(xml);
+        assertFalse(expected.isEmpty());
+
+        assertSameSignals("first load", expected, loadCached(xml));
+        assertTrue(Files.isRegularFile(sidecar(xml)));
+        List<Signal> cached = openWithHash(xml, false);
+        assertNotNull(cached);
+        assertSameSignals("sidecar", expected, cached);
+        assertSameSignals("second load", expected, loadCached(xml));
+    }
+
+    @Test
+    public void int32LeadsRoundTripThroughTheSidecar() throws Exception {
+        // Every count of the first lead times 1000 is far outside the int16 range
+        String content = readResource("xml/ecg1.xml");
+        Matcher matcher = DIGITS.matcher(content);
+        assertTrue(matcher.find());
+        StringBuilder scaled = new StringBuilder();
+        for (String token : matcher.group(1).trim().split("\\s+")) {
+            scaled.append(Integer.parseInt(token) * 1000).append(' ');
+        }
+        content = content.substring(0, matcher.start(1)) + scaled + content.substring(matcher.end(1));
+        Path xml = writeXml("wide.xml", content);
+
+        List<Signal> expected = parse(xml);
+        double max = 0;
+        for (double value : expected.get(0).getSamples()) {
+            max = Math.max(max, Math.abs(value));
+        }
+        assertTrue(max > Short.MAX_VALUE);
+
+        loadCached(xml);
+        List<Signal> cached = openWithHash(xml, false);
+        assertNotNull(cached);
+        assertSameSignals("sidecar", expected, cached);
+    }
+
+    @Test
+    public void extremeCountsAndNonIntegerSamples() throws Exception {
+        Path cacheFile = folder.getRoot().toPath().resolve("direct.ecgbin");
+        EcgBinaryCache.SourceStamp stamp = new EcgBinaryCache.SourceStamp(10, -1);
+        byte[] hash = EcgBinaryCache.sha256(new byte[10]);
+        List<Signal> signals = new ArrayList<>();
+        signals.add(new Signal("MDC_ECG_LEAD_I", SampleStorage.of(new short[] { Short.MIN_VALUE, 0, Short.MAX_VALUE }),
+                               0.0, "uV", 5.0, "uV", 0.002, "s"));
+        signals.add(new Signal("MDC_ECG_LEAD_II", SampleStorage.of(new int[] { Integer.MIN_VALUE, -1, Integer.MAX_VALUE }),
+                               1.5, "mV", 0.5, "mV", 0.001, "s"));
+        assertTrue(EcgBinaryCache.write(cacheFile, stamp, hash, signals));
+        assertSameSignals("direct", signals, EcgBinaryCache.open(cacheFile, stamp, false, () -> hash, null));
+
+        List<Signal> fractional = Arrays.asList(new Signal("MDC_ECG_LEAD_I", SampleStorage.of(new double[] { 0.5 }),
+                                                           0.0, "uV", 1.0, "uV", 0.001, "s"));
+        assertFalse(EcgBinaryCache.write(cacheFile, stamp, hash, fractional));
+    }
+
+    @Test
+    public void truncatedOrCorruptSidecarIsAMiss() throws Exception {
+        Path xml = writeXml("ecg1.xml", readResource("xml/ecg1.xml"));
+        List<Signal> expected = parse(xml);
+        loadCached(xml);
+        byte[] valid = Files.readAllBytes(sidecar(xml));
+
+        for (int length : new int[] { 0, 7, 40, 100, valid.length / 2, valid.length - 1 }) {
+            Files.write(sidecar(xml), Arrays.copyOf(valid, length));
+            assertNull("length " + length, openWithHash(xml, false));
+            // The reader falls back to the XML and rewrites the sidecar
+            assertSameSignals("length " + length, expected, loadCached(xml));
+            assertNotNull("length " + length, openWithHash(xml, false));
+        }
+
+        // Magic, version, stored size and hash
+        for (int offset : new int[] { 0, 4, 8, 24 }) {
+            byte[] corrupt = valid.clone();
+            corrupt[offset] ^= 0x5a;
+            Files.write(sidecar(xml), corrupt);
+            assertNull("offset " + offset, openWithHash(xml, false));
+            assertSameSignals("offset " + offset, expected, loadCached(xml));
+        }
+    }
+
+    @Test
+    public void sameSizeEditWithTheSameTimestampIsReparsed() throws Exception {
+        String content = readResource("xml/ecg1.xml");
+        Path xml = writeXml("ecg1.xml", content);
+        double original = loadCached(xml).get(0).getSample(0);
+        FileTime modified = Files.getLastModifiedTime(xml);
+
+        // Change one digit of the first sample, keep the size and the timestamp
+        Matcher matcher = DIGITS.matcher(content);
+        assertTrue(matcher.find());
+        int digit = matcher.start(1);
+        while (!Character.isDigit(content.charAt(digit))) {
+            digit++;
+        }
+        char changed = content.charAt(digit) == '9' ? '8' : (char) (content.charAt(digit) + 1);
+        String edited = content.substring(0, digit) + changed + content.substring(digit + 1);
+        writeXml("ecg1.xml", edited);
+        Files.setLastModifiedTime(xml, modified);
+        assertEquals(content.length(), Files.size(xml));
+
+        List<Signal> expected = parse(xml);
+        List<Signal> loaded = loadCached(xml);
+        assertTrue(original != expected.get(0).getSample(0));
+        assertSameSignals("edited", expected, loaded);
+
+        // A different size is a miss even when the stamp is trusted
+        writeXml("ecg1.xml", edited + "\n");
+        XmlEcgReader trusting = new XmlEcgReader();
+        trusting.setTrustCacheStamp(true);
+        assertNull(EcgBinaryCache.open(sidecar(xml), EcgBinaryCache.SourceStamp.of(xml), true, () -> {
+            throw new AssertionError("size differs, no need to hash");
+        }, null));
+        trusting.loadCachedFile(xml.toString());
+        assertSameSignals("appended", expected, trusting.getSignals());
+    }
+
+    @Test
+    public void trustedStampIsRefreshedWithoutDisturbingOpenedSignals() throws Exception {
+        Path xml = writeXml("ecg1.xml", readResource("xml/ecg1.xml"));
+        List<Signal> expected = parse(xml);
+        loadCached(xml);
+
+        // Same content with a new timestamp: the hash decides and the stamp is rewritten
+        Files.setLastModifiedTime(xml, FileTime.fromMillis(Files.getLastModifiedTime(xml).toMillis() + 60000));
+        int[] hashes = new int[1];
+        List<Signal> opened = EcgBinaryCache.open(sidecar(xml), EcgBinaryCache.SourceStamp.of(xml), true, () -> {
+            hashes[0]++;
+            return EcgBinaryCache.sha256(xml);
+        }, null);
+        assertEquals(1, hashes[0]);
+        assertFalse(Files.exists(Paths.get(sidecar(xml) + ".tmp")));
+
+        // The refreshed stamp is trusted without hashing
+        List<Signal> trusted = EcgBinaryCache.open(sidecar(xml), EcgBinaryCache.SourceStamp.of(xml), true, () -> {
+            throw new AssertionError("stamp matches, no need to hash");
+        }, null);
+        assertSameSignals("trusted", expected, trusted);
+        // The signals opened before the refresh still read the original samples
+        assertSameSignals("opened before the refresh", expected, opened);
+        // Without the opt-in the hash is still compared
+        assertNotNull(openWithHash(xml, false));
+    }
+
+    @Test
+    public void leadFilterReturnsOnlyTheSelectedLeads() throws Exception {
+        Path xml = writeXml("ecg1.xml", readResource("xml/ecg1.xml"));
+        Set<String> wanted = new HashSet<>(Arrays.asList("MDC_ECG_LEAD_II", "MDC_ECG_LEAD_V5"));
+        List<Signal> expected = new ArrayList<>();
+        for (Signal signal : parse(xml)) {
+            if (wanted.contains(signal.getLeadName())) {
+                expected.add(signal);
+            }
+        }
+        assertFalse(expected.isEmpty());
+
+        // Miss: parsed, filtered, and the sidecar still gets every lead
+        XmlEcgReader reader = new XmlEcgReader();
+        reader.setLeadSelection(wanted);
+        reader.loadCachedFile(xml.toString());
+        assertSameSignals("parsed", expected, reader.getSignals());
+        assertEquals(parse(xml).size(), openWithHash(xml, false).size());
+
+        // Hit: the filter is applied to the mapped leads
+        reader.loadCachedFile(xml.toString());
+        assertSameSignals("cached", expected, reader.getSignals());
+        assertSameSignals("open", expected, EcgBinaryCache.open(sidecar(xml), EcgBinaryCache.SourceStamp.of(xml),
+                                                                 false, () -> EcgBinaryCache.sha256(xml), wanted::contains));
+    }
+}
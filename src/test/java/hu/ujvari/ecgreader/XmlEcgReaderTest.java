@@ -0,0 +1,153 @@
+package hu.ujvari.ecgreader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import hu.ujvari.ecgmodel.Signal;
+
+public class XmlEcgReaderTest {
+
+    private static final String[] RECORDINGS = { "xml/ecg1.xml", "xml/ecg2.xml", "xml/ecg3.xml" };
+
+    // The original DOM extraction: lead components by code, whitespace split, Double.parseDouble
+    private static List<Signal> referenceParse(String resourcePath) throws Exception {
+        Document document;
+        try (InputStream is = XmlEcgReaderTest.class.getClassLoader().getResourceAsStream(resourcePath)) {
+            assertNotNull(resourcePath, is);
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(is);
+        }
+        List<Signal> signals = new ArrayList<>();
+        NodeList components = document.getElementsByTagName("component");
+        for (int i = 0; i < components.getLength(); i++) {
+            Element component = (Element) components.item(i);
+            NodeList codeList = component.getElementsByTagName("code");
+            if (codeList.getLength() == 0) continue;
+            String leadName = ((Element) codeList.item(0)).getAttribute("code");
+            if (!leadName.startsWith("MDC_ECG_LEAD_")) continue;
+
+            Element value = (Element) component.getElementsByTagName("value").item(0);
+            if (value == null) continue;
+            Element origin = (Element) value.getElementsByTagName("origin").item(0);
+            Element scale = (Element) value.getElementsByTagName("scale").item(0);
+            Element digits = (Element) value.getElementsByTagName("digits").item(0);
+            if (origin == null || scale == null || digits == null) continue;
+
+            List<Double> values = new ArrayList<>();
+            for (String token : digits.getTextContent().trim().split("\\s+")) {
+                try {
+                    values.add(Double.parseDouble(token));
+                } catch (NumberFormatException ignored) {}
+            }
+            signals.add(new Signal(leadName, values,
+                Double.parseDouble(origin.getAttribute("value")), origin.getAttribute("unit"),
+                Double.parseDouble(scale.getAttribute("value")), scale.getAttribute("unit")));
+        }
+        return signals;
+    }
+
+    static void assertSameLeads(String context, List<Signal> expected, List<Signal> actual) {
+        assertEquals(context, expected.size(), actual.size());
+        for (int l = 0; l < expected.size(); l++) {
+            Signal e = expected.get(l);
+            Signal a = actual.get(l);
+            String lead = context + " " + e.getLeadName();
+            assertEquals(lead, e.getLeadName(), a.getLeadName());
+            assertEquals(lead, e.getOriginValue(), a.getOriginValue(), 0.0);
+            assertEquals(lead, e.getOriginUnit(), a.getOriginUnit());
+            assertEquals(lead, e.getScaleValue(), a.getScaleValue(), 0.0);
+            assertEquals(lead, e.getScaleUnit(), a.getScaleUnit());
+
+            List<Double> expectedValues = e.getValues();
+            List<Double> actualValues = a.getValues();
+            assertEquals(lead, expectedValues.size(), actualValues.size());
+            for (int i = 0; i < expectedValues.size(); i++) {
+                assertEquals(lead + " sample " + i, expectedValues.get(i), actualValues.get(i), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void streamedLeadsMatchTheDomParse() throws Exception {
+        for (String recording : RECORDINGS) {
+            List<Signal> expected = referenceParse(recording);
+            assertFalse(recording, expected.isEmpty());
+
+            XmlEcgReader reader = new XmlEcgReader();
+            reader.streamSignalsFromResource(recording);
+            assertSameLeads(recording, expected, reader.getSignals());
+        }
+    }
+
+    @Test
+    public void domExtractionMatchesTheReference() throws Exception {
+        for (String recording : RECORDINGS) {
+            XmlEcgReader reader = new XmlEcgReader();
+            reader.loadFromResource(recording);
+            reader.extractSignals();
+            assertSameLeads(recording, referenceParse(recording), reader.getSignals());
+        }
+    }
+
+    @Test
+    public void consumerSeesTheLeadsInDocumentOrder() throws Exception {
+        List<Signal> streamed = new ArrayList<>();
+        XmlEcgReader reader = new XmlEcgReader();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("xml/ecg1.xml")) {
+            reader.streamSignals(is, streamed::add);
+        }
+        assertSameLeads("ecg1", referenceParse("xml/ecg1.xml"), streamed);
+    }
+
+    @Test
+    public void leadSelectionReturnsExactlyTheRequestedLeads() throws Exception {
+        Set<String> wanted = new HashSet<>(Arrays.asList("MDC_ECG_LEAD_II", "MDC_ECG_LEAD_V5"));
+        for (String recording : RECORDINGS) {
+            List<Signal> expected = new ArrayList<>();
+            for (Signal signal : referenceParse(recording)) {
+                if (wanted.contains(signal.getLeadName())) {
+                    expected.add(signal);
+                }
+            }
+            assertFalse(recording, expected.isEmpty());
+
+            XmlEcgReader streaming = new XmlEcgReader();
+            streaming.setLeadSelection(wanted);
+            streaming.streamSignalsFromResource(recording);
+            assertSameLeads(recording + " streamed", expected, streaming.getSignals());
+
+            XmlEcgReader dom = new XmlEcgReader();
+            dom.setLeadSelection(wanted::contains);
+            dom.loadFromResource(recording);
+            dom.extractSignals();
+            assertSameLeads(recording + " DOM", expected, dom.getSignals());
+
+            // Cleared selection reads every lead again
+            dom.clearLeadSelection();
+            dom.extractSignals();
+            assertSameLeads(recording + " all", referenceParse(recording), dom.getSignals());
+        }
+    }
+
+    @Test
+    public void unknownLeadSelectsNothing() {
+        XmlEcgReader reader = new XmlEcgReader();
+        reader.setLeadSelection(new HashSet<>(Arrays.asList("MDC_ECG_LEAD_NONE")));
+        reader.streamSignalsFromResource("xml/ecg1.xml");
+        assertEquals(0, reader.getSignals().size());
+    }
+}